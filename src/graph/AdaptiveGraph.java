@@ -0,0 +1,453 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An implementation of Graph that changes its representation as it is used.
+ *
+ * <p>A new graph starts as a compact array of vertices with linear lookups,
+ * which is smallest and fastest for a handful of vertices. Once the number of
+ * vertices or edges passes a threshold it is promoted to hashed adjacency
+ * maps. When the graph is read much more often than it is written, it is
+ * frozen into a {@link FrozenGraph}; the next write thaws it back to hashed
+ * adjacency.
+ *
+ * <p>Freezing and thawing each copy the whole graph, so a graph whose reads
+ * and writes alternate in bursts must not flip between them on every burst.
+ * A thaw that comes before the frozen graph has served as many reads as it
+ * took to freeze it doubles the reads required before the next automatic
+ * freeze (up to {@value #MAX_FREEZE_BACKOFF} times the minimum); a thaw
+ * after a freeze that paid off halves it again.
+ *
+ * <p>AdaptiveGraph is thread-safe: every operation, reads included (since
+ * a read may freeze the graph), holds the graph's lock.
+ *
+ * <p>Every change of representation is counted; see
+ * {@link #promotions(Representation)}. When {@link GraphMetrics#ENABLED},
+ * changes are also counted process-wide in the
+ * {@code graph.adaptive.promotions.<representation>} counters.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class AdaptiveGraph<L> implements MeasuredGraph<L> {
+    
+    /** largest factor by which thaws can raise the reads needed to freeze */
+    public static final int MAX_FREEZE_BACKOFF = 1024;
+    
+    /**
+     * The representations an AdaptiveGraph moves between.
+     */
+    public enum Representation {
+        /** unsorted array of vertices, each with small arrays of targets */
+        ARRAY,
+        /** hash maps of outgoing and incoming edges per vertex */
+        HASHED,
+        /** immutable primitive arrays in compressed sparse row form */
+        FROZEN
+    }
+    
+    private final int hashedVertices;
+    private final int hashedEdges;
+    private final int frozenMinReads;
+    private final int frozenReadWriteRatio;
+    private final VertexOrdering frozenOrdering;
+    
+    private Graph<L> rep = new ArrayRep<L>();
+    private Representation representation = Representation.ARRAY;
+    private int edgeCount = 0;
+    private long reads = 0;
+    private long writes = 0;
+    private int freezeBackoff = 1;
+    private final Map<Representation, Long> promotions =
+            new EnumMap<Representation, Long>(Representation.class);
+    
+    // Abstraction function:
+    //   Represents the graph rep.
+    // Representation invariant:
+    //   rep is an ArrayRep, HashRep or FrozenGraph according to representation.
+    //   edgeCount is the number of edges of rep.
+    //   reads and writes count the operations since the last change of
+    //     representation.
+    //   freezeBackoff is a power of two in [1, MAX_FREEZE_BACKOFF].
+    // Safety from rep exposure:
+    //   All fields are private; rep only returns fresh sets and maps.
+    // Thread safety argument:
+    //   All accesses to the mutable fields happen in synchronized methods,
+    //     or in private methods called only from them.
+    
+    /**
+     * Create an empty adaptive graph with default thresholds: promote to
+     * hashed adjacency past 32 vertices or 128 edges, and freeze after 1024
+     * reads with at least 64 reads per write since the last change of
+     * representation.
+     */
+    public AdaptiveGraph() {
+        this(32, 128, 1024, 64);
+    }
+    
+    /**
+     * Create an empty adaptive graph.
+     *
+     * @param hashedVertices promote to hashed adjacency once the graph has
+     *                       more than this many vertices
+     * @param hashedEdges promote to hashed adjacency once the graph has more
+     *                    than this many edges
+     * @param frozenMinReads freeze only after at least this many reads since
+     *                       the last change of representation, positive
+     * @param frozenReadWriteRatio freeze only if reads since the last change
+     *                             of representation are at least this many
+     *                             times the writes, positive
+     */
+    public AdaptiveGraph(int hashedVertices, int hashedEdges, int frozenMinReads, int frozenReadWriteRatio) {
+        this(hashedVertices, hashedEdges, frozenMinReads, frozenReadWriteRatio, null);
+    }
+    
+    /**
+     * Create an empty adaptive graph that renumbers its vertices for locality
+     * whenever it is frozen.
+     *
+     * @param hashedVertices promote to hashed adjacency once the graph has
+     *                       more than this many vertices
+     * @param hashedEdges promote to hashed adjacency once the graph has more
+     *                    than this many edges
+     * @param frozenMinReads freeze only after at least this many reads since
+     *                       the last change of representation, positive
+     * @param frozenReadWriteRatio freeze only if reads since the last change
+     *                             of representation are at least this many
+     *                             times the writes, positive
+     * @param frozenOrdering how to number vertices when freezing, or null to
+     *                       number them in the order of vertices()
+     */
+    public AdaptiveGraph(int hashedVertices, int hashedEdges, int frozenMinReads, int frozenReadWriteRatio,
+            VertexOrdering frozenOrdering) {
+        if (hashedVertices < 0 || hashedEdges < 0 || frozenMinReads <= 0 || frozenReadWriteRatio <= 0) {
+            throw new IllegalArgumentException("invalid thresholds");
+        }
+        this.hashedVertices = hashedVertices;
+        this.hashedEdges = hashedEdges;
+        this.frozenMinReads = frozenMinReads;
+        this.frozenReadWriteRatio = frozenReadWriteRatio;
+        this.frozenOrdering = frozenOrdering;
+        for (Representation r : Representation.values()) {
+            promotions.put(r, 0L);
+        }
+        checkRep();
+    }
+    
+    private void checkRep() {
+        switch (representation) {
+        case ARRAY:
+            assert rep instanceof ArrayRep;
+            break;
+        case HASHED:
+            assert rep instanceof HashRep;
+            break;
+        case FROZEN:
+            assert rep instanceof FrozenGraph;
+            assert ((FrozenGraph<L>) rep).edgeCount() == edgeCount;
+            break;
+        }
+        assert edgeCount >= 0;
+        assert freezeBackoff >= 1 && freezeBackoff <= MAX_FREEZE_BACKOFF
+                && Integer.bitCount(freezeBackoff) == 1;
+    }
+    
+    /**
+     * @return the current representation of this graph
+     */
+    public synchronized Representation representation() {
+        return representation;
+    }
+    
+    /**
+     * @param to a representation
+     * @return number of times this graph has changed into that representation
+     */
+    public synchronized long promotions(Representation to) {
+        return promotions.get(to);
+    }
+    
+    private void become(Representation to, Graph<L> newRep) {
+        rep = newRep;
+        representation = to;
+        promotions.put(to, promotions.get(to) + 1);
+        if (GraphMetrics.ENABLED) {
+            GraphMetrics.counter("graph.adaptive.promotions." + to.name().toLowerCase()).increment();
+        }
+        reads = 0;
+        writes = 0;
+        checkRep();
+    }
+    
+    /**
+     * Freeze this graph now, whatever its reads and writes, for instance to
+     * shrink it to fit a memory budget. The next write thaws it as usual.
+     */
+    public synchronized void freeze() {
+        if (representation != Representation.FROZEN) {
+            become(Representation.FROZEN,
+                    frozenOrdering == null ? FrozenGraph.of(rep) : FrozenGraph.of(rep, frozenOrdering));
+        }
+    }
+    
+    /**
+     * @return the factor by which earlier thaws have raised the reads needed
+     *         before this graph freezes itself, a power of two between 1 and
+     *         {@link #MAX_FREEZE_BACKOFF}
+     */
+    public synchronized int freezeBackoff() {
+        return freezeBackoff;
+    }
+    
+    // account for a read, freezing the graph if it has become read-mostly
+    private void read() {
+        reads++;
+        if (reads >= (long) frozenMinReads * freezeBackoff && reads >= frozenReadWriteRatio * writes) {
+            freeze();
+        }
+    }
+    
+    // account for a write, thawing the graph first if it is frozen, and
+    // backing off from freezing again if it was frozen too briefly
+    private void write() {
+        writes++;
+        if (representation == Representation.FROZEN) {
+            if (reads < (long) frozenMinReads * freezeBackoff) {
+                freezeBackoff = Math.min(freezeBackoff * 2, MAX_FREEZE_BACKOFF);
+            } else {
+                freezeBackoff = Math.max(freezeBackoff / 2, 1);
+            }
+            become(Representation.HASHED, new HashRep<L>(rep));
+        }
+    }
+    
+    // promote from the array representation once it has grown too large
+    private void grown() {
+        if (representation == Representation.ARRAY
+                && (((ArrayRep<L>) rep).vertexCount() > hashedVertices || edgeCount > hashedEdges)) {
+            become(Representation.HASHED, new HashRep<L>(rep));
+        }
+    }
+    
+    @Override public synchronized boolean add(L vertex) {
+        write();
+        boolean res = rep.add(vertex);
+        grown();
+        return res;
+    }
+    
+    @Override public synchronized int set(L source, L target, int weight) {
+        write();
+        int old = rep.set(source, target, weight);
+        if (old == 0 && weight != 0) {
+            edgeCount++;
+        } else if (old != 0 && weight == 0) {
+            edgeCount--;
+        }
+        grown();
+        return old;
+    }
+    
+    @Override public synchronized boolean remove(L vertex) {
+        write();
+        Map<L, Integer> tgts = rep.targets(vertex);
+        Map<L, Integer> srcs = rep.sources(vertex);
+        boolean res = rep.remove(vertex);
+        edgeCount -= tgts.size() + srcs.size() - (tgts.containsKey(vertex) ? 1 : 0);
+        checkRep();
+        return res;
+    }
+    
+    @Override public synchronized Set<L> vertices() {
+        read();
+        return rep.vertices();
+    }
+    
+    @Override public synchronized Map<L, Integer> sources(L target) {
+        read();
+        return rep.sources(target);
+    }
+    
+    @Override public synchronized Map<L, Integer> targets(L source) {
+        read();
+        return rep.targets(source);
+    }
+    
+    @Override public synchronized Footprint footprint() {
+        return ((MeasuredGraph<L>) rep).footprint();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return rep.toString();
+    }
+}
+
+/**
+ * Array-backed graph for small vertex counts: vertices are kept in insertion
+ * order in a list and every lookup is a linear scan.
+ * Mutable.
+ * This class is internal to the rep of AdaptiveGraph.
+ */
+class ArrayRep<L> implements MeasuredGraph<L> {
+    
+    private final List<L> labels = new ArrayList<L>();
+    private final List<Object[]> targets = new ArrayList<Object[]>();
+    private final List<int[]> weights = new ArrayList<int[]>();
+    private final List<Integer> degrees = new ArrayList<Integer>();
+    
+    // Abstraction function:
+    //   Represents the graph with vertices labels and, for the vertex at
+    //     index v, edges to targets.get(v)[i] with weight weights.get(v)[i]
+    //     for 0 <= i < degrees.get(v).
+    // Representation invariant:
+    //   labels are distinct; the four lists have equal length.
+    //   targets.get(v) has distinct entries in [0, degree), no zero weights.
+    // Safety from rep exposure:
+    //   All fields are private; only fresh sets and maps are returned.
+    
+    int vertexCount() {
+        return labels.size();
+    }
+    
+    private int indexOf(L label) {
+        for (int v = 0; v < labels.size(); v++) {
+            if (labels.get(v).equals(label)) {
+                return v;
+            }
+        }
+        return -1;
+    }
+    
+    @Override public boolean add(L vertex) {
+        if (indexOf(vertex) >= 0) {
+            return false;
+        }
+        labels.add(vertex);
+        targets.add(new Object[2]);
+        weights.add(new int[2]);
+        degrees.add(0);
+        return true;
+    }
+    
+    @Override public int set(L source, L target, int weight) {
+        int v = indexOf(source);
+        if (v < 0) {
+            if (weight == 0) {
+                return 0;
+            }
+            add(source);
+            v = labels.size() - 1;
+        }
+        Object[] tgts = targets.get(v);
+        int[] wgts = weights.get(v);
+        int degree = degrees.get(v);
+        for (int i = 0; i < degree; i++) {
+            if (tgts[i].equals(target)) {
+                int old = wgts[i];
+                if (weight != 0) {
+                    wgts[i] = weight;
+                } else {
+                    tgts[i] = tgts[degree - 1];
+                    wgts[i] = wgts[degree - 1];
+                    tgts[degree - 1] = null;
+                    degrees.set(v, degree - 1);
+                }
+                return old;
+            }
+        }
+        if (weight == 0) {
+            return 0;
+        }
+        add(target);
+        if (degree == tgts.length) {
+            tgts = Arrays.copyOf(tgts, degree * 2);
+            wgts = Arrays.copyOf(wgts, degree * 2);
+            targets.set(v, tgts);
+            weights.set(v, wgts);
+        }
+        tgts[degree] = target;
+        wgts[degree] = weight;
+        degrees.set(v, degree + 1);
+        return 0;
+    }
+    
+    @Override public boolean remove(L vertex) {
+        int v = indexOf(vertex);
+        if (v < 0) {
+            return false;
+        }
+        labels.remove(v);
+        targets.remove(v);
+        weights.remove(v);
+        degrees.remove(v);
+        for (int u = 0; u < labels.size(); u++) {
+            set(labels.get(u), vertex, 0);
+        }
+        return true;
+    }
+    
+    @Override public Set<L> vertices() {
+        return new HashSet<L>(labels);
+    }
+    
+    @Override public Map<L, Integer> sources(L target) {
+        Map<L, Integer> srcs = new HashMap<L, Integer>();
+        for (int v = 0; v < labels.size(); v++) {
+            Object[] tgts = targets.get(v);
+            for (int i = 0; i < degrees.get(v); i++) {
+                if (tgts[i].equals(target)) {
+                    srcs.put(labels.get(v), weights.get(v)[i]);
+                    break;
+                }
+            }
+        }
+        return srcs;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override public Map<L, Integer> targets(L source) {
+        Map<L, Integer> tgts = new HashMap<L, Integer>();
+        int v = indexOf(source);
+        if (v >= 0) {
+            for (int i = 0; i < degrees.get(v); i++) {
+                tgts.put((L) targets.get(v)[i], weights.get(v)[i]);
+            }
+        }
+        return tgts;
+    }
+    
+    @Override public Footprint footprint() {
+        long edgeBytes = 0;
+        for (int v = 0; v < labels.size(); v++) {
+            edgeBytes += Footprint.array(targets.get(v).length, 4) + Footprint.array(weights.get(v).length, 4);
+        }
+        return new Footprint(4 * Footprint.arrayList(labels.size()) + labels.size() * Footprint.INTEGER,
+                edgeBytes, Footprint.labels(labels), 0, 0);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        for (L v : labels) {
+            s.append(v.toString() + "\n");
+        }
+        s.append("\nedges:\n");
+        for (int v = 0; v < labels.size(); v++) {
+            for (int i = 0; i < degrees.get(v); i++) {
+                s.append(labels.get(v) + " -> " + targets.get(v)[i] + " (" + weights.get(v)[i] + ")\n");
+            }
+        }
+        return s.toString();
+    }
+}
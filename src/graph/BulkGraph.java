@@ -0,0 +1,38 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A Graph that can apply many mutations in one operation.
+ * Implementations make a single pass over their representation per call,
+ * so removing a batch of k vertices (say, a stopword list) costs time
+ * linear in the size of the graph rather than k times that.
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public interface BulkGraph<L> extends Graph<L> {
+    
+    /**
+     * Remove vertices from this graph, as if by calling {@link #remove(Object)}
+     * on each of them; any edges to or from them are also removed.
+     * 
+     * @param vertices labels of the vertices to remove
+     * @return the number of vertices of this graph that were removed
+     */
+    public int removeAll(Collection<? extends L> vertices);
+    
+    /**
+     * Add, change, or remove many edges, as if by calling
+     * {@link #set(Object, Object, int)} for each of them.
+     * 
+     * @param weights a map from each source label to a map from target labels
+     *                to the new nonnegative weight of the edge from source to
+     *                target, zero to remove it
+     */
+    public void setAll(Map<? extends L, ? extends Map<? extends L, Integer>> weights);
+    
+}
@@ -0,0 +1,440 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, compact implementation of Graph for archived graphs that
+ * still serve queries.
+ * Vertices are numbered 0..vertexCount()-1 as in {@link FrozenGraph}, but
+ * each vertex's neighbours are stored as a byte string: neighbour ids sorted
+ * and delta-encoded, interleaved with weights, all as variable-length
+ * integers, so a typical edge takes two or three bytes instead of eight.
+ * Every {@value #BLOCK} edges start a block whose first id is recorded in an
+ * index, so weight(int, int) decodes at most one block.
+ * Mutators throw UnsupportedOperationException.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class CompressedGraph<L> implements MeasuredGraph<L> {
+    
+    /** Number of edges per indexed block. */
+    static final int BLOCK = 16;
+    
+    private final Object[] labels;
+    private final Map<L, Integer> ids;
+    private final VarintAdjacency out;
+    private final VarintAdjacency in;
+    
+    // Abstraction function:
+    //   Represents the graph with vertices labels[0..n) and, for each vertex
+    //     v and each (u, w) decoded from out's list for v, an edge from v to
+    //     u with weight w.
+    //   in holds the same edges, listed by target.
+    // Representation invariant:
+    //   ids maps labels[v] to v for every v, and nothing else.
+    //   out and in each have n lists, hold the same number of edges, and
+    //     list exactly transposed edges.
+    // Safety from rep exposure:
+    //   All fields are private, final and never modified after construction;
+    //     observers return fresh sets and maps.
+    
+    /**
+     * Compress a copy of a graph.
+     *
+     * @param <L> type of vertex labels in the graph
+     * @param graph graph to copy
+     * @return an immutable graph equal to graph at the time of the call
+     */
+    public static <L> CompressedGraph<L> of(Graph<L> graph) {
+        FrozenGraph<L> frozen = graph instanceof FrozenGraph ? (FrozenGraph<L>) graph : FrozenGraph.of(graph);
+        int n = frozen.vertexCount();
+        Object[] labels = new Object[n];
+        Map<L, Integer> ids = new HashMap<L, Integer>();
+        for (int v = 0; v < n; v++) {
+            labels[v] = frozen.label(v);
+            ids.put(frozen.label(v), v);
+        }
+        VarintAdjacency.Builder out = new VarintAdjacency.Builder(n, frozen.edgeCount());
+        VarintAdjacency.Builder in = new VarintAdjacency.Builder(n, frozen.edgeCount());
+        for (int v = 0; v < n; v++) {
+            // FrozenGraph keeps both directions sorted by id
+            for (int i = frozen.outStart(v); i < frozen.outEnd(v); i++) {
+                out.append(frozen.outTarget(i), frozen.outWeight(i));
+            }
+            out.endVertex();
+            for (int i = frozen.inStart(v); i < frozen.inEnd(v); i++) {
+                in.append(frozen.inSource(i), frozen.inWeight(i));
+            }
+            in.endVertex();
+        }
+        return new CompressedGraph<L>(labels, ids, out.build(), in.build());
+    }
+    
+    private CompressedGraph(Object[] labels, Map<L, Integer> ids, VarintAdjacency out, VarintAdjacency in) {
+        this.labels = labels;
+        this.ids = ids;
+        this.out = out;
+        this.in = in;
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert ids.size() == labels.length;
+        assert out.vertexCount() == labels.length && in.vertexCount() == labels.length;
+        assert out.edgeCount() == in.edgeCount();
+    }
+    
+    /**
+     * @return number of vertices in this graph
+     */
+    public int vertexCount() {
+        return labels.length;
+    }
+    
+    /**
+     * @return number of edges in this graph
+     */
+    public int edgeCount() {
+        return out.edgeCount();
+    }
+    
+    /**
+     * @return number of bytes used by the encoded adjacency lists and their
+     *         indexes, in both directions
+     */
+    public long adjacencyBytes() {
+        return out.bytes() + in.bytes();
+    }
+    
+    @Override public Footprint footprint() {
+        int n = labels.length;
+        return new Footprint(Footprint.array(n, 4), adjacencyBytes(), Footprint.labels(Arrays.asList(labels)), 0,
+                Footprint.hashMap(n) + n * Footprint.INTEGER);
+    }
+    
+    /**
+     * @param label a label
+     * @return the id of the vertex with that label, or -1 if there is none
+     */
+    public int id(L label) {
+        Integer v = ids.get(label);
+        return v == null ? -1 : v;
+    }
+    
+    /**
+     * @param id a vertex id, 0 &lt;= id &lt; vertexCount()
+     * @return the label of that vertex
+     */
+    @SuppressWarnings("unchecked")
+    public L label(int id) {
+        return (L) labels[id];
+    }
+    
+    /**
+     * @param source id of a vertex
+     * @param target id of a vertex
+     * @return the weight of the edge from source to target, or zero if
+     *         there is no such edge
+     */
+    public int weight(int source, int target) {
+        return out.find(source, target);
+    }
+    
+    /**
+     * Visit the outgoing edges of a vertex in increasing order of target id.
+     * 
+     * @param id id of the source vertex
+     * @param visitor receives the id and weight of each target
+     */
+    public void forEachTarget(int id, IntGraph.EdgeVisitor visitor) {
+        out.forEach(id, visitor);
+    }
+    
+    /**
+     * Visit the incoming edges of a vertex in increasing order of source id.
+     * 
+     * @param id id of the target vertex
+     * @param visitor receives the id and weight of each source
+     */
+    public void forEachSource(int id, IntGraph.EdgeVisitor visitor) {
+        in.forEach(id, visitor);
+    }
+    
+    @Override public boolean add(L vertex) {
+        throw new UnsupportedOperationException("compressed graphs are immutable");
+    }
+    
+    @Override public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("compressed graphs are immutable");
+    }
+    
+    @Override public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("compressed graphs are immutable");
+    }
+    
+    @Override public Set<L> vertices() {
+        Set<L> vs = new HashSet<L>();
+        for (int v = 0; v < labels.length; v++) {
+            vs.add(label(v));
+        }
+        return vs;
+    }
+    
+    @Override public Map<L, Integer> sources(L target) {
+        Map<L, Integer> srcs = new HashMap<L, Integer>();
+        Integer v = ids.get(target);
+        if (v != null) {
+            in.forEach(v, (s, w) -> srcs.put(label(s), w));
+        }
+        return srcs;
+    }
+    
+    @Override public Map<L, Integer> targets(L source) {
+        Map<L, Integer> tgts = new HashMap<L, Integer>();
+        Integer v = ids.get(source);
+        if (v != null) {
+            out.forEach(v, (t, w) -> tgts.put(label(t), w));
+        }
+        return tgts;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        for (int v = 0; v < labels.length; v++) {
+            s.append(labels[v].toString() + "\n");
+        }
+        s.append("\nedges:\n");
+        for (int v = 0; v < labels.length; v++) {
+            final int source = v;
+            out.forEach(v, (t, w) -> s.append(labels[source].toString() + " -> "
+                    + labels[t].toString() + " (" + w + ")\n"));
+        }
+        return s.toString();
+    }
+}
+
+/**
+ * One direction of the adjacency of a CompressedGraph: for each vertex, a
+ * sorted list of (neighbour id, weight) pairs encoded as varints, with a
+ * block index.
+ * Immutable.
+ * This class is internal to the rep of CompressedGraph.
+ */
+class VarintAdjacency {
+    
+    private final byte[] data;
+    private final int[] offsets;
+    private final int[] blockStarts;
+    private final int[] blockOffsets;
+    private final int[] blockFirsts;
+    private final int edgeCount;
+    
+    // Abstraction function:
+    //   Represents, for each vertex v in [0, offsets.length - 1), the list of
+    //     pairs decoded from data[offsets[v]..offsets[v+1]): a sequence of
+    //     (gap, weight) varint pairs, where each neighbour id is the previous
+    //     one in the same block plus gap, and the first id of a block is its
+    //     gap from zero.
+    //   Block b starts at data[blockOffsets[b]] with neighbour blockFirsts[b];
+    //     vertex v's blocks are [blockStarts[v], blockStarts[v+1]).
+    // Representation invariant:
+    //   offsets and blockStarts have length n + 1 and are nondecreasing.
+    //   Every block but the last of a vertex holds BLOCK pairs.
+    //   Neighbour ids within a vertex are strictly increasing and weights are
+    //     positive; edgeCount is the total number of pairs.
+    // Safety from rep exposure:
+    //   All fields are private and final; arrays never leave this class.
+    
+    VarintAdjacency(byte[] data, int[] offsets, int[] blockStarts, int[] blockOffsets,
+            int[] blockFirsts, int edgeCount) {
+        this.data = data;
+        this.offsets = offsets;
+        this.blockStarts = blockStarts;
+        this.blockOffsets = blockOffsets;
+        this.blockFirsts = blockFirsts;
+        this.edgeCount = edgeCount;
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert offsets.length == blockStarts.length;
+        assert blockOffsets.length == blockFirsts.length;
+        assert offsets[offsets.length - 1] == data.length;
+        assert blockStarts[blockStarts.length - 1] == blockOffsets.length;
+    }
+    
+    int vertexCount() {
+        return offsets.length - 1;
+    }
+    
+    int edgeCount() {
+        return edgeCount;
+    }
+    
+    long bytes() {
+        return data.length + 4L * (offsets.length + blockStarts.length + 2 * blockOffsets.length);
+    }
+    
+    /*
+     * Decode the pairs of vertex v from byte position pos up to (not
+     * including) end, where the pair at pos is the first of its block.
+     */
+    private void decode(int pos, int end, IntGraph.EdgeVisitor visitor) {
+        int neighbour = 0;
+        int inBlock = 0;
+        while (pos < end) {
+            if (inBlock == CompressedGraph.BLOCK) {
+                neighbour = 0;
+                inBlock = 0;
+            }
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int weight = 0;
+            shift = 0;
+            do {
+                b = data[pos++];
+                weight |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            neighbour += gap;
+            inBlock++;
+            visitor.visit(neighbour, weight);
+        }
+    }
+    
+    void forEach(int v, IntGraph.EdgeVisitor visitor) {
+        decode(offsets[v], offsets[v + 1], visitor);
+    }
+    
+    int find(int v, int neighbour) {
+        int lo = blockStarts[v];
+        int hi = blockStarts[v + 1];
+        int block = Arrays.binarySearch(blockFirsts, lo, hi, neighbour);
+        if (block < 0) {
+            // the block that would contain neighbour is the one before the
+            // insertion point
+            block = -block - 2;
+            if (block < lo) {
+                return 0;
+            }
+        }
+        int pos = blockOffsets[block];
+        int end = block + 1 < hi ? blockOffsets[block + 1] : offsets[v + 1];
+        int current = 0;
+        while (pos < end) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int weight = 0;
+            shift = 0;
+            do {
+                b = data[pos++];
+                weight |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current += gap;
+            if (current >= neighbour) {
+                return current == neighbour ? weight : 0;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Accumulates the lists of consecutive vertices.
+     * Mutable.
+     */
+    static class Builder {
+        
+        private byte[] data;
+        private int size = 0;
+        private final int[] offsets;
+        private final int[] blockStarts;
+        private final int[] blockOffsets;
+        private final int[] blockFirsts;
+        private int vertex = 0;
+        private int blocks = 0;
+        private int inBlock = CompressedGraph.BLOCK;
+        private int previous = 0;
+        private int edges = 0;
+        
+        // Abstraction function:
+        //   Represents the lists of vertices [0, vertex) encoded so far, plus
+        //     the pairs appended for the current vertex.
+        // Representation invariant:
+        //   inBlock is the number of pairs in the current block, or BLOCK if
+        //     the next pair starts a new block.
+        // Safety from rep exposure:
+        //   Arrays are handed to the built VarintAdjacency and not used again.
+        
+        Builder(int vertexCount, int edgeCount) {
+            data = new byte[Math.max(16, 2 * edgeCount)];
+            offsets = new int[vertexCount + 1];
+            blockStarts = new int[vertexCount + 1];
+            int maxBlocks = edgeCount / CompressedGraph.BLOCK + vertexCount;
+            blockOffsets = new int[maxBlocks];
+            blockFirsts = new int[maxBlocks];
+        }
+        
+        private void write(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+        
+        /*
+         * Append a pair to the current vertex; neighbour must exceed the
+         * previous neighbour of that vertex, and weight must be positive.
+         */
+        void append(int neighbour, int weight) {
+            if (inBlock == CompressedGraph.BLOCK) {
+                blockOffsets[blocks] = size;
+                blockFirsts[blocks] = neighbour;
+                blocks++;
+                inBlock = 0;
+                previous = 0;
+            }
+            write(neighbour - previous);
+            write(weight);
+            previous = neighbour;
+            inBlock++;
+            edges++;
+        }
+        
+        void endVertex() {
+            vertex++;
+            offsets[vertex] = size;
+            blockStarts[vertex] = blocks;
+            inBlock = CompressedGraph.BLOCK;
+        }
+        
+        VarintAdjacency build() {
+            return new VarintAdjacency(Arrays.copyOf(data, size), offsets, blockStarts,
+                    Arrays.copyOf(blockOffsets, blocks), Arrays.copyOf(blockFirsts, blocks), edges);
+        }
+    }
+}
@@ -3,7 +3,9 @@
  */
 package graph;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -16,7 +18,7 @@ import java.util.Set;
  * 
  * <p>PS2 instructions: you MUST use the provided rep.
  */
-public class ConcreteEdgesGraph<L> implements Graph<L> {
+public class ConcreteEdgesGraph<L> implements BulkGraph<L>, MeasuredGraph<L> {
     
     private final Set<L> vertices = new HashSet<>();
     private final List<Edge<L>> edges = new ArrayList<>();
@@ -102,6 +104,56 @@ public class ConcreteEdgesGraph<L> implements Graph<L> {
         return res;
     }
     
+    @Override public int removeAll(Collection<? extends L> vertices) {
+        Set<L> doomed = new HashSet<L>(vertices);
+        int removed = 0;
+        for (L v : doomed) {
+            if (this.vertices.remove(v)) {
+                removed++;
+            }
+        }
+        
+        // one pass over the edges, dropping those touching any removed vertex
+        edges.removeIf(e -> doomed.contains(e.getSource()) || doomed.contains(e.getTarget()));
+        
+        checkRep();
+        return removed;
+    }
+    
+    @Override public void setAll(Map<? extends L, ? extends Map<? extends L, Integer>> weights) {
+        Map<L, Map<L, Integer>> pending = new HashMap<L, Map<L, Integer>>();
+        for (Map.Entry<? extends L, ? extends Map<? extends L, Integer>> e : weights.entrySet()) {
+            pending.put(e.getKey(), new HashMap<L, Integer>(e.getValue()));
+        }
+        
+        // one pass over the edges, replacing or dropping those being set
+        List<Edge<L>> updated = new ArrayList<Edge<L>>(edges.size());
+        for (Edge<L> e : edges) {
+            Map<L, Integer> tgts = pending.get(e.getSource());
+            Integer weight = tgts == null ? null : tgts.remove(e.getTarget());
+            if (weight == null) {
+                updated.add(e);
+            } else if (weight != 0) {
+                updated.add(new Edge<L>(e.getSource(), e.getTarget(), weight));
+            }
+        }
+        
+        // what remains are new edges
+        for (Map.Entry<L, Map<L, Integer>> e : pending.entrySet()) {
+            for (Map.Entry<L, Integer> t : e.getValue().entrySet()) {
+                if (t.getValue() != 0) {
+                    vertices.add(e.getKey());
+                    vertices.add(t.getKey());
+                    updated.add(new Edge<L>(e.getKey(), t.getKey(), t.getValue()));
+                }
+            }
+        }
+        edges.clear();
+        edges.addAll(updated);
+        
+        checkRep();
+    }
+    
     @Override public Set<L> vertices() {
         Set<L> vs = new HashSet<L>();
         for (L v : vertices) {
@@ -134,6 +186,20 @@ public class ConcreteEdgesGraph<L> implements Graph<L> {
         return tgts;
     }
     
+    // visit every edge, for GraphIO
+    void forEachEdge(EdgeSink<L> sink) throws IOException {
+        for (Edge<L> e : edges) {
+            sink.edge(e.getSource(), e.getTarget(), e.getWeight());
+        }
+    }
+    
+    @Override public Footprint footprint() {
+        // each Edge holds two references and an int
+        return new Footprint(Footprint.hashMap(vertices.size()) + Footprint.object(4),
+                Footprint.arrayList(edges.size()) + edges.size() * Footprint.object(3 * 4),
+                Footprint.labels(vertices), 0, 0);
+    }
+    
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder("vertices:\n");
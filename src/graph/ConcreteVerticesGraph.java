@@ -3,7 +3,10 @@
  */
 package graph;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -16,7 +19,7 @@ import java.util.Set;
  * 
  * <p>PS2 instructions: you MUST use the provided rep.
  */
-public class ConcreteVerticesGraph<L> implements Graph<L> {
+public class ConcreteVerticesGraph<L> implements BulkGraph<L>, MeasuredGraph<L> {
     
     private final List<Vertex<L>> vertices = new ArrayList<>();
     
@@ -103,6 +106,52 @@ public class ConcreteVerticesGraph<L> implements Graph<L> {
         return removed;
     }
     
+    @Override public int removeAll(Collection<? extends L> vertices) {
+        Set<L> doomed = new HashSet<L>(vertices);
+        int before = this.vertices.size();
+        this.vertices.removeIf(v -> doomed.contains(v.getValue()));
+        
+        // one pass over the remaining vertices, unlinking all removed targets
+        for (Vertex<L> v : this.vertices) {
+            v.unlinkAll(doomed);
+        }
+        
+        checkRep();
+        return before - this.vertices.size();
+    }
+    
+    @Override public void setAll(Map<? extends L, ? extends Map<? extends L, Integer>> weights) {
+        Map<L, Vertex<L>> index = new HashMap<L, Vertex<L>>();
+        for (Vertex<L> v : vertices) {
+            index.put(v.getValue(), v);
+        }
+        
+        for (Map.Entry<? extends L, ? extends Map<? extends L, Integer>> e : weights.entrySet()) {
+            Vertex<L> v = index.get(e.getKey());
+            for (Map.Entry<? extends L, Integer> t : e.getValue().entrySet()) {
+                if (t.getValue() == 0) {
+                    if (v != null) {
+                        v.unlink(t.getKey());
+                    }
+                    continue;
+                }
+                if (v == null) {
+                    v = new Vertex<L>(e.getKey());
+                    vertices.add(v);
+                    index.put(v.getValue(), v);
+                }
+                if (!index.containsKey(t.getKey())) {
+                    Vertex<L> u = new Vertex<L>(t.getKey());
+                    vertices.add(u);
+                    index.put(u.getValue(), u);
+                }
+                v.update(t.getKey(), t.getValue());
+            }
+        }
+        
+        checkRep();
+    }
+    
     @Override public Set<L> vertices() {
         Set<L> vs = new HashSet<L>();
         for (Vertex<L> v : vertices) {
@@ -136,6 +185,28 @@ public class ConcreteVerticesGraph<L> implements Graph<L> {
         return tgts;
     }
     
+    // visit every edge, for GraphIO
+    void forEachEdge(EdgeSink<L> sink) throws IOException {
+        for (Vertex<L> v : vertices) {
+            for (Map.Entry<L, Integer> e : v.points().entrySet()) {
+                sink.edge(v.getValue(), e.getKey(), e.getValue());
+            }
+        }
+    }
+    
+    @Override public Footprint footprint() {
+        // each Vertex holds its label and its map of targets
+        long edgeBytes = 0;
+        List<L> labels = new ArrayList<L>();
+        for (Vertex<L> v : vertices) {
+            int degree = v.points().size();
+            edgeBytes += Footprint.hashMap(degree) + degree * Footprint.INTEGER;
+            labels.add(v.getValue());
+        }
+        return new Footprint(Footprint.arrayList(vertices.size()) + vertices.size() * Footprint.object(2 * 4),
+                edgeBytes, Footprint.labels(labels), 0, 0);
+    }
+    
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder("vertices:\n");
@@ -194,6 +265,11 @@ class Vertex<L> {
         return new HashMap<L, Integer>(points);
     }
     
+    // read-only view of the targets, for visiting edges without a copy
+    Map<L, Integer> points() {
+        return Collections.unmodifiableMap(points);
+    }
+    
     public boolean contains(L target) {
         return points.containsKey(target);
     }
@@ -206,15 +282,13 @@ class Vertex<L> {
         points.remove(target);
     }
     
+    public void unlinkAll(Set<L> targets) {
+        points.keySet().removeAll(targets);
+    }
+    
     public int update(L target, int newWeight) {
-        int oldWeight = 0;
-        
-        for (L p : points.keySet()) {
-            if (p.equals(target)) {
-                oldWeight = points.get(p);
-                break;
-            }
-        }
+        Integer old = points.get(target);
+        int oldWeight = old == null ? 0 : old;
         
         if (newWeight != 0) {
             points.put(target, newWeight);
@@ -0,0 +1,161 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Append-only arena of bytes stored in direct (off-heap) byte buffers, split
+ * into segments so that it can exceed the 2 GB limit of a single buffer.
+ * Mutable.
+ * This class is internal to the rep of OffHeapGraph.
+ */
+class DirectBytes {
+    
+    /** log2 of the number of bytes in a full segment (64 MB) */
+    static final int SEGMENT_SHIFT = 26;
+    
+    private final int shift;
+    private final int mask;
+    private ByteBuffer[] segments;
+    private long capacity;
+    private long size = 0;
+    
+    // Abstraction function:
+    //   Represents the byte sequence of length size whose byte i is stored
+    //     at offset i & mask of segments[i >>> shift].
+    // Representation invariant:
+    //   mask == (1 << shift) - 1.
+    //   Every segment is direct; capacity is the total number of bytes they
+    //     hold, and 0 <= size <= capacity.
+    //   If there is more than one segment, every segment holds exactly
+    //     1 << shift bytes; otherwise the only segment holds at most that.
+    //   segments is null once the arena has been freed.
+    // Safety from rep exposure:
+    //   segments are private and never returned.
+    
+    /**
+     * @param capacity initial number of bytes to reserve
+     * @param shift log2 of the number of bytes in a full segment
+     */
+    DirectBytes(long capacity, int shift) {
+        this.shift = shift;
+        this.mask = (1 << shift) - 1;
+        if (capacity <= 1 << shift) {
+            this.capacity = Math.min(Math.max(capacity, 16), 1 << shift);
+            segments = new ByteBuffer[] { ByteBuffer.allocateDirect((int) this.capacity) };
+        } else {
+            segments = new ByteBuffer[0];
+            addSegments(capacity);
+        }
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert segments.length >= 1;
+        long total = 0;
+        for (ByteBuffer segment : segments) {
+            assert segment.isDirect();
+            assert segments.length == 1 || segment.capacity() == 1 << shift;
+            total += segment.capacity();
+        }
+        assert total == capacity;
+        assert 0 <= size && size <= capacity;
+    }
+    
+    // append full segments until at least n bytes fit
+    private void addSegments(long n) {
+        long needed = (n + mask) >>> shift;
+        if (needed > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("off-heap label arena too large: " + n);
+        }
+        int count = segments.length;
+        segments = Arrays.copyOf(segments, (int) needed);
+        for (int k = count; k < needed; k++) {
+            segments[k] = ByteBuffer.allocateDirect(1 << shift);
+        }
+        capacity = needed << shift;
+    }
+    
+    // grow so that at least n bytes fit, like DirectInts.ensureCapacity
+    private void ensureCapacity(long n) {
+        if (n <= capacity) {
+            return;
+        }
+        if (capacity < 1 << shift) {
+            int wanted = (int) Math.min(Math.max(2 * capacity, n), 1 << shift);
+            ByteBuffer grown = ByteBuffer.allocateDirect(wanted);
+            ByteBuffer old = segments[0];
+            ByteBuffer src = old.duplicate();
+            src.position(0).limit((int) size);
+            grown.put(src);
+            segments[0] = grown;
+            capacity = wanted;
+            DirectMemory.free(old);
+        }
+        if (n > capacity) {
+            addSegments(n);
+        }
+        checkRep();
+    }
+    
+    /**
+     * Append bytes to the arena; they may span segments.
+     *
+     * @return offset of the first appended byte
+     */
+    long append(byte[] bytes) {
+        ensureCapacity(size + bytes.length);
+        long offset = size;
+        int done = 0;
+        while (done < bytes.length) {
+            long at = offset + done;
+            ByteBuffer dst = segments[(int) (at >>> shift)].duplicate();
+            dst.position((int) (at & mask));
+            int n = Math.min(bytes.length - done, dst.remaining());
+            dst.put(bytes, done, n);
+            done += n;
+        }
+        size += bytes.length;
+        return offset;
+    }
+    
+    byte get(long offset) {
+        return segments[(int) (offset >>> shift)].get((int) (offset & mask));
+    }
+    
+    void get(long offset, byte[] dst) {
+        int done = 0;
+        while (done < dst.length) {
+            long at = offset + done;
+            ByteBuffer src = segments[(int) (at >>> shift)].duplicate();
+            src.position((int) (at & mask));
+            int n = Math.min(dst.length - done, src.remaining());
+            src.get(dst, done, n);
+            done += n;
+        }
+    }
+    
+    /**
+     * @return number of bytes appended so far
+     */
+    long size() {
+        return size;
+    }
+    
+    long capacity() {
+        return capacity;
+    }
+    
+    /**
+     * Free the native memory of this arena now; it must not be used again.
+     */
+    void free() {
+        for (ByteBuffer segment : segments) {
+            DirectMemory.free(segment);
+        }
+        segments = null;
+    }
+}
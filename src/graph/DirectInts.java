@@ -0,0 +1,144 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Growable array of ints stored in direct (off-heap) byte buffers, split
+ * into segments so that it can exceed the 2 GB limit of a single buffer.
+ * Mutable.
+ * This class is internal to the rep of OffHeapGraph.
+ */
+class DirectInts {
+    
+    /** log2 of the number of ints in a full segment (64 MB) */
+    static final int SEGMENT_SHIFT = 24;
+    
+    private final int shift;
+    private final int mask;
+    private ByteBuffer[] segments;
+    private int capacity;
+    
+    // Abstraction function:
+    //   Represents the int array of length capacity whose element i is
+    //     stored in native byte order at byte offset 4 * (i & mask) of
+    //     segments[i >>> shift].
+    // Representation invariant:
+    //   mask == (1 << shift) - 1.
+    //   Every segment is direct; capacity is the total number of ints they
+    //     hold, at most maxCapacity().
+    //   If there is more than one segment, every segment holds exactly
+    //     1 << shift ints; otherwise the only segment holds at most that.
+    //   segments is null once the array has been freed.
+    // Safety from rep exposure:
+    //   segments are private and never returned.
+    
+    /**
+     * @param capacity initial number of elements, all zero
+     * @param shift log2 of the number of ints in a full segment
+     */
+    DirectInts(long capacity, int shift) {
+        this.shift = shift;
+        this.mask = (1 << shift) - 1;
+        checkCapacity(capacity);
+        if (capacity <= 1 << shift) {
+            segments = new ByteBuffer[] { allocate((int) Math.max(capacity, 1)) };
+            this.capacity = (int) Math.max(capacity, 1);
+        } else {
+            segments = new ByteBuffer[0];
+            addSegments(capacity);
+        }
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert segments.length >= 1;
+        long total = 0;
+        for (ByteBuffer segment : segments) {
+            assert segment.isDirect();
+            assert segments.length == 1 || segment.capacity() == 4 << shift;
+            total += segment.capacity() / 4;
+        }
+        assert total == capacity;
+    }
+    
+    private static ByteBuffer allocate(int ints) {
+        return ByteBuffer.allocateDirect(ints * 4).order(ByteOrder.nativeOrder());
+    }
+    
+    // largest capacity, leaving every index below Integer.MAX_VALUE
+    private long maxCapacity() {
+        return (Integer.MAX_VALUE >> shift) << shift;
+    }
+    
+    private void checkCapacity(long n) {
+        if (n > maxCapacity()) {
+            throw new OutOfMemoryError("off-heap int array too large: " + n);
+        }
+    }
+    
+    // append full segments until at least n elements fit
+    private void addSegments(long n) {
+        int count = segments.length;
+        int needed = (int) ((n + mask) >>> shift);
+        segments = Arrays.copyOf(segments, needed);
+        for (int k = count; k < needed; k++) {
+            segments[k] = allocate(1 << shift);
+        }
+        capacity = needed << shift;
+    }
+    
+    int get(int i) {
+        return segments[i >>> shift].getInt((i & mask) << 2);
+    }
+    
+    void set(int i, int value) {
+        segments[i >>> shift].putInt((i & mask) << 2, value);
+    }
+    
+    int capacity() {
+        return capacity;
+    }
+    
+    /**
+     * Grow so that at least n elements fit; new elements are zero. An array
+     * smaller than a segment at least doubles, copying its contents; a
+     * larger one gains segments, and existing elements stay in place.
+     */
+    void ensureCapacity(long n) {
+        if (n <= capacity) {
+            return;
+        }
+        checkCapacity(n);
+        if (capacity < 1 << shift) {
+            int wanted = (int) Math.min(Math.max(2L * capacity, n), 1 << shift);
+            ByteBuffer grown = allocate(wanted);
+            ByteBuffer old = segments[0];
+            ByteBuffer src = old.duplicate();
+            src.clear();
+            grown.put(src);
+            grown.clear();
+            segments[0] = grown;
+            capacity = wanted;
+            DirectMemory.free(old);
+        }
+        if (n > capacity) {
+            addSegments(n);
+        }
+        checkRep();
+    }
+    
+    /**
+     * Free the native memory of this array now; it must not be used again.
+     */
+    void free() {
+        for (ByteBuffer segment : segments) {
+            DirectMemory.free(segment);
+        }
+        segments = null;
+    }
+}
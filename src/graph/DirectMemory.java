@@ -0,0 +1,82 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees the native memory of direct byte buffers without waiting for them to
+ * be collected.
+ * This class is internal to the rep of OffHeapGraph.
+ */
+final class DirectMemory {
+    
+    // JDK 9 and later: sun.misc.Unsafe.invokeCleaner(ByteBuffer)
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    // JDK 8: ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+    
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (ReflectiveOperationException | RuntimeException e2) {
+                cleaner = null;
+                clean = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+    
+    private DirectMemory() {}
+    
+    /**
+     * @return true if this JVM lets free() release memory immediately
+     */
+    static boolean canFree() {
+        return INVOKE_CLEANER != null || CLEANER != null;
+    }
+    
+    /**
+     * Free the native memory of a buffer now if this JVM allows it, and
+     * otherwise leave it to the garbage collector. Neither the buffer nor
+     * any view of it may be used afterwards.
+     * 
+     * @param buffer a direct buffer allocated by ByteBuffer.allocateDirect,
+     *               not a slice or duplicate
+     */
+    static void free(ByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else if (CLEANER != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the collector frees it instead
+        }
+    }
+}
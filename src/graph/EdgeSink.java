@@ -0,0 +1,16 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+
+/**
+ * Receives the edges of a graph.
+ * This interface is internal to GraphIO and the graphs it reads directly.
+ */
+@FunctionalInterface
+interface EdgeSink<L> {
+    
+    void edge(L source, L target, int weight) throws IOException;
+}
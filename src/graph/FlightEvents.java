@@ -0,0 +1,169 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JDK Flight Recorder events for slow graph and poet calls, emitted while a
+ * recording is running.
+ * 
+ * <p>The project targets Java 8, whose class library has no Flight Recorder
+ * API, so the event types are defined at run time, by reflection on
+ * {@code jdk.jfr.EventFactory}, when this class is first used. Callers only
+ * use it inside their {@link GraphMetrics#ENABLED} branches, so it is not
+ * even loaded unless metrics are on; on a JVM without that API every method
+ * does nothing.
+ * 
+ * <p>A call is slow if it takes at least {@link #SLOW_NANOS}, set in
+ * milliseconds with {@code -Dgraph.metrics.slowMillis} (default 1). Each
+ * event carries the call's duration in its {@code nanos} field, and graph
+ * operation events carry the degree involved, which makes high-degree
+ * vertices (degree skew) easy to spot in a recording.
+ */
+public final class FlightEvents {
+    
+    /** Duration in nanoseconds from which a call is emitted as an event. */
+    public static final long SLOW_NANOS = Long.getLong("graph.metrics.slowMillis", 1) * 1_000_000;
+    
+    private static final EventType OPERATION = EventType.define("graph.GraphOperation", "Graph Operation",
+            new String[] { "Graph" },
+            Arrays.<Class<?>>asList(String.class, String.class, int.class, String.class, long.class),
+            Arrays.asList("operation", "vertex", "degree", "implementation", "nanos"));
+    private static final EventType BRIDGE = EventType.define("poet.Bridge", "Bridge Search",
+            new String[] { "Graph", "Poet" },
+            Arrays.<Class<?>>asList(String.class, String.class, int.class, String.class, long.class),
+            Arrays.asList("source", "target", "fanOut", "bridge", "nanos"));
+    
+    private FlightEvents() {}
+    
+    /**
+     * @return true if this JVM supports the events, so that they appear in
+     *         recordings
+     */
+    public static boolean available() {
+        return OPERATION != null && BRIDGE != null;
+    }
+    
+    /**
+     * Emit an event for a slow Graph operation.
+     * 
+     * @param operation name of the Graph method
+     * @param vertex vertex argument of the operation, or null
+     * @param degree number of edges returned or removed by the operation
+     * @param implementation simple class name of the graph
+     * @param nanos duration of the operation
+     */
+    public static void operation(String operation, Object vertex, int degree, String implementation,
+            long nanos) {
+        if (OPERATION != null) {
+            OPERATION.emit(operation, String.valueOf(vertex), degree, implementation, nanos);
+        }
+    }
+    
+    /**
+     * Emit an event for a slow bridge-word search.
+     * 
+     * @param source word before the bridge
+     * @param target word after the bridge
+     * @param fanOut number of successors of source that were examined
+     * @param bridge bridge found, or "" if none
+     * @param nanos duration of the search
+     */
+    public static void bridge(String source, String target, int fanOut, String bridge, long nanos) {
+        if (BRIDGE != null) {
+            BRIDGE.emit(source, target, fanOut, bridge, nanos);
+        }
+    }
+    
+    /**
+     * A Flight Recorder event type defined through reflection.
+     * Immutable.
+     * This class is internal to the rep of FlightEvents.
+     */
+    private static final class EventType {
+        
+        private final Object factory;
+        private final Method newEvent;
+        private final Method set;
+        private final Method commit;
+        
+        // Abstraction function:
+        //   Represents the event type made by factory, a jdk.jfr.EventFactory;
+        //     newEvent, set and commit are its methods and those of its events.
+        // Representation invariant:
+        //   all fields are non-null
+        // Safety from rep exposure:
+        //   All fields are private and final.
+        
+        private EventType(Object factory, Method newEvent, Method set, Method commit) {
+            this.factory = factory;
+            this.newEvent = newEvent;
+            this.set = set;
+            this.commit = commit;
+        }
+        
+        /*
+         * Define an event type, or return null if this JVM has no Flight
+         * Recorder API.
+         */
+        @SuppressWarnings("unchecked")
+        static EventType define(String name, String label, String[] category, List<Class<?>> types,
+                List<String> fields) {
+            try {
+                Class<?> element = Class.forName("jdk.jfr.AnnotationElement");
+                Constructor<?> annotation = element.getConstructor(Class.class, Object.class);
+                List<Object> annotations = new ArrayList<Object>();
+                annotations.add(annotation.newInstance(
+                        (Class<? extends Annotation>) Class.forName("jdk.jfr.Name"), name));
+                annotations.add(annotation.newInstance(
+                        (Class<? extends Annotation>) Class.forName("jdk.jfr.Label"), label));
+                annotations.add(annotation.newInstance(
+                        (Class<? extends Annotation>) Class.forName("jdk.jfr.Category"), category));
+                annotations.add(annotation.newInstance(
+                        (Class<? extends Annotation>) Class.forName("jdk.jfr.StackTrace"), false));
+                
+                Constructor<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor")
+                        .getConstructor(Class.class, String.class);
+                List<Object> values = new ArrayList<Object>();
+                for (int i = 0; i < fields.size(); i++) {
+                    values.add(descriptor.newInstance(types.get(i), fields.get(i)));
+                }
+                
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                Object factory = factoryClass.getMethod("create", List.class, List.class)
+                        .invoke(null, annotations, values);
+                Class<?> event = Class.forName("jdk.jfr.Event");
+                return new EventType(factory, factoryClass.getMethod("newEvent"),
+                        event.getMethod("set", int.class, Object.class), event.getMethod("commit"));
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                return null;
+            }
+        }
+        
+        /*
+         * Commit an event with the given field values, if a recording wants
+         * it. Instrumentation must not break the calls it observes, so a
+         * failure only loses the event.
+         */
+        void emit(Object... values) {
+            try {
+                Object event = newEvent.invoke(factory);
+                for (int i = 0; i < values.length; i++) {
+                    set.invoke(event, i, values[i]);
+                }
+                commit.invoke(event);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // the event is lost
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,256 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Map;
+
+/**
+ * An estimate of the heap retained by a graph or a structure built on one,
+ * in bytes, broken down by what the bytes hold:
+ * <ul><li> vertices: per-vertex containers, such as set entries, vertex
+ *          objects and offset arrays
+ *     <li> edges: storage of edges and their weights
+ *     <li> labels: the label objects themselves
+ *     <li> caches: memoized results, which can be dropped and recomputed
+ *     <li> indexes: lookup structures derived from the rest, such as maps
+ *          from labels to vertex ids
+ * </ul>
+ * 
+ * <p>Estimates follow a fixed size model of a 64-bit JVM with compressed
+ * references: 12-byte object headers, 16-byte array headers, 4-byte
+ * references, everything rounded up to 8 bytes, and strings of 2-byte
+ * chars. They do not walk the heap, so they are cheap enough to check
+ * against a budget often, but they ignore sharing: a label held by two
+ * graphs is counted in both.
+ * 
+ * <p>Immutable.
+ */
+public final class Footprint {
+    
+    /** The footprint of nothing. */
+    public static final Footprint ZERO = new Footprint(0, 0, 0, 0, 0);
+    
+    /** Estimated size of a boxed Integer. */
+    public static final long INTEGER = object(4);
+    
+    private static final int HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    
+    private final long vertices;
+    private final long edges;
+    private final long labels;
+    private final long caches;
+    private final long indexes;
+    
+    // Abstraction function:
+    //   Represents an estimate of vertices + edges + labels + caches +
+    //     indexes bytes, broken down as named.
+    // Representation invariant:
+    //   every field is nonnegative
+    // Safety from rep exposure:
+    //   All fields are private, final and immutable.
+    
+    /**
+     * Make a footprint.
+     * 
+     * @param vertices bytes of per-vertex containers, nonnegative
+     * @param edges bytes of edge storage, nonnegative
+     * @param labels bytes of label objects, nonnegative
+     * @param caches bytes of caches, nonnegative
+     * @param indexes bytes of lookup indexes, nonnegative
+     */
+    public Footprint(long vertices, long edges, long labels, long caches, long indexes) {
+        if (vertices < 0 || edges < 0 || labels < 0 || caches < 0 || indexes < 0) {
+            throw new IllegalArgumentException("negative footprint");
+        }
+        this.vertices = vertices;
+        this.edges = edges;
+        this.labels = labels;
+        this.caches = caches;
+        this.indexes = indexes;
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert vertices >= 0 && edges >= 0 && labels >= 0 && caches >= 0 && indexes >= 0;
+    }
+    
+    /**
+     * Estimate the footprint of any graph: a {@link MeasuredGraph} measures
+     * itself, and any other graph is estimated as if it were stored as
+     * hashed adjacency maps in both directions, reading it through its
+     * observers.
+     * 
+     * @param graph graph to measure
+     * @return estimated footprint of graph
+     */
+    public static Footprint of(Graph<?> graph) {
+        if (graph instanceof MeasuredGraph) {
+            return ((MeasuredGraph<?>) graph).footprint();
+        }
+        return ofHashed(graph);
+    }
+    
+    private static <L> Footprint ofHashed(Graph<L> graph) {
+        long edgeBytes = 0;
+        long edgeCount = 0;
+        for (L v : graph.vertices()) {
+            int degree = graph.targets(v).size();
+            edgeCount += degree;
+            edgeBytes += 2 * hashMap(degree);
+        }
+        int n = graph.vertices().size();
+        return new Footprint(2 * hashMap(n), edgeBytes + 2 * edgeCount * INTEGER,
+                labels(graph.vertices()), 0, 0);
+    }
+    
+    /**
+     * @return estimated bytes of per-vertex containers
+     */
+    public long vertices() {
+        return vertices;
+    }
+    
+    /**
+     * @return estimated bytes of edge storage
+     */
+    public long edges() {
+        return edges;
+    }
+    
+    /**
+     * @return estimated bytes of label objects
+     */
+    public long labels() {
+        return labels;
+    }
+    
+    /**
+     * @return estimated bytes of caches
+     */
+    public long caches() {
+        return caches;
+    }
+    
+    /**
+     * @return estimated bytes of lookup indexes
+     */
+    public long indexes() {
+        return indexes;
+    }
+    
+    /**
+     * @return estimated bytes in total
+     */
+    public long total() {
+        return vertices + edges + labels + caches + indexes;
+    }
+    
+    /**
+     * @param that another footprint
+     * @return the footprint of both this and that
+     */
+    public Footprint plus(Footprint that) {
+        return new Footprint(vertices + that.vertices, edges + that.edges, labels + that.labels,
+                caches + that.caches, indexes + that.indexes);
+    }
+    
+    /**
+     * @return this footprint without its caches
+     */
+    public Footprint withoutCaches() {
+        return new Footprint(vertices, edges, labels, 0, indexes);
+    }
+    
+    /*
+     * Size model, for implementations measuring themselves.
+     */
+    
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+    
+    /**
+     * @param fieldBytes total size of the fields of an object
+     * @return estimated size of the object
+     */
+    public static long object(int fieldBytes) {
+        return align(HEADER + fieldBytes);
+    }
+    
+    /**
+     * @param length length of an array
+     * @param elementBytes size of each element: 1 for bytes, 4 for ints and
+     *                     references, 8 for longs
+     * @return estimated size of the array
+     */
+    public static long array(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+    
+    /**
+     * @param size number of elements in an ArrayList
+     * @return estimated size of the list and its backing array, not counting
+     *         the elements
+     */
+    public static long arrayList(long size) {
+        return object(3 * 4) + array(size + size / 2, REFERENCE);
+    }
+    
+    /**
+     * @param size number of entries in a HashMap (or HashSet, or
+     *             ConcurrentHashMap)
+     * @return estimated size of the map, its table and its entries, not
+     *         counting the keys and values
+     */
+    public static long hashMap(long size) {
+        long table = size == 0 ? 0 : array(Long.highestOneBit(Math.max(1, size * 4 / 3)) * 2, REFERENCE);
+        return object(6 * 4) + table + size * object(4 * REFERENCE);
+    }
+    
+    /**
+     * @param s a string
+     * @return estimated size of s and its characters
+     */
+    public static long string(String s) {
+        return object(REFERENCE + 4) + array(s.length(), 2);
+    }
+    
+    /**
+     * @param labels vertex labels
+     * @return estimated size of the labels: their characters for strings, or
+     *         one small object each otherwise
+     */
+    public static long labels(Iterable<?> labels) {
+        long bytes = 0;
+        for (Object label : labels) {
+            bytes += label instanceof String ? string((String) label) : object(REFERENCE);
+        }
+        return bytes;
+    }
+    
+    @Override public boolean equals(Object obj) {
+        if (!(obj instanceof Footprint)) {
+            return false;
+        }
+        Footprint that = (Footprint) obj;
+        return vertices == that.vertices && edges == that.edges && labels == that.labels
+                && caches == that.caches && indexes == that.indexes;
+    }
+    
+    @Override public int hashCode() {
+        return Long.hashCode((((vertices * 31 + edges) * 31 + labels) * 31 + caches) * 31 + indexes);
+    }
+    
+    /**
+     * @return the total and its breakdown, e.g.
+     *         "1024 bytes (vertices 256, edges 512, labels 256, caches 0, indexes 0)"
+     */
+    @Override public String toString() {
+        return total() + " bytes (vertices " + vertices + ", edges " + edges + ", labels " + labels
+                + ", caches " + caches + ", indexes " + indexes + ")";
+    }
+    
+}
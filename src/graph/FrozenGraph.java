@@ -0,0 +1,388 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, read-optimized implementation of Graph stored in compressed
+ * sparse row form.
+ * Vertices are numbered 0..vertexCount()-1; the targets (and sources) of each
+ * vertex are stored contiguously in primitive arrays, sorted by vertex id, so
+ * traversals touch no per-edge objects.
+ * Mutators throw UnsupportedOperationException.
+ *
+ * <p>Besides the Graph operations, the primitive layout is exposed read-only
+ * through id-based accessors for algorithms that want to avoid boxing.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class FrozenGraph<L> implements MeasuredGraph<L> {
+    
+    private final Object[] labels;
+    private final Map<L, Integer> ids;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] outWeights;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] inWeights;
+    
+    // Abstraction function:
+    //   Represents the graph with vertices labels[0..n) and, for each vertex
+    //     v, an edge to outTargets[i] with weight outWeights[i] for every i
+    //     in [outOffsets[v], outOffsets[v+1]).
+    //   inOffsets, inSources and inWeights index the same edges by target.
+    // Representation invariant:
+    //   ids maps labels[v] to v for every v, and nothing else.
+    //   outOffsets and inOffsets have length n + 1, start at 0, are
+    //     nondecreasing and end at the number of edges.
+    //   Within each vertex's range, targets (resp. sources) are strictly
+    //     increasing, and no weight is zero.
+    //   The in arrays hold exactly the edges of the out arrays.
+    // Safety from rep exposure:
+    //   All fields are private, final and never modified after construction;
+    //     accessors return single elements, never the arrays.
+    
+    /**
+     * Freeze a copy of a graph.
+     *
+     * @param <L> type of vertex labels in the graph
+     * @param graph graph to copy
+     * @return an immutable graph equal to graph at the time of the call
+     */
+    public static <L> FrozenGraph<L> of(Graph<L> graph) {
+        return of(graph, (List<L>) null);
+    }
+    
+    /**
+     * Freeze a copy of a graph, numbering its vertices for locality.
+     *
+     * @param <L> type of vertex labels in the graph
+     * @param graph graph to copy
+     * @param ordering how to number the vertices
+     * @return an immutable graph equal to graph at the time of the call
+     */
+    public static <L> FrozenGraph<L> of(Graph<L> graph, VertexOrdering ordering) {
+        return of(graph).reorder(ordering);
+    }
+    
+    /**
+     * Freeze a copy of a graph, numbering its vertices in a given order.
+     *
+     * @param <L> type of vertex labels in the graph
+     * @param graph graph to copy
+     * @param order the vertices of graph in the order they should be numbered,
+     *              or null for an arbitrary order
+     * @return an immutable graph equal to graph at the time of the call
+     */
+    static <L> FrozenGraph<L> of(Graph<L> graph, List<L> order) {
+        Object[] labels = order == null ? graph.vertices().toArray() : order.toArray();
+        Map<L, Integer> ids = new HashMap<L, Integer>();
+        for (int v = 0; v < labels.length; v++) {
+            @SuppressWarnings("unchecked")
+            L label = (L) labels[v];
+            ids.put(label, v);
+        }
+        if (ids.size() != labels.length) {
+            throw new IllegalArgumentException("vertex order contains duplicates");
+        }
+        
+        int[] outOffsets = new int[labels.length + 1];
+        int[][] targets = new int[labels.length][];
+        int[][] weights = new int[labels.length][];
+        for (int v = 0; v < labels.length; v++) {
+            @SuppressWarnings("unchecked")
+            Map<L, Integer> tgts = graph.targets((L) labels[v]);
+            long[] packed = new long[tgts.size()];
+            int i = 0;
+            for (Map.Entry<L, Integer> e : tgts.entrySet()) {
+                Integer t = ids.get(e.getKey());
+                if (t == null) {
+                    throw new IllegalArgumentException("vertex order is missing " + e.getKey());
+                }
+                packed[i++] = ((long) t << 32) | (e.getValue() & 0xFFFFFFFFL);
+            }
+            Arrays.sort(packed);
+            targets[v] = new int[packed.length];
+            weights[v] = new int[packed.length];
+            for (i = 0; i < packed.length; i++) {
+                targets[v][i] = (int) (packed[i] >>> 32);
+                weights[v][i] = (int) packed[i];
+            }
+            outOffsets[v + 1] = outOffsets[v] + packed.length;
+        }
+        
+        int edgeCount = outOffsets[labels.length];
+        int[] outTargets = new int[edgeCount];
+        int[] outWeights = new int[edgeCount];
+        for (int v = 0; v < labels.length; v++) {
+            System.arraycopy(targets[v], 0, outTargets, outOffsets[v], targets[v].length);
+            System.arraycopy(weights[v], 0, outWeights, outOffsets[v], weights[v].length);
+        }
+        return new FrozenGraph<L>(labels, ids, outOffsets, outTargets, outWeights);
+    }
+    
+    /*
+     * Build a frozen graph from its out arrays, deriving the in arrays.
+     * Takes ownership of the arrays.
+     */
+    FrozenGraph(Object[] labels, Map<L, Integer> ids,
+            int[] outOffsets, int[] outTargets, int[] outWeights) {
+        this.labels = labels;
+        this.ids = ids;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+        
+        // counting sort of the edges by target; scanning sources in increasing
+        // order keeps each in range sorted
+        int n = labels.length;
+        inOffsets = new int[n + 1];
+        for (int t : outTargets) {
+            inOffsets[t + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        inSources = new int[outTargets.length];
+        inWeights = new int[outTargets.length];
+        int[] next = Arrays.copyOf(inOffsets, n);
+        for (int v = 0; v < n; v++) {
+            for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                int slot = next[outTargets[i]]++;
+                inSources[slot] = v;
+                inWeights[slot] = outWeights[i];
+            }
+        }
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert ids.size() == labels.length;
+        assert outOffsets.length == labels.length + 1 && inOffsets.length == labels.length + 1;
+        assert outOffsets[labels.length] == outTargets.length;
+        assert inOffsets[labels.length] == inSources.length;
+        assert outTargets.length == inSources.length;
+    }
+    
+    /**
+     * Renumber the vertices of this graph. The labels, adjacency ranges and
+     * edge arrays of the result are laid out in the new order.
+     *
+     * @param ordering how to number the vertices
+     * @return a graph equal to this one whose vertex ids follow ordering
+     */
+    public FrozenGraph<L> reorder(VertexOrdering ordering) {
+        int[] order = ordering.order(this);
+        int n = labels.length;
+        int[] newIds = new int[n];
+        Object[] newLabels = new Object[n];
+        Map<L, Integer> ids = new HashMap<L, Integer>();
+        for (int v = 0; v < n; v++) {
+            newIds[order[v]] = v;
+            newLabels[v] = labels[order[v]];
+            ids.put(label(order[v]), v);
+        }
+        
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[outTargets.length];
+        int[] weights = new int[outTargets.length];
+        long[] packed = new long[outTargets.length];
+        for (int v = 0; v < n; v++) {
+            int old = order[v];
+            int start = offsets[v];
+            int end = start + outOffsets[old + 1] - outOffsets[old];
+            for (int i = outOffsets[old], j = start; j < end; i++, j++) {
+                packed[j] = ((long) newIds[outTargets[i]] << 32) | (outWeights[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(packed, start, end);
+            for (int j = start; j < end; j++) {
+                targets[j] = (int) (packed[j] >>> 32);
+                weights[j] = (int) packed[j];
+            }
+            offsets[v + 1] = end;
+        }
+        return new FrozenGraph<L>(newLabels, ids, offsets, targets, weights);
+    }
+    
+    /**
+     * @return number of vertices in this graph
+     */
+    public int vertexCount() {
+        return labels.length;
+    }
+    
+    /**
+     * @return number of edges in this graph
+     */
+    public int edgeCount() {
+        return outTargets.length;
+    }
+    
+    @Override public Footprint footprint() {
+        int n = labels.length;
+        return new Footprint(Footprint.array(n, 4) + 2 * Footprint.array(n + 1, 4),
+                4 * Footprint.array(outTargets.length, 4), Footprint.labels(Arrays.asList(labels)), 0,
+                Footprint.hashMap(n) + n * Footprint.INTEGER);
+    }
+    
+    /**
+     * @param label a label
+     * @return the id of the vertex with that label, or -1 if there is none
+     */
+    public int id(L label) {
+        Integer v = ids.get(label);
+        return v == null ? -1 : v;
+    }
+    
+    /**
+     * @param id a vertex id, 0 &lt;= id &lt; vertexCount()
+     * @return the label of that vertex
+     */
+    @SuppressWarnings("unchecked")
+    public L label(int id) {
+        return (L) labels[id];
+    }
+    
+    /**
+     * @param id a vertex id
+     * @return index of the first outgoing edge of that vertex
+     */
+    public int outStart(int id) {
+        return outOffsets[id];
+    }
+    
+    /**
+     * @param id a vertex id
+     * @return index one past the last outgoing edge of that vertex
+     */
+    public int outEnd(int id) {
+        return outOffsets[id + 1];
+    }
+    
+    /**
+     * @param edge an outgoing edge index, 0 &lt;= edge &lt; edgeCount()
+     * @return id of the target of that edge
+     */
+    public int outTarget(int edge) {
+        return outTargets[edge];
+    }
+    
+    /**
+     * @param edge an outgoing edge index, 0 &lt;= edge &lt; edgeCount()
+     * @return weight of that edge
+     */
+    public int outWeight(int edge) {
+        return outWeights[edge];
+    }
+    
+    /**
+     * @param id a vertex id
+     * @return index of the first incoming edge of that vertex
+     */
+    public int inStart(int id) {
+        return inOffsets[id];
+    }
+    
+    /**
+     * @param id a vertex id
+     * @return index one past the last incoming edge of that vertex
+     */
+    public int inEnd(int id) {
+        return inOffsets[id + 1];
+    }
+    
+    /**
+     * @param edge an incoming edge index, 0 &lt;= edge &lt; edgeCount()
+     * @return id of the source of that edge
+     */
+    public int inSource(int edge) {
+        return inSources[edge];
+    }
+    
+    /**
+     * @param edge an incoming edge index, 0 &lt;= edge &lt; edgeCount()
+     * @return weight of that edge
+     */
+    public int inWeight(int edge) {
+        return inWeights[edge];
+    }
+    
+    /**
+     * @param source id of a vertex
+     * @param target id of a vertex
+     * @return the weight of the edge from source to target, or zero if
+     *         there is no such edge
+     */
+    public int weight(int source, int target) {
+        int i = Arrays.binarySearch(outTargets, outOffsets[source], outOffsets[source + 1], target);
+        return i < 0 ? 0 : outWeights[i];
+    }
+    
+    @Override public boolean add(L vertex) {
+        throw new UnsupportedOperationException("frozen graphs are immutable");
+    }
+    
+    @Override public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("frozen graphs are immutable");
+    }
+    
+    @Override public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("frozen graphs are immutable");
+    }
+    
+    @Override public Set<L> vertices() {
+        Set<L> vs = new HashSet<L>();
+        for (int v = 0; v < labels.length; v++) {
+            vs.add(label(v));
+        }
+        return vs;
+    }
+    
+    @Override public Map<L, Integer> sources(L target) {
+        Integer v = ids.get(target);
+        Map<L, Integer> srcs = new HashMap<L, Integer>();
+        if (v == null) {
+            return srcs;
+        }
+        for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+            srcs.put(label(inSources[i]), inWeights[i]);
+        }
+        return srcs;
+    }
+    
+    @Override public Map<L, Integer> targets(L source) {
+        Integer v = ids.get(source);
+        Map<L, Integer> tgts = new HashMap<L, Integer>();
+        if (v == null) {
+            return tgts;
+        }
+        for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+            tgts.put(label(outTargets[i]), outWeights[i]);
+        }
+        return tgts;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        for (int v = 0; v < labels.length; v++) {
+            s.append(labels[v].toString() + "\n");
+        }
+        s.append("\nedges:\n");
+        for (int v = 0; v < labels.length; v++) {
+            for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                s.append(labels[v].toString() + " -> " + labels[outTargets[i]].toString()
+                        + " (" + outWeights[i] + ")\n");
+            }
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,383 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Whole-graph analytics: weighted PageRank, degree distributions and
+ * breadth-first reachability.
+ * 
+ * <p>The graph is frozen once into a {@link FrozenGraph} (or used directly if
+ * it already is one), and every computation runs over its primitive arrays,
+ * split into ranges of vertices that run in parallel on a ForkJoinPool.
+ * Results indexed by vertex are arrays indexed by the frozen graph's vertex
+ * ids; see {@link #frozen()} to map ids to labels.
+ * 
+ * @param <L> type of vertex labels in the graph
+ */
+public class GraphAnalytics<L> {
+    
+    // vertices per leaf task
+    private static final int GRAIN = 4096;
+    
+    private final FrozenGraph<L> graph;
+    private final ForkJoinPool pool;
+    
+    // Abstraction function:
+    //   Represents analytics of graph, computed on pool.
+    // Representation invariant:
+    //   true
+    // Safety from rep exposure:
+    //   graph is immutable and may be shared; results are fresh arrays.
+    
+    /**
+     * Prepare analytics of a graph on the common ForkJoinPool.
+     * 
+     * @param graph graph to analyze; later changes to it are not seen
+     */
+    public GraphAnalytics(Graph<L> graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Prepare analytics of a graph.
+     * 
+     * @param graph graph to analyze; later changes to it are not seen
+     * @param pool pool to run computations on
+     */
+    public GraphAnalytics(Graph<L> graph, ForkJoinPool pool) {
+        this.graph = graph instanceof FrozenGraph ? (FrozenGraph<L>) graph : FrozenGraph.of(graph);
+        this.pool = pool;
+    }
+    
+    /**
+     * @return the frozen graph analyzed, whose ids index the results
+     */
+    public FrozenGraph<L> frozen() {
+        return graph;
+    }
+    
+    /**
+     * Run body(v) for every vertex id v, in parallel.
+     */
+    private void forEachVertex(IntConsumer body) {
+        pool.invoke(new RangeAction(0, graph.vertexCount(), body));
+    }
+    
+    /**
+     * Compute weighted PageRank. A random surfer follows an outgoing edge with
+     * probability proportional to its weight, or with probability 1 - damping
+     * (and always from a vertex with no outgoing edges) jumps to a uniformly
+     * random vertex.
+     * 
+     * @param damping probability of following an edge, 0 &lt;= damping &lt; 1
+     * @param maxIterations maximum number of power iterations, positive
+     * @param tolerance stop once the ranks change by less than this in total
+     *                  (L1 norm) in one iteration
+     * @return the rank of each vertex id; the ranks sum to 1, up to rounding
+     */
+    public double[] pageRank(double damping, int maxIterations, double tolerance) {
+        if (damping < 0 || damping >= 1 || maxIterations <= 0) {
+            throw new IllegalArgumentException("invalid PageRank parameters");
+        }
+        int n = graph.vertexCount();
+        if (n == 0) {
+            return new double[0];
+        }
+        long[] outWeight = new long[n];
+        forEachVertex(v -> {
+            long sum = 0;
+            for (int i = graph.outStart(v); i < graph.outEnd(v); i++) {
+                sum += graph.outWeight(i);
+            }
+            outWeight[v] = sum;
+        });
+        
+        double[] rank = new double[n];
+        double[] next = new double[n];
+        double[] share = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            double[] current = rank;
+            // each vertex's rank per unit of outgoing weight
+            forEachVertex(v -> share[v] = outWeight[v] == 0 ? 0 : current[v] / outWeight[v]);
+            double dangling = pool.invoke(new SumTask(0, n, v -> outWeight[v] == 0 ? current[v] : 0));
+            double base = (1 - damping) / n + damping * dangling / n;
+            double[] target = next;
+            // pull along incoming edges, so each task writes only its own range
+            forEachVertex(v -> {
+                double sum = 0;
+                for (int i = graph.inStart(v); i < graph.inEnd(v); i++) {
+                    sum += share[graph.inSource(i)] * graph.inWeight(i);
+                }
+                target[v] = base + damping * sum;
+            });
+            double change = pool.invoke(new SumTask(0, n, v -> Math.abs(target[v] - current[v])));
+            next = rank;
+            rank = target;
+            if (change < tolerance) {
+                break;
+            }
+        }
+        return rank;
+    }
+    
+    /**
+     * Compute weighted PageRank with damping 0.85, as
+     * {@link #pageRank(double, int, double)}, and label the result.
+     * 
+     * @return a map from every vertex to its rank
+     */
+    public Map<L, Double> pageRank() {
+        double[] rank = pageRank(0.85, 100, 1e-9);
+        Map<L, Double> ranks = new HashMap<L, Double>();
+        for (int v = 0; v < rank.length; v++) {
+            ranks.put(graph.label(v), rank[v]);
+        }
+        return ranks;
+    }
+    
+    /**
+     * @return an array whose element d is the number of vertices with
+     *         exactly d outgoing edges, of length one more than the greatest
+     *         out-degree
+     */
+    public long[] outDegreeDistribution() {
+        return pool.invoke(new HistogramTask(0, graph.vertexCount(),
+                v -> graph.outEnd(v) - graph.outStart(v)));
+    }
+    
+    /**
+     * @return an array whose element d is the number of vertices with
+     *         exactly d incoming edges, of length one more than the greatest
+     *         in-degree
+     */
+    public long[] inDegreeDistribution() {
+        return pool.invoke(new HistogramTask(0, graph.vertexCount(),
+                v -> graph.inEnd(v) - graph.inStart(v)));
+    }
+    
+    /**
+     * Find the vertices reachable from a set of vertices along directed
+     * edges. Each level of the search is expanded in parallel.
+     * 
+     * @param sources ids of the starting vertices
+     * @return the number of edges on a shortest path from any source to each
+     *         vertex id, or -1 for vertices that are not reachable
+     */
+    public int[] distancesFromIds(int... sources) {
+        int n = graph.vertexCount();
+        AtomicIntegerArray distance = new AtomicIntegerArray(n);
+        forEachVertex(v -> distance.lazySet(v, -1));
+        int[] frontier = new int[sources.length];
+        int size = 0;
+        for (int s : sources) {
+            if (distance.compareAndSet(s, -1, 0)) {
+                frontier[size++] = s;
+            }
+        }
+        for (int level = 1; size > 0; level++) {
+            frontier = pool.invoke(new ExpandTask(frontier, 0, size, distance, level));
+            size = frontier.length;
+        }
+        int[] result = new int[n];
+        forEachVertex(v -> result[v] = distance.get(v));
+        return result;
+    }
+    
+    /**
+     * Find the vertices reachable from a vertex, as
+     * {@link #distancesFromIds(int...)}.
+     * 
+     * @param source label of the starting vertex
+     * @return a map from each vertex reachable from source (including source
+     *         itself) to its distance from source; empty if source is not a
+     *         vertex
+     */
+    public Map<L, Integer> distances(L source) {
+        Map<L, Integer> reachable = new HashMap<L, Integer>();
+        int s = graph.id(source);
+        if (s < 0) {
+            return reachable;
+        }
+        int[] distance = distancesFromIds(s);
+        for (int v = 0; v < distance.length; v++) {
+            if (distance[v] >= 0) {
+                reachable.put(graph.label(v), distance[v]);
+            }
+        }
+        return reachable;
+    }
+    
+    /**
+     * Runs a body for each int in a range, splitting the range in parallel.
+     */
+    private static class RangeAction extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+        
+        RangeAction(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+        
+        @Override protected void compute() {
+            if (to - from <= GRAIN) {
+                for (int v = from; v < to; v++) {
+                    body.accept(v);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, mid, body), new RangeAction(mid, to, body));
+        }
+    }
+    
+    /**
+     * Sums a function over a range of ints, in parallel.
+     */
+    private static class SumTask extends RecursiveTask<Double> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int from;
+        private final int to;
+        private final IntToDoubleFunction term;
+        
+        SumTask(int from, int to, IntToDoubleFunction term) {
+            this.from = from;
+            this.to = to;
+            this.term = term;
+        }
+        
+        @Override protected Double compute() {
+            if (to - from <= GRAIN) {
+                double sum = 0;
+                for (int v = from; v < to; v++) {
+                    sum += term.applyAsDouble(v);
+                }
+                return sum;
+            }
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(from, mid, term);
+            left.fork();
+            double right = new SumTask(mid, to, term).compute();
+            return left.join() + right;
+        }
+    }
+    
+    /**
+     * Counts how many ints in a range map to each value, in parallel.
+     */
+    private static class HistogramTask extends RecursiveTask<long[]> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int from;
+        private final int to;
+        private final IntUnaryOperator value;
+        
+        HistogramTask(int from, int to, IntUnaryOperator value) {
+            this.from = from;
+            this.to = to;
+            this.value = value;
+        }
+        
+        @Override protected long[] compute() {
+            if (to - from <= GRAIN) {
+                long[] counts = new long[16];
+                int max = -1;
+                for (int v = from; v < to; v++) {
+                    int d = value.applyAsInt(v);
+                    if (d >= counts.length) {
+                        counts = Arrays.copyOf(counts, Math.max(d + 1, counts.length * 2));
+                    }
+                    counts[d]++;
+                    max = Math.max(max, d);
+                }
+                return Arrays.copyOf(counts, max + 1);
+            }
+            int mid = (from + to) >>> 1;
+            HistogramTask left = new HistogramTask(from, mid, value);
+            left.fork();
+            long[] right = new HistogramTask(mid, to, value).compute();
+            long[] merged = left.join();
+            if (merged.length < right.length) {
+                long[] swap = merged;
+                merged = right;
+                right = swap;
+            }
+            for (int d = 0; d < right.length; d++) {
+                merged[d] += right[d];
+            }
+            return merged;
+        }
+    }
+    
+    /**
+     * Expands a range of a BFS frontier by one level, claiming unvisited
+     * targets with compare-and-set, and returns the next frontier.
+     */
+    private class ExpandTask extends RecursiveTask<int[]> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int[] frontier;
+        private final int from;
+        private final int to;
+        private final AtomicIntegerArray distance;
+        private final int level;
+        
+        ExpandTask(int[] frontier, int from, int to, AtomicIntegerArray distance, int level) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.distance = distance;
+            this.level = level;
+        }
+        
+        @Override protected int[] compute() {
+            if (to - from <= GRAIN / 16) {
+                int[] next = new int[16];
+                int size = 0;
+                for (int i = from; i < to; i++) {
+                    int v = frontier[i];
+                    for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                        int t = graph.outTarget(e);
+                        if (distance.get(t) < 0 && distance.compareAndSet(t, -1, level)) {
+                            if (size == next.length) {
+                                next = Arrays.copyOf(next, size * 2);
+                            }
+                            next[size++] = t;
+                        }
+                    }
+                }
+                return Arrays.copyOf(next, size);
+            }
+            int mid = (from + to) >>> 1;
+            ExpandTask left = new ExpandTask(frontier, from, mid, distance, level);
+            left.fork();
+            int[] right = new ExpandTask(frontier, mid, to, distance, level).compute();
+            int[] merged = left.join();
+            int[] next = Arrays.copyOf(merged, merged.length + right.length);
+            System.arraycopy(right, 0, next, merged.length, right.length);
+            return next;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming export and parallel import of graphs.
+ * 
+ * <p>The edge-list format is UTF-8 text with one record per line: either
+ * {@code source TAB target TAB weight} for an edge, or a single label for a
+ * vertex with no edges. In labels, tab, newline, carriage return and
+ * backslash are written as {@code \t}, {@code \n}, {@code \r} and
+ * {@code \\}. Blank lines are ignored.
+ * 
+ * <p>The DOT format is a Graphviz {@code digraph} listing every vertex, then
+ * every edge with its weight as a label.
+ * 
+ * <p>Export writes each record as it is produced, without building the whole
+ * text in memory or calling String.format; pass a BufferedWriter (or, for a
+ * channel, {@code Channels.newWriter}) for best throughput.
+ */
+public final class GraphIO {
+    
+    private static final int CHUNK_BYTES = 8 << 20;
+    
+    private GraphIO() {
+        throw new AssertionError("not instantiable");
+    }
+    
+    /*
+     * Visit every edge of a graph once, in time linear in the size of
+     * representations that support it.
+     */
+    private static <L> void forEachEdge(Graph<L> graph, EdgeSink<L> sink) throws IOException {
+        if (graph instanceof ConcreteEdgesGraph) {
+            ((ConcreteEdgesGraph<L>) graph).forEachEdge(sink);
+        } else if (graph instanceof ConcreteVerticesGraph) {
+            ((ConcreteVerticesGraph<L>) graph).forEachEdge(sink);
+        } else {
+            for (L source : graph.vertices()) {
+                for (Map.Entry<L, Integer> e : graph.targets(source).entrySet()) {
+                    sink.edge(source, e.getKey(), e.getValue());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Write a graph in edge-list format.
+     * 
+     * @param <L> type of vertex labels in the graph
+     * @param graph graph to write; labels are written with toString()
+     * @param out destination; not closed or flushed
+     * @throws IOException if out cannot be written
+     */
+    public static <L> void writeEdgeList(Graph<L> graph, Writer out) throws IOException {
+        Set<L> touched = new HashSet<L>();
+        char[] digits = new char[11];
+        forEachEdge(graph, (source, target, weight) -> {
+            touched.add(source);
+            touched.add(target);
+            writeEscaped(source.toString(), out);
+            out.write('\t');
+            writeEscaped(target.toString(), out);
+            out.write('\t');
+            writeInt(weight, digits, out);
+            out.write('\n');
+        });
+        for (L v : graph.vertices()) {
+            if (!touched.contains(v)) {
+                writeEscaped(v.toString(), out);
+                out.write('\n');
+            }
+        }
+    }
+    
+    /**
+     * Write a graph in DOT format.
+     * 
+     * @param <L> type of vertex labels in the graph
+     * @param graph graph to write; labels are written with toString()
+     * @param out destination; not closed or flushed
+     * @throws IOException if out cannot be written
+     */
+    public static <L> void writeDot(Graph<L> graph, Writer out) throws IOException {
+        char[] digits = new char[11];
+        out.write("digraph {\n");
+        for (L v : graph.vertices()) {
+            out.write("  ");
+            writeQuoted(v.toString(), out);
+            out.write(";\n");
+        }
+        forEachEdge(graph, (source, target, weight) -> {
+            out.write("  ");
+            writeQuoted(source.toString(), out);
+            out.write(" -> ");
+            writeQuoted(target.toString(), out);
+            out.write(" [label=");
+            writeInt(weight, digits, out);
+            out.write("];\n");
+        });
+        out.write("}\n");
+    }
+    
+    private static void writeEscaped(String label, Writer out) throws IOException {
+        int start = 0;
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            char escape;
+            switch (c) {
+            case '\t': escape = 't'; break;
+            case '\n': escape = 'n'; break;
+            case '\r': escape = 'r'; break;
+            case '\\': escape = '\\'; break;
+            default: continue;
+            }
+            out.write(label, start, i - start);
+            out.write('\\');
+            out.write(escape);
+            start = i + 1;
+        }
+        out.write(label, start, label.length() - start);
+    }
+    
+    private static void writeQuoted(String label, Writer out) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c == '"' || c == '\\' || c == '\n') {
+                out.write(label, start, i - start);
+                out.write(c == '\n' ? "\\n" : c == '"' ? "\\\"" : "\\\\");
+                start = i + 1;
+            }
+        }
+        out.write(label, start, label.length() - start);
+        out.write('"');
+    }
+    
+    // write the decimal digits of value without allocating
+    private static void writeInt(int value, char[] digits, Writer out) throws IOException {
+        long v = value;
+        boolean negative = v < 0;
+        if (negative) {
+            v = -v;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        if (negative) {
+            digits[--i] = '-';
+        }
+        out.write(digits, i, digits.length - i);
+    }
+    
+    /**
+     * Read an edge-list file into a graph. The file is split into chunks at
+     * line boundaries, and the chunks are parsed in parallel; records are then
+     * applied to graph in file order, as if by add() and set(), using
+     * {@link BulkGraph#setAll(Map)} when graph supports it.
+     * Parsing runs at most {@code threads} chunks ahead of the chunk being
+     * applied, so the parsed records held in memory do not grow with the size
+     * of the file.
+     * 
+     * @param file an edge-list file
+     * @param graph graph to add the vertices and edges of file to
+     * @param threads number of threads to parse with, positive
+     * @return the number of edge records read
+     * @throws IOException if file cannot be read or is not in edge-list format
+     */
+    public static int readEdgeList(Path file, Graph<String> graph, int threads) throws IOException {
+        return readEdgeList(file, graph, threads, CHUNK_BYTES);
+    }
+    
+    /*
+     * Read an edge-list file as above, in chunks of about chunkBytes bytes;
+     * no line may be longer than half of chunkBytes.
+     */
+    static int readEdgeList(Path file, Graph<String> graph, int threads, int chunkBytes) throws IOException {
+        if (threads <= 0 || chunkBytes <= 1) {
+            throw new IllegalArgumentException("threads and chunk size must be positive");
+        }
+        Queue<EdgeListChunk> chunks = new ArrayDeque<EdgeListChunk>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long end = Math.min(size, start + chunkBytes);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, chunkBytes + (long) chunkBytes / 2));
+                // extend the chunk to the end of its last line
+                int limit = (int) (end - start);
+                while (start + limit < size && limit > 0 && buffer.get(limit - 1) != '\n') {
+                    if (limit == buffer.limit()) {
+                        throw new IOException("line too long at byte " + (start + limit));
+                    }
+                    limit++;
+                }
+                chunks.add(new EdgeListChunk(buffer, start, limit));
+                start += limit;
+            }
+        }
+        
+        // parse at most `threads` chunks ahead of the one being applied, so
+        // only that many parsed chunks are on the heap at once
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Queue<Future<EdgeListChunk>> parsing = new ArrayDeque<Future<EdgeListChunk>>();
+            int edges = 0;
+            while (!chunks.isEmpty() || !parsing.isEmpty()) {
+                while (!chunks.isEmpty() && parsing.size() < threads) {
+                    EdgeListChunk chunk = chunks.remove();
+                    parsing.add(pool.submit(() -> chunk.parse()));
+                }
+                edges += parsing.remove().get().applyTo(graph);
+            }
+            return edges;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading " + file, e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
+
+/**
+ * A range of lines of an edge-list file, and the records parsed from it.
+ * Mutable.
+ * This class is internal to GraphIO.
+ */
+class EdgeListChunk {
+    
+    private final ByteBuffer buffer;
+    private final long offset;
+    private final int length;
+    private final List<String> sources = new ArrayList<String>();
+    private final List<String> targets = new ArrayList<String>();
+    private int[] weights = new int[64];
+    
+    // Abstraction function:
+    //   Represents the lines in bytes [offset, offset + length) of a file,
+    //     held in buffer[0..length), and the records parsed from them so
+    //     far: record i is an edge sources[i] -> targets[i] with weight
+    //     weights[i], or the vertex sources[i] if targets[i] is null.
+    // Representation invariant:
+    //   sources.size() == targets.size() <= weights.length
+    // Safety from rep exposure:
+    //   All fields are private; buffer is read-only.
+    
+    EdgeListChunk(ByteBuffer buffer, long offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+    
+    EdgeListChunk parse() throws IOException {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes, 0, length);
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            int tab1 = -1;
+            int tab2 = -1;
+            while (lineEnd < length && bytes[lineEnd] != '\n') {
+                if (bytes[lineEnd] == '\t') {
+                    if (tab1 < 0) {
+                        tab1 = lineEnd;
+                    } else if (tab2 < 0) {
+                        tab2 = lineEnd;
+                    } else {
+                        throw new IOException("too many fields at byte " + (offset + lineStart));
+                    }
+                }
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (end > lineStart) {
+                if (tab1 < 0) {
+                    add(label(bytes, lineStart, end), null, 0);
+                } else if (tab2 < 0) {
+                    throw new IOException("edge without weight at byte " + (offset + lineStart));
+                } else {
+                    add(label(bytes, lineStart, tab1), label(bytes, tab1 + 1, tab2),
+                            weight(bytes, tab2 + 1, end, offset + lineStart));
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return this;
+    }
+    
+    private void add(String source, String target, int weight) {
+        if (sources.size() == weights.length) {
+            weights = Arrays.copyOf(weights, weights.length * 2);
+        }
+        weights[sources.size()] = weight;
+        sources.add(source);
+        targets.add(target);
+    }
+    
+    private static String label(byte[] bytes, int start, int end) {
+        String raw = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        if (raw.indexOf('\\') < 0) {
+            return raw;
+        }
+        StringBuilder label = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '\\' && i + 1 < raw.length()) {
+                char e = raw.charAt(++i);
+                label.append(e == 't' ? '\t' : e == 'n' ? '\n' : e == 'r' ? '\r' : e);
+            } else {
+                label.append(c);
+            }
+        }
+        return label.toString();
+    }
+    
+    private static int weight(byte[] bytes, int start, int end, long line) throws IOException {
+        boolean negative = start < end && bytes[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 10) {
+            throw new IOException("bad weight at byte " + line);
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("bad weight at byte " + line);
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value != (int) value) {
+            throw new IOException("weight out of range at byte " + line);
+        }
+        return (int) value;
+    }
+    
+    /*
+     * Apply the parsed records to graph in order.
+     * Returns the number of edge records.
+     */
+    int applyTo(Graph<String> graph) {
+        int edges = 0;
+        if (graph instanceof BulkGraph) {
+            Map<String, Map<String, Integer>> batch = new HashMap<String, Map<String, Integer>>();
+            for (int i = 0; i < sources.size(); i++) {
+                if (targets.get(i) != null) {
+                    batch.computeIfAbsent(sources.get(i), s -> new HashMap<String, Integer>())
+                            .put(targets.get(i), weights[i]);
+                    edges++;
+                }
+            }
+            ((BulkGraph<String>) graph).setAll(batch);
+            for (int i = 0; i < sources.size(); i++) {
+                if (targets.get(i) == null) {
+                    graph.add(sources.get(i));
+                }
+            }
+            return edges;
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            if (targets.get(i) == null) {
+                graph.add(sources.get(i));
+            } else {
+                graph.set(sources.get(i), targets.get(i), weights[i]);
+                edges++;
+            }
+        }
+        return edges;
+    }
+}
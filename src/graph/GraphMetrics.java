@@ -0,0 +1,208 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of low-overhead counters and histograms for graph
+ * and poet operations.
+ * 
+ * <p>Recording is off unless the JVM is started with
+ * {@code -Dgraph.metrics=true}. Instrumented code guards every recording
+ * with {@link #ENABLED}, a compile-time-constant-like static final that the
+ * JIT folds away, so disabled instrumentation costs nothing beyond the
+ * untaken branch.
+ * 
+ * <p>While metrics are enabled, slow calls are also emitted as JDK Flight
+ * Recorder events (see {@link FlightEvents}), which appear in any running
+ * recording. With metrics disabled, no event is created and the Flight
+ * Recorder API is never loaded.
+ * 
+ * <p>Metric names are dotted lowercase paths such as {@code graph.targets}.
+ * Latency histograms are in nanoseconds; size histograms (such as degrees
+ * and fan-outs) count elements.
+ */
+public final class GraphMetrics {
+    
+    /** true if metrics are recorded; set with -Dgraph.metrics=true */
+    public static final boolean ENABLED = Boolean.getBoolean("graph.metrics");
+    
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+    
+    private GraphMetrics() {}
+    
+    /**
+     * @param name metric name
+     * @return the counter with that name, created on first use
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+    
+    /**
+     * @param name metric name
+     * @return the histogram with that name, created on first use
+     */
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+    
+    /**
+     * Reset every registered metric to zero.
+     */
+    public static void reset() {
+        for (Counter c : counters.values()) {
+            c.reset();
+        }
+        for (Histogram h : histograms.values()) {
+            h.reset();
+        }
+    }
+    
+    /**
+     * @return a human-readable summary of every registered metric, one per
+     *         line, sorted by name
+     */
+    public static String report() {
+        Map<String, String> lines = new TreeMap<String, String>();
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            lines.put(e.getKey(), e.getKey() + " count=" + e.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            lines.put(e.getKey(), e.getKey() + " " + e.getValue());
+        }
+        StringBuilder s = new StringBuilder();
+        for (String line : lines.values()) {
+            s.append(line).append('\n');
+        }
+        return s.toString();
+    }
+    
+    /**
+     * A monotonically increasing count. Thread-safe.
+     */
+    public static final class Counter {
+        
+        private final LongAdder count = new LongAdder();
+        
+        private Counter() {}
+        
+        /**
+         * Add one to this counter.
+         */
+        public void increment() {
+            count.increment();
+        }
+        
+        /**
+         * @param n amount to add to this counter
+         */
+        public void add(long n) {
+            count.add(n);
+        }
+        
+        /**
+         * @return current value of this counter
+         */
+        public long get() {
+            return count.sum();
+        }
+        
+        private void reset() {
+            count.reset();
+        }
+    }
+    
+    /**
+     * A histogram of nonnegative values with power-of-two buckets.
+     * Percentiles are approximate: they report the upper bound of the bucket
+     * that contains the requested rank, so they are within a factor of two of
+     * the true value. Thread-safe.
+     */
+    public static final class Histogram {
+        
+        private static final int BUCKETS = 64;
+        
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        
+        // Abstraction function:
+        //   Represents the multiset of recorded values, coarsened so that
+        //     buckets[b] counts the values v with 64 - numberOfLeadingZeros(v) == b.
+        // Representation invariant:
+        //   count is the sum of buckets (up to concurrent updates).
+        // Safety from rep exposure:
+        //   All fields are private.
+        
+        private Histogram() {}
+        
+        /**
+         * @param value value to record; negative values are recorded as zero
+         */
+        public void record(long value) {
+            long v = Math.max(value, 0);
+            buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(v)));
+            count.increment();
+            sum.add(v);
+        }
+        
+        /**
+         * @return number of recorded values
+         */
+        public long count() {
+            return count.sum();
+        }
+        
+        /**
+         * @return mean of the recorded values, or zero if there are none
+         */
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+        
+        /**
+         * @param p a fraction, 0 &lt;= p &lt;= 1
+         * @return an upper bound on the p-quantile of the recorded values
+         *         (within a factor of two), or zero if there are none
+         */
+        public long percentile(double p) {
+            long total = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                total += buckets.get(b);
+            }
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank && seen > 0) {
+                    return b == 0 ? 0 : (b >= 63 ? Long.MAX_VALUE : (1L << b) - 1);
+                }
+            }
+            return 0;
+        }
+        
+        private void reset() {
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets.set(b, 0);
+            }
+            count.reset();
+            sum.reset();
+        }
+        
+        @Override public String toString() {
+            return String.format("count=%d mean=%.1f p50<=%d p99<=%d max<=%d",
+                    count(), mean(), percentile(0.5), percentile(0.99), percentile(1.0));
+        }
+    }
+    
+}
@@ -0,0 +1,176 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An implementation of IntGraph using open-addressing int-to-int maps for
+ * the outgoing and incoming edges of every vertex.
+ */
+public class HashIntGraph implements IntGraph {
+    
+    private final IntIntMap slots = new IntIntMap();
+    private int[] labels = new int[8];
+    private IntIntMap[] out = new IntIntMap[8];
+    private IntIntMap[] in = new IntIntMap[8];
+    private int slotCount = 0;
+    private int[] freeSlots = new int[8];
+    private int freeCount = 0;
+    
+    // Abstraction function:
+    //   Represents the graph whose vertices are the keys of slots; the vertex
+    //     v with slots.get(v) == s + 1 has an edge to t with weight w iff
+    //     out[s] maps t to w.
+    // Representation invariant:
+    //   slots maps each vertex to (its slot + 1); for every slot s in use,
+    //     labels[s] is its vertex and out[s], in[s] are non-null; freeSlots
+    //     [0..freeCount) are the unused slots below slotCount, whose out[s]
+    //     and in[s] are null.
+    //   out[s] maps t to w iff in[slot of t] maps labels[s] to w; no weight
+    //     is zero.
+    // Safety from rep exposure:
+    //   All fields are private; visitors only receive ints.
+    
+    public HashIntGraph() {}
+    
+    private void checkRep() {
+        assert slots.size() + freeCount == slotCount;
+        assert labels.length == out.length && out.length == in.length;
+    }
+    
+    // slot of vertex, or -1 if absent
+    private int slotOf(int vertex) {
+        return slots.get(vertex) - 1;
+    }
+    
+    // slot of vertex, adding the vertex if absent
+    private int slotOrAdd(int vertex) {
+        int s = slotOf(vertex);
+        if (s >= 0) {
+            return s;
+        }
+        if (freeCount > 0) {
+            s = freeSlots[--freeCount];
+        } else {
+            s = slotCount++;
+            if (s == labels.length) {
+                labels = Arrays.copyOf(labels, s * 2);
+                out = Arrays.copyOf(out, s * 2);
+                in = Arrays.copyOf(in, s * 2);
+            }
+        }
+        labels[s] = vertex;
+        out[s] = new IntIntMap();
+        in[s] = new IntIntMap();
+        slots.put(vertex, s + 1);
+        return s;
+    }
+    
+    @Override public boolean add(int vertex) {
+        if (slotOf(vertex) >= 0) {
+            return false;
+        }
+        slotOrAdd(vertex);
+        checkRep();
+        return true;
+    }
+    
+    @Override public int set(int source, int target, int weight) {
+        if (weight == 0) {
+            int s = slotOf(source);
+            int t = slotOf(target);
+            if (s < 0 || t < 0) {
+                return 0;
+            }
+            in[t].remove(source);
+            return out[s].remove(target);
+        }
+        int s = slotOrAdd(source);
+        int t = slotOrAdd(target);
+        in[t].put(source, weight);
+        int old = out[s].put(target, weight);
+        checkRep();
+        return old;
+    }
+    
+    @Override public boolean remove(int vertex) {
+        int s = slotOf(vertex);
+        if (s < 0) {
+            return false;
+        }
+        out[s].forEach((t, w) -> {
+            if (t != vertex) {
+                in[slotOf(t)].remove(vertex);
+            }
+        });
+        in[s].forEach((src, w) -> {
+            if (src != vertex) {
+                out[slotOf(src)].remove(vertex);
+            }
+        });
+        out[s] = null;
+        in[s] = null;
+        slots.remove(vertex);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = s;
+        checkRep();
+        return true;
+    }
+    
+    @Override public boolean contains(int vertex) {
+        return slotOf(vertex) >= 0;
+    }
+    
+    @Override public int vertexCount() {
+        return slots.size();
+    }
+    
+    @Override public int weight(int source, int target) {
+        int s = slotOf(source);
+        return s < 0 ? 0 : out[s].get(target);
+    }
+    
+    @Override public int outDegree(int source) {
+        int s = slotOf(source);
+        return s < 0 ? 0 : out[s].size();
+    }
+    
+    @Override public int inDegree(int target) {
+        int t = slotOf(target);
+        return t < 0 ? 0 : in[t].size();
+    }
+    
+    @Override public void forEachVertex(IntConsumer visitor) {
+        slots.forEach((vertex, slot) -> visitor.accept(vertex));
+    }
+    
+    @Override public void forEachTarget(int source, EdgeVisitor visitor) {
+        int s = slotOf(source);
+        if (s >= 0) {
+            out[s].forEach(visitor);
+        }
+    }
+    
+    @Override public void forEachSource(int target, EdgeVisitor visitor) {
+        int t = slotOf(target);
+        if (t >= 0) {
+            in[t].forEach(visitor);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        forEachVertex(v -> s.append(v).append('\n'));
+        s.append("\nedges:\n");
+        forEachVertex(v -> forEachTarget(v, (t, w) ->
+                s.append(v).append(" -> ").append(t).append(" (").append(w).append(")\n")));
+        return s.toString();
+    }
+    
+}
@@ -0,0 +1,148 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Graph stored as hash maps of outgoing and incoming edges per vertex.
+ * Mutable.
+ * This class is internal to the reps of AdaptiveGraph, ShardServer and
+ * WindowedGraph.
+ */
+class HashRep<L> implements IncrementalGraph<L>, MeasuredGraph<L> {
+    
+    private final Map<L, Map<L, Integer>> out = new HashMap<L, Map<L, Integer>>();
+    private final Map<L, Map<L, Integer>> in = new HashMap<L, Map<L, Integer>>();
+    
+    // Abstraction function:
+    //   Represents the graph with vertices out.keySet() and an edge from u to
+    //     v with weight w iff out.get(u) maps v to w.
+    // Representation invariant:
+    //   out and in have the same key set; out.get(u) maps v to w iff
+    //     in.get(v) maps u to w; no weight is zero.
+    // Safety from rep exposure:
+    //   All fields are private; only fresh sets and maps are returned.
+    
+    /**
+     * Create an empty graph.
+     */
+    HashRep() {}
+    
+    /**
+     * Copy a graph into hashed form.
+     */
+    HashRep(Graph<L> graph) {
+        for (L v : graph.vertices()) {
+            add(v);
+        }
+        for (L v : graph.vertices()) {
+            for (Map.Entry<L, Integer> e : graph.targets(v).entrySet()) {
+                set(v, e.getKey(), e.getValue());
+            }
+        }
+    }
+    
+    @Override public boolean add(L vertex) {
+        if (out.containsKey(vertex)) {
+            return false;
+        }
+        out.put(vertex, new HashMap<L, Integer>());
+        in.put(vertex, new HashMap<L, Integer>());
+        return true;
+    }
+    
+    @Override public int set(L source, L target, int weight) {
+        Map<L, Integer> tgts = out.get(source);
+        Integer old = tgts == null ? null : tgts.get(target);
+        if (weight == 0) {
+            if (old != null) {
+                tgts.remove(target);
+                in.get(target).remove(source);
+            }
+        } else {
+            add(source);
+            add(target);
+            out.get(source).put(target, weight);
+            in.get(target).put(source, weight);
+        }
+        return old == null ? 0 : old;
+    }
+    
+    @Override public void increment(L source, L target, int delta) {
+        set(source, target, weight(source, target) + delta);
+    }
+    
+    /**
+     * @return the weight of the edge from source to target, or zero if there
+     *         is none
+     */
+    int weight(L source, L target) {
+        Map<L, Integer> tgts = out.get(source);
+        Integer w = tgts == null ? null : tgts.get(target);
+        return w == null ? 0 : w;
+    }
+    
+    @Override public boolean remove(L vertex) {
+        Map<L, Integer> tgts = out.remove(vertex);
+        if (tgts == null) {
+            return false;
+        }
+        Map<L, Integer> srcs = in.remove(vertex);
+        for (L t : tgts.keySet()) {
+            if (!t.equals(vertex)) {
+                in.get(t).remove(vertex);
+            }
+        }
+        for (L s : srcs.keySet()) {
+            if (!s.equals(vertex)) {
+                out.get(s).remove(vertex);
+            }
+        }
+        return true;
+    }
+    
+    @Override public Set<L> vertices() {
+        return new HashSet<L>(out.keySet());
+    }
+    
+    @Override public Map<L, Integer> sources(L target) {
+        Map<L, Integer> srcs = in.get(target);
+        return srcs == null ? new HashMap<L, Integer>() : new HashMap<L, Integer>(srcs);
+    }
+    
+    @Override public Map<L, Integer> targets(L source) {
+        Map<L, Integer> tgts = out.get(source);
+        return tgts == null ? new HashMap<L, Integer>() : new HashMap<L, Integer>(tgts);
+    }
+    
+    @Override public Footprint footprint() {
+        long edgeBytes = 0;
+        for (Map<L, Integer> tgts : out.values()) {
+            edgeBytes += Footprint.hashMap(tgts.size()) + tgts.size() * Footprint.INTEGER;
+        }
+        for (Map<L, Integer> srcs : in.values()) {
+            edgeBytes += Footprint.hashMap(srcs.size()) + srcs.size() * Footprint.INTEGER;
+        }
+        return new Footprint(2 * Footprint.hashMap(out.size()), edgeBytes, Footprint.labels(out.keySet()), 0, 0);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        for (L v : out.keySet()) {
+            s.append(v.toString() + "\n");
+        }
+        s.append("\nedges:\n");
+        for (Map.Entry<L, Map<L, Integer>> e : out.entrySet()) {
+            for (Map.Entry<L, Integer> t : e.getValue().entrySet()) {
+                s.append(e.getKey() + " -> " + t.getKey() + " (" + t.getValue() + ")\n");
+            }
+        }
+        return s.toString();
+    }
+}
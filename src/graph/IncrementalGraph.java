@@ -0,0 +1,30 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+/**
+ * A Graph that can adjust an edge weight by a delta in one operation.
+ * Counting clients (such as GraphPoet building an affinity graph) use this
+ * instead of reading the weight with targets() and writing it back with
+ * set(), which lets implementations avoid a read per update, batch updates,
+ * or log them compactly.
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public interface IncrementalGraph<L> extends Graph<L> {
+    
+    /**
+     * Add delta to the weight of an edge, as if by
+     * {@code set(source, target, w + delta)} where w is the current weight of
+     * the edge (or zero if there is none). In particular, the edge and its
+     * vertices are added if w is zero, and the edge is removed if the new
+     * weight is zero.
+     * 
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param delta amount to add to the weight of the edge
+     */
+    public void increment(L source, L target, int delta);
+    
+}
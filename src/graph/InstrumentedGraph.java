@@ -0,0 +1,145 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Map;
+import java.util.Set;
+
+import graph.GraphMetrics.Counter;
+import graph.GraphMetrics.Histogram;
+
+/**
+ * A Graph that forwards every operation to another graph while recording
+ * operation counts, latencies and vertex degrees in {@link GraphMetrics},
+ * and emitting a Flight Recorder event for each slow operation (see
+ * {@link FlightEvents}).
+ * 
+ * <p>Metrics recorded (when {@link GraphMetrics#ENABLED}):
+ * <ul><li> {@code graph.add}, {@code graph.set}, {@code graph.remove},
+ *          {@code graph.vertices}, {@code graph.sources},
+ *          {@code graph.targets}: latency histograms
+ *     <li> {@code graph.sources.degree}, {@code graph.targets.degree}:
+ *          in- and out-degree of each vertex queried, which exposes degree
+ *          skew
+ *     <li> {@code graph.set.removals}: number of set() calls with weight zero
+ * </ul>
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class InstrumentedGraph<L> implements MeasuredGraph<L> {
+    
+    private static final Histogram ADD = GraphMetrics.histogram("graph.add");
+    private static final Histogram SET = GraphMetrics.histogram("graph.set");
+    private static final Counter SET_REMOVALS = GraphMetrics.counter("graph.set.removals");
+    private static final Histogram REMOVE = GraphMetrics.histogram("graph.remove");
+    private static final Histogram VERTICES = GraphMetrics.histogram("graph.vertices");
+    private static final Histogram SOURCES = GraphMetrics.histogram("graph.sources");
+    private static final Histogram SOURCES_DEGREE = GraphMetrics.histogram("graph.sources.degree");
+    private static final Histogram TARGETS = GraphMetrics.histogram("graph.targets");
+    private static final Histogram TARGETS_DEGREE = GraphMetrics.histogram("graph.targets.degree");
+    
+    private final Graph<L> graph;
+    
+    // Abstraction function:
+    //   Represents the graph graph.
+    // Representation invariant:
+    //   true
+    // Safety from rep exposure:
+    //   graph is shared with the client deliberately; all results come
+    //     straight from it.
+    
+    /**
+     * @param graph graph to instrument; changes made directly to it are not
+     *              recorded
+     */
+    public InstrumentedGraph(Graph<L> graph) {
+        this.graph = graph;
+    }
+    
+    // record the latency of an operation, and emit an event if it was slow;
+    // called only if GraphMetrics.ENABLED
+    private void record(Histogram latency, long start, String operation, Object vertex, int degree) {
+        long nanos = System.nanoTime() - start;
+        latency.record(nanos);
+        if (nanos >= FlightEvents.SLOW_NANOS) {
+            FlightEvents.operation(operation, vertex, degree, graph.getClass().getSimpleName(), nanos);
+        }
+    }
+    
+    @Override public boolean add(L vertex) {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean res = graph.add(vertex);
+        if (GraphMetrics.ENABLED) {
+            record(ADD, start, "add", vertex, 0);
+        }
+        return res;
+    }
+    
+    @Override public int set(L source, L target, int weight) {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        int res = graph.set(source, target, weight);
+        if (GraphMetrics.ENABLED) {
+            record(SET, start, "set", source, 1);
+            if (weight == 0) {
+                SET_REMOVALS.increment();
+            }
+        }
+        return res;
+    }
+    
+    @Override public boolean remove(L vertex) {
+        int degree = 0;
+        if (GraphMetrics.ENABLED) {
+            // the edges removed with vertex, read before they are gone and
+            // outside the timed call
+            Map<L, Integer> targets = graph.targets(vertex);
+            degree = targets.size() + graph.sources(vertex).size() - (targets.containsKey(vertex) ? 1 : 0);
+        }
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean res = graph.remove(vertex);
+        if (GraphMetrics.ENABLED) {
+            record(REMOVE, start, "remove", vertex, degree);
+        }
+        return res;
+    }
+    
+    @Override public Set<L> vertices() {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        Set<L> res = graph.vertices();
+        if (GraphMetrics.ENABLED) {
+            record(VERTICES, start, "vertices", null, res.size());
+        }
+        return res;
+    }
+    
+    @Override public Map<L, Integer> sources(L target) {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        Map<L, Integer> res = graph.sources(target);
+        if (GraphMetrics.ENABLED) {
+            record(SOURCES, start, "sources", target, res.size());
+            SOURCES_DEGREE.record(res.size());
+        }
+        return res;
+    }
+    
+    @Override public Map<L, Integer> targets(L source) {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        Map<L, Integer> res = graph.targets(source);
+        if (GraphMetrics.ENABLED) {
+            record(TARGETS, start, "targets", source, res.size());
+            TARGETS_DEGREE.record(res.size());
+        }
+        return res;
+    }
+    
+    @Override public Footprint footprint() {
+        return Footprint.of(graph);
+    }
+    
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+    
+}
@@ -0,0 +1,131 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A mutable weighted directed graph with int-labeled vertices.
+ * This is the primitive counterpart of {@link Graph Graph&lt;Integer&gt;}: it has
+ * the same specification, but labels and weights are passed as {@code int}
+ * and adjacency is observed through visitors, so no operation boxes.
+ * Vertices have distinct labels; edges are directed and have a nonzero
+ * weight.
+ * 
+ * <p>Use {@link IntGraphAdapter} to pass an IntGraph where a Graph&lt;Integer&gt;
+ * is expected.
+ */
+public interface IntGraph {
+    
+    /**
+     * Receives the edges adjacent to a vertex.
+     */
+    @FunctionalInterface
+    public interface EdgeVisitor {
+        
+        /**
+         * @param vertex label of the vertex at the other end of the edge
+         * @param weight weight of the edge
+         */
+        public void visit(int vertex, int weight);
+    }
+    
+    /**
+     * Create an empty graph.
+     * 
+     * @return a new empty weighted directed graph
+     */
+    public static IntGraph empty() {
+        return new HashIntGraph();
+    }
+    
+    /**
+     * Add a vertex to this graph.
+     * 
+     * @param vertex label for the new vertex
+     * @return true if this graph did not already include a vertex with the
+     *         given label; otherwise false (and this graph is not modified)
+     */
+    public boolean add(int vertex);
+    
+    /**
+     * Add, change, or remove a weighted directed edge in this graph, as
+     * specified by {@link Graph#set(Object, Object, int)}.
+     * 
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param weight weight of the edge, or zero to remove it
+     * @return the previous weight of the edge, or zero if there was no such
+     *         edge
+     */
+    public int set(int source, int target, int weight);
+    
+    /**
+     * Remove a vertex from this graph; any edges to or from the vertex are
+     * also removed.
+     * 
+     * @param vertex label of the vertex to remove
+     * @return true if this graph included a vertex with the given label;
+     *         otherwise false (and this graph is not modified)
+     */
+    public boolean remove(int vertex);
+    
+    /**
+     * @param vertex a label
+     * @return true if this graph includes a vertex with that label
+     */
+    public boolean contains(int vertex);
+    
+    /**
+     * @return number of vertices in this graph
+     */
+    public int vertexCount();
+    
+    /**
+     * @param source a label
+     * @param target a label
+     * @return the weight of the edge from source to target, or zero if there
+     *         is no such edge
+     */
+    public int weight(int source, int target);
+    
+    /**
+     * @param source a label
+     * @return number of edges from source
+     */
+    public int outDegree(int source);
+    
+    /**
+     * @param target a label
+     * @return number of edges to target
+     */
+    public int inDegree(int target);
+    
+    /**
+     * Visit every vertex of this graph once, in unspecified order.
+     * The graph must not be modified during the visit.
+     * 
+     * @param visitor receives the label of each vertex
+     */
+    public void forEachVertex(IntConsumer visitor);
+    
+    /**
+     * Visit every edge from a vertex once, in unspecified order.
+     * The graph must not be modified during the visit.
+     * 
+     * @param source a label
+     * @param visitor receives the target and weight of each edge from source
+     */
+    public void forEachTarget(int source, EdgeVisitor visitor);
+    
+    /**
+     * Visit every edge to a vertex once, in unspecified order.
+     * The graph must not be modified during the visit.
+     * 
+     * @param target a label
+     * @param visitor receives the source and weight of each edge to target
+     */
+    public void forEachSource(int target, EdgeVisitor visitor);
+    
+}
@@ -0,0 +1,78 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A view of an IntGraph as a Graph&lt;Integer&gt;.
+ * Changes made through the view write through to the IntGraph, and changes
+ * made to the IntGraph are visible through the view. Only the view boxes
+ * labels and weights; code that uses the IntGraph directly does not.
+ */
+public class IntGraphAdapter implements Graph<Integer> {
+    
+    private final IntGraph graph;
+    
+    // Abstraction function:
+    //   Represents the graph graph, with labels and weights boxed.
+    // Representation invariant:
+    //   true
+    // Safety from rep exposure:
+    //   graph is shared with the client deliberately; returned sets and maps
+    //     are fresh copies.
+    
+    /**
+     * @param graph the graph to view
+     */
+    public IntGraphAdapter(IntGraph graph) {
+        this.graph = graph;
+    }
+    
+    /**
+     * @return the underlying IntGraph
+     */
+    public IntGraph unwrap() {
+        return graph;
+    }
+    
+    @Override public boolean add(Integer vertex) {
+        return graph.add(vertex);
+    }
+    
+    @Override public int set(Integer source, Integer target, int weight) {
+        return graph.set(source, target, weight);
+    }
+    
+    @Override public boolean remove(Integer vertex) {
+        return graph.remove(vertex);
+    }
+    
+    @Override public Set<Integer> vertices() {
+        Set<Integer> vs = new HashSet<Integer>();
+        graph.forEachVertex(vs::add);
+        return vs;
+    }
+    
+    @Override public Map<Integer, Integer> sources(Integer target) {
+        Map<Integer, Integer> srcs = new HashMap<Integer, Integer>();
+        graph.forEachSource(target, srcs::put);
+        return srcs;
+    }
+    
+    @Override public Map<Integer, Integer> targets(Integer source) {
+        Map<Integer, Integer> tgts = new HashMap<Integer, Integer>();
+        graph.forEachTarget(source, tgts::put);
+        return tgts;
+    }
+    
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+    
+}
@@ -0,0 +1,152 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+/**
+ * A mutable map from int keys to nonzero int values, stored in two parallel
+ * arrays with open addressing and linear probing, so no entry is boxed.
+ * A value of zero stands for "no entry".
+ * 
+ * <p>This class is internal to the rep of the IntGraph implementations.
+ */
+final class IntIntMap {
+    
+    private static final int MIN_CAPACITY = 4;
+    
+    private int[] keys;
+    private int[] values;
+    private int size = 0;
+    
+    // Abstraction function:
+    //   Represents the map from keys[i] to values[i] for every i with
+    //     values[i] != 0.
+    // Representation invariant:
+    //   keys.length == values.length is a power of two, at least MIN_CAPACITY,
+    //     and more than twice size.
+    //   size is the number of nonzero values.
+    //   Every entry is reachable by linear probing from the slot its key
+    //     hashes to without passing an empty slot, and keys are distinct.
+    // Safety from rep exposure:
+    //   All fields are private and the arrays are never returned.
+    
+    IntIntMap() {
+        this(MIN_CAPACITY);
+    }
+    
+    /**
+     * @param expectedSize number of entries to make room for
+     */
+    IntIntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2 + 1) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+    
+    private void checkRep() {
+        assert Integer.bitCount(keys.length) == 1 && keys.length == values.length;
+        assert size * 2 < keys.length;
+    }
+    
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    // slot holding key, or the empty slot where it would go
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * @param key a key
+     * @return the value for key, or zero if there is none
+     */
+    int get(int key) {
+        return values[slot(key)];
+    }
+    
+    /**
+     * @param key a key
+     * @param value new value for key, nonzero
+     * @return the previous value for key, or zero if there was none
+     */
+    int put(int key, int value) {
+        assert value != 0;
+        int i = slot(key);
+        int old = values[i];
+        keys[i] = key;
+        values[i] = value;
+        if (old == 0 && ++size * 2 >= keys.length) {
+            resize(keys.length * 2);
+        }
+        checkRep();
+        return old;
+    }
+    
+    /**
+     * @param key a key
+     * @return the value that key had, or zero if there was none
+     */
+    int remove(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        int old = values[i];
+        if (old == 0) {
+            return 0;
+        }
+        // backward-shift deletion: pull later entries of the probe run into the hole
+        values[i] = 0;
+        for (int j = (i + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = 0;
+                i = j;
+            }
+        }
+        size--;
+        checkRep();
+        return old;
+    }
+    
+    /**
+     * Visit every entry once, in unspecified order. The map must not be
+     * modified during the visit.
+     */
+    void forEach(IntGraph.EdgeVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != 0) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+    
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+    
+}
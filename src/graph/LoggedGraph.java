@@ -0,0 +1,610 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A durable Graph with String labels: an in-memory graph whose mutations are
+ * recorded in a write-ahead log on disk.
+ * 
+ * <p>The log lives in a directory as two files: {@code checkpoint}, a compact
+ * copy of the whole graph, and {@code wal}, an append-only list of the
+ * mutations since that copy, each record with a sequence number and a CRC.
+ * Opening a directory recovers the graph by loading the checkpoint and
+ * replaying the log, ignoring a torn record at its end. A new checkpoint is
+ * written every so many records, after which the log starts again.
+ * 
+ * <p>Records are buffered in memory and written with group commit: one
+ * write and fsync makes every buffered record durable. With a commit
+ * interval of zero, every mutation returns only once its record is durable,
+ * and concurrent mutators share fsyncs. With a positive interval, mutations
+ * return at once and a background thread commits at that interval, so a
+ * crash loses at most one interval of mutations; {@link #sync()} commits on
+ * demand.
+ * 
+ * <p>Operations report I/O failures as UncheckedIOException. If writing or
+ * syncing the log fails, the log may end in a torn record and the durable
+ * state is unknown beyond it, so the graph fails: the mutation being
+ * committed (and any made since) stays in memory but may not be durable,
+ * and every later mutation, {@link #sync()} and {@link #checkpoint()} throws
+ * UncheckedIOException without changing the graph. Reopening the directory
+ * recovers the durable state. This class is thread-safe.
+ */
+public class LoggedGraph implements IncrementalGraph<String>, MeasuredGraph<String>, Closeable {
+    
+    private static final int CHECKPOINT_MAGIC = 0x47_43_4B_50; // "GCKP"
+    private static final byte OP_ADD = 1;
+    private static final byte OP_SET = 2;
+    private static final byte OP_REMOVE = 3;
+    private static final byte OP_INCREMENT = 4;
+    
+    private final Graph<String> graph;
+    private final Path directory;
+    private final int checkpointRecords;
+    private FileChannel log;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordData = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private long lastLsn;
+    private long pendingLsn;
+    private int recordsSinceCheckpoint = 0;
+    private final Object commitLock = new Object();
+    private volatile long durableLsn;
+    private volatile IOException failure = null;
+    private final ScheduledExecutorService committer;
+    private boolean closed = false;
+    
+    // Abstraction function:
+    //   Represents the graph `graph`, which equals the checkpoint in directory
+    //     with log records 1..lastLsn applied in order; records up to
+    //     durableLsn are on disk in log, and the rest are encoded in pending.
+    // Representation invariant:
+    //   durableLsn <= pendingLsn <= lastLsn
+    //   pending holds the encoded records durableLsn+1..pendingLsn
+    //   recordsSinceCheckpoint is the number of records in log and pending
+    //   If failure is non-null, log may hold any prefix of the records in
+    //     pending, possibly ending in a torn record, and no record is added.
+    // Safety from rep exposure:
+    //   All fields are private; graph is created by the caller but owned by
+    //     this object from construction, and observers return its fresh
+    //     copies.
+    // Thread safety argument:
+    //   graph, record, crc, lastLsn, recordsSinceCheckpoint and closed are
+    //     guarded by this; pending and pendingLsn by pending's lock; writes
+    //     to log by commitLock.
+    //   durableLsn and failure are volatile and written only while holding
+    //     commitLock.
+    //   Locks are acquired in the order this, commitLock, pending: mutators
+    //     take this then pending, commit() takes commitLock then pending, and
+    //     checkpoint() and close() take this then commitLock, so there is no
+    //     cycle.
+    
+    /**
+     * Open a logged graph, recovering the contents of directory if it holds
+     * an earlier log.
+     * 
+     * @param directory directory for the checkpoint and log; created if it
+     *                  does not exist
+     * @param memory an empty graph to hold the contents in memory; owned by
+     *               the logged graph from now on
+     * @param commitIntervalMillis 0 to make every mutation durable before it
+     *                             returns, or the interval between background
+     *                             commits
+     * @param checkpointRecords number of log records after which to write a
+     *                          new checkpoint, positive
+     * @throws IOException if the directory cannot be read or written, or
+     *                     its checkpoint is corrupt
+     */
+    public LoggedGraph(Path directory, Graph<String> memory, long commitIntervalMillis, int checkpointRecords)
+            throws IOException {
+        this(directory, memory, commitIntervalMillis, checkpointRecords, UnaryOperator.identity());
+    }
+    
+    // for tests: wrapLog may replace the log's channel, e.g. to inject failures
+    LoggedGraph(Path directory, Graph<String> memory, long commitIntervalMillis, int checkpointRecords,
+            UnaryOperator<FileChannel> wrapLog) throws IOException {
+        if (!memory.vertices().isEmpty() || commitIntervalMillis < 0 || checkpointRecords <= 0) {
+            throw new IllegalArgumentException("need an empty graph and valid intervals");
+        }
+        this.graph = memory;
+        this.directory = directory;
+        this.checkpointRecords = checkpointRecords;
+        Files.createDirectories(directory);
+        
+        long checkpointLsn = loadCheckpoint();
+        lastLsn = replayLog(checkpointLsn);
+        log = wrapLog.apply(log);
+        syncDirectory();
+        durableLsn = lastLsn;
+        pendingLsn = lastLsn;
+        
+        if (commitIntervalMillis > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "graph-wal-commit");
+                t.setDaemon(true);
+                return t;
+            });
+            committer.scheduleWithFixedDelay(this::sync, commitIntervalMillis, commitIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            committer = null;
+        }
+        checkRep();
+    }
+    
+    private synchronized void checkRep() {
+        synchronized (pending) {
+            assert durableLsn <= pendingLsn;
+            assert pendingLsn <= lastLsn;
+            assert (pending.size() == 0) == (pendingLsn == durableLsn);
+        }
+    }
+    
+    // make the directory's entries (new and renamed files) durable
+    private void syncDirectory() throws IOException {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+    }
+    
+    private Path checkpointFile() {
+        return directory.resolve("checkpoint");
+    }
+    
+    private Path logFile() {
+        return directory.resolve("wal");
+    }
+    
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /*
+     * Load the checkpoint, if any, into graph.
+     * Returns the sequence number of the last record it includes.
+     */
+    private long loadCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile())) {
+            return 0;
+        }
+        CRC32 sum = new CRC32();
+        try (InputStream file = Files.newInputStream(checkpointFile());
+                CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file), sum);
+                DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException(checkpointFile() + " is not a graph checkpoint");
+            }
+            long lsn = in.readLong();
+            for (int n = in.readInt(); n > 0; n--) {
+                graph.add(readString(in));
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                String source = readString(in);
+                String target = readString(in);
+                graph.set(source, target, in.readInt());
+            }
+            long expected = sum.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException(checkpointFile() + " is corrupt");
+            }
+            return lsn;
+        }
+    }
+    
+    /*
+     * Apply the log records after checkpointLsn to graph, and truncate any
+     * torn or corrupt tail. Returns the last sequence number.
+     */
+    private long replayLog(long checkpointLsn) throws IOException {
+        log = FileChannel.open(logFile(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long lsn = checkpointLsn;
+        long good = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log)));
+        CRC32 sum = new CRC32();
+        while (true) {
+            byte[] body;
+            try {
+                int length = in.readInt();
+                int expected = in.readInt();
+                if (length <= 0 || length > log.size()) {
+                    break;
+                }
+                body = new byte[length];
+                in.readFully(body);
+                sum.reset();
+                sum.update(body, 0, length);
+                if ((int) sum.getValue() != expected) {
+                    break;
+                }
+                good += 8 + length;
+            } catch (EOFException e) {
+                break;
+            }
+            DataInputStream rec = new DataInputStream(new ByteArrayInputStream(body));
+            long recordLsn = rec.readLong();
+            if (recordLsn > lsn) {
+                apply(rec.readByte(), rec);
+                lsn = recordLsn;
+            }
+            recordsSinceCheckpoint++;
+        }
+        log.truncate(good);
+        log.position(good);
+        return lsn;
+    }
+    
+    private void apply(byte op, DataInputStream in) throws IOException {
+        switch (op) {
+        case OP_ADD:
+            graph.add(readString(in));
+            break;
+        case OP_SET: {
+            String source = readString(in);
+            String target = readString(in);
+            graph.set(source, target, in.readInt());
+            break;
+        }
+        case OP_REMOVE:
+            graph.remove(readString(in));
+            break;
+        case OP_INCREMENT: {
+            String source = readString(in);
+            String target = readString(in);
+            incrementInMemory(source, target, in.readInt());
+            break;
+        }
+        default:
+            throw new IOException("unknown log record type " + op);
+        }
+    }
+    
+    private void incrementInMemory(String source, String target, int delta) {
+        if (graph instanceof IncrementalGraph) {
+            ((IncrementalGraph<String>) graph).increment(source, target, delta);
+        } else {
+            Integer old = graph.targets(source).get(target);
+            graph.set(source, target, (old == null ? 0 : old) + delta);
+        }
+    }
+    
+    // throw unless the graph may be mutated; the caller holds this
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("logged graph is closed");
+        }
+        checkNotFailed();
+    }
+    
+    private void checkNotFailed() {
+        if (failure != null) {
+            throw new UncheckedIOException("log failed; reopen the directory to recover", failure);
+        }
+    }
+    
+    /*
+     * Append a record to pending; the caller holds this, has checked that
+     * the graph is writable, and has encoded the op and its arguments in
+     * recordData. Returns its sequence number.
+     */
+    private long append() {
+        long lsn = ++lastLsn;
+        byte[] body = record.toByteArray();
+        // the sequence number was written as a placeholder; patch it in
+        ByteBuffer.wrap(body).putLong(0, lsn);
+        crc.reset();
+        crc.update(body, 0, body.length);
+        int sum = (int) crc.getValue();
+        byte[] header = ByteBuffer.allocate(8).putInt(body.length).putInt(sum).array();
+        synchronized (pending) {
+            pending.write(header, 0, header.length);
+            pending.write(body, 0, body.length);
+            pendingLsn = lsn;
+        }
+        recordsSinceCheckpoint++;
+        return lsn;
+    }
+    
+    private DataOutputStream beginRecord(byte op) throws IOException {
+        record.reset();
+        recordData.writeLong(0);
+        recordData.writeByte(op);
+        return recordData;
+    }
+    
+    /*
+     * Make the record with sequence number lsn durable if this graph commits
+     * on every mutation, and write a checkpoint if one is due.
+     */
+    private void finish(long lsn) {
+        if (committer == null) {
+            commit(lsn);
+        }
+        boolean due;
+        synchronized (this) {
+            due = recordsSinceCheckpoint >= checkpointRecords;
+        }
+        if (due) {
+            checkpoint();
+        }
+    }
+    
+    /*
+     * Write and fsync pending records until lsn is durable. Callers that
+     * arrive while another commit is in progress find their record already
+     * durable when it finishes, or commit the records that arrived meanwhile
+     * together.
+     */
+    private void commit(long lsn) {
+        synchronized (commitLock) {
+            checkNotFailed();
+            if (durableLsn >= lsn) {
+                return;
+            }
+            byte[] bytes;
+            long upTo;
+            synchronized (pending) {
+                bytes = pending.toByteArray();
+                upTo = pendingLsn;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    log.write(buffer);
+                }
+                log.force(false);
+            } catch (IOException e) {
+                // part of bytes, ending in a torn record, may be in the log;
+                // appending after it would hide later records from recovery
+                failure = e;
+                throw new UncheckedIOException(e);
+            }
+            synchronized (pending) {
+                // drop the committed records, keeping any that arrived since
+                byte[] all = pending.toByteArray();
+                pending.reset();
+                pending.write(all, bytes.length, all.length - bytes.length);
+            }
+            durableLsn = upTo;
+        }
+    }
+    
+    /**
+     * Make every mutation so far durable.
+     */
+    public void sync() {
+        long lsn;
+        synchronized (this) {
+            lsn = lastLsn;
+        }
+        commit(lsn);
+    }
+    
+    /**
+     * Write a checkpoint of the whole graph and empty the log. Mutations wait
+     * while the checkpoint is written.
+     */
+    public synchronized void checkpoint() {
+        checkWritable();
+        sync();
+        Path temp = directory.resolve("checkpoint.tmp");
+        try {
+            CRC32 sum = new CRC32();
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new CheckedOutputStream(file, sum)));
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeLong(lastLsn);
+                Set<String> vertices = graph.vertices();
+                out.writeInt(vertices.size());
+                int edges = 0;
+                for (String v : vertices) {
+                    writeString(out, v);
+                    edges += graph.targets(v).size();
+                }
+                out.writeInt(edges);
+                for (String v : vertices) {
+                    for (Map.Entry<String, Integer> e : graph.targets(v).entrySet()) {
+                        writeString(out, v);
+                        writeString(out, e.getKey());
+                        out.writeInt(e.getValue());
+                    }
+                }
+                out.flush();
+                new DataOutputStream(file).writeLong(sum.getValue());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, checkpointFile(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            // the rename must be durable before the log it replaces is
+            // truncated, or a power loss could keep the truncation only
+            syncDirectory();
+            // records up to lastLsn are in the checkpoint; a crash before the
+            // truncation replays none of them, as their numbers are too low
+            synchronized (commitLock) {
+                try {
+                    log.truncate(0);
+                    log.position(0);
+                    log.force(true);
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+            }
+            recordsSinceCheckpoint = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Commit every mutation, unless the log has failed, stop the background
+     * committer and close the log. Later mutations throw
+     * IllegalStateException.
+     */
+    @Override public void close() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (failure == null) {
+                sync();
+            }
+            closed = true;
+            synchronized (commitLock) {
+                log.close();
+            }
+        }
+    }
+    
+    @Override public boolean add(String vertex) {
+        long lsn;
+        boolean added;
+        synchronized (this) {
+            checkWritable();
+            added = graph.add(vertex);
+            if (!added) {
+                return false;
+            }
+            try {
+                writeString(beginRecord(OP_ADD), vertex);
+            } catch (IOException e) {
+                throw new AssertionError("byte streams do not throw", e);
+            }
+            lsn = append();
+        }
+        finish(lsn);
+        return added;
+    }
+    
+    @Override public int set(String source, String target, int weight) {
+        long lsn;
+        int old;
+        synchronized (this) {
+            checkWritable();
+            old = graph.set(source, target, weight);
+            try {
+                DataOutputStream out = beginRecord(OP_SET);
+                writeString(out, source);
+                writeString(out, target);
+                out.writeInt(weight);
+            } catch (IOException e) {
+                throw new AssertionError("byte streams do not throw", e);
+            }
+            lsn = append();
+        }
+        finish(lsn);
+        return old;
+    }
+    
+    @Override public void increment(String source, String target, int delta) {
+        long lsn;
+        synchronized (this) {
+            checkWritable();
+            incrementInMemory(source, target, delta);
+            try {
+                DataOutputStream out = beginRecord(OP_INCREMENT);
+                writeString(out, source);
+                writeString(out, target);
+                out.writeInt(delta);
+            } catch (IOException e) {
+                throw new AssertionError("byte streams do not throw", e);
+            }
+            lsn = append();
+        }
+        finish(lsn);
+    }
+    
+    @Override public boolean remove(String vertex) {
+        long lsn;
+        synchronized (this) {
+            checkWritable();
+            if (!graph.remove(vertex)) {
+                return false;
+            }
+            try {
+                writeString(beginRecord(OP_REMOVE), vertex);
+            } catch (IOException e) {
+                throw new AssertionError("byte streams do not throw", e);
+            }
+            lsn = append();
+        }
+        finish(lsn);
+        return true;
+    }
+    
+    @Override public synchronized Set<String> vertices() {
+        return graph.vertices();
+    }
+    
+    @Override public synchronized Map<String, Integer> sources(String target) {
+        return graph.sources(target);
+    }
+    
+    @Override public synchronized Map<String, Integer> targets(String source) {
+        return graph.targets(source);
+    }
+    
+    /**
+     * Estimate the heap retained by the in-memory graph and the buffer of
+     * records not yet committed, which is counted as a cache.
+     * 
+     * @return estimated footprint of this graph
+     */
+    @Override public synchronized Footprint footprint() {
+        long buffered;
+        synchronized (pending) {
+            buffered = Footprint.array(pending.size(), 1);
+        }
+        return Footprint.of(graph).plus(new Footprint(0, 0, 0, buffered + Footprint.array(record.size(), 1), 0));
+    }
+    
+    @Override public synchronized String toString() {
+        return graph.toString();
+    }
+    
+}
@@ -0,0 +1,24 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+/**
+ * A Graph that can estimate how much heap it retains. Representations differ
+ * by an order of magnitude in size for the same graph, so clients that pack
+ * many graphs into one process (such as PoetRegistry) use this to enforce
+ * memory budgets; see {@link Footprint}.
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public interface MeasuredGraph<L> extends Graph<L> {
+    
+    /**
+     * Estimate the heap retained by this graph, by the size model of
+     * {@link Footprint}. Takes time linear in the size of the graph at most.
+     * 
+     * @return estimated footprint of this graph
+     */
+    public Footprint footprint();
+    
+}
@@ -0,0 +1,528 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An implementation of Graph with String labels whose vertex table, label
+ * bytes, hash index and adjacency lists are all stored outside the Java heap
+ * in direct byte buffers.
+ * The heap only holds this handle and a few small buffer objects, so the
+ * number of live objects (and therefore full-GC time) does not grow with
+ * the size of the graph.
+ *
+ * <p>The graph owns its memory and must be released with {@link #close()}.
+ * After closing, every operation throws IllegalStateException. close()
+ * frees the native memory at once, as does growth for the buffers it
+ * replaces, through the JDK's internal buffer cleaner. On a JVM where that
+ * cleaner cannot be reached, the memory is instead returned when the
+ * (small) buffer objects are next collected.
+ *
+ * <p>All storage is split into segments of at most 64 MB, and a large
+ * table grows by adding segments without copying. The vertex, edge and index
+ * tables can each hold up to about 2^31 ints (8 GB); the label arena, which
+ * holds the vocabulary, is limited only by available memory.
+ *
+ * <p>Labels of removed vertices stay in the label arena until they outweigh
+ * the live labels; the arena is then compacted, which takes time linear in
+ * the number of vertices and so is amortized over the removals.
+ */
+public class OffHeapGraph implements Graph<String>, AutoCloseable {
+    
+    private static final int NONE = -1;
+    
+    // vertex record layout; the label offset is a long split in two ints
+    private static final int V_LABEL_OFFSET = 0;
+    private static final int V_LABEL_OFFSET_HIGH = 1;
+    private static final int V_LABEL_LENGTH = 2;
+    private static final int V_HASH = 3;
+    private static final int V_OUT_HEAD = 4;
+    private static final int V_IN_HEAD = 5;
+    private static final int V_STRIDE = 6;
+    
+    // edge record layout
+    private static final int E_SOURCE = 0;
+    private static final int E_TARGET = 1;
+    private static final int E_WEIGHT = 2;
+    private static final int E_NEXT_OUT = 3;
+    private static final int E_NEXT_IN = 4;
+    private static final int E_STRIDE = 5;
+    
+    // index slot values
+    private static final int SLOT_EMPTY = 0;
+    private static final int SLOT_DELETED = -1;
+    
+    // dead label bytes below which the label arena is never compacted
+    private static final int COMPACT_MIN_BYTES = 64 << 10;
+    
+    private DirectBytes labels;
+    private DirectInts vertexTable;
+    private DirectInts edgeTable;
+    private DirectInts index;
+    private final int segmentShift;
+    
+    private int vertexSlots = 0;
+    private int liveVertices = 0;
+    private int edgeSlots = 0;
+    private int liveEdges = 0;
+    private int freeEdge = NONE;
+    private int indexUsed = 0;
+    private long liveLabelBytes = 0;
+    
+    // Abstraction function:
+    //   Represents the graph whose vertices are the labels of the live vertex
+    //     records in vertexTable (records with a nonnegative label length,
+    //     decoded as UTF-8 from labels), and whose edges are the live edge
+    //     records reachable from each vertex's out list, each giving the ids
+    //     of its source and target vertex and its weight.
+    // Representation invariant:
+    //   Every live vertex is reachable from exactly one non-deleted slot of
+    //     index (which stores vertex id + 1), and no two live vertices share
+    //     a label.
+    //   Every live edge is on exactly one out list (its source's) and one in
+    //     list (its target's); freed edges are chained through E_NEXT_OUT
+    //     starting at freeEdge.
+    //   There is at most one edge from U to V, and no edge has weight zero.
+    //   index length is a power of two and at most half full (counting
+    //     deleted slots).
+    //   liveLabelBytes is the total label length of the live vertices, at
+    //     most labels.size(); the labels of live vertices do not overlap.
+    // Safety from rep exposure:
+    //   All fields are private; labels are returned as fresh Strings and
+    //     all returned sets and maps are fresh heap copies.
+    
+    /**
+     * Create an empty off-heap graph with room for a small number of
+     * vertices and edges; storage grows on demand.
+     */
+    public OffHeapGraph() {
+        this(1024, 4096);
+    }
+    
+    /**
+     * Create an empty off-heap graph sized for an expected number of
+     * vertices and edges; storage grows on demand beyond these.
+     *
+     * @param expectedVertices expected number of vertices, positive
+     * @param expectedEdges expected number of edges, positive
+     */
+    public OffHeapGraph(int expectedVertices, int expectedEdges) {
+        this(expectedVertices, expectedEdges, DirectInts.SEGMENT_SHIFT);
+    }
+    
+    // for tests: tables split into segments of 2^segmentShift ints, and the
+    // label arena into segments of the same size in bytes
+    OffHeapGraph(int expectedVertices, int expectedEdges, int segmentShift) {
+        if (expectedVertices <= 0 || expectedEdges <= 0) {
+            throw new IllegalArgumentException("expected sizes must be positive");
+        }
+        this.segmentShift = segmentShift;
+        labels = new DirectBytes((long) expectedVertices * 8, segmentShift + 2);
+        vertexTable = new DirectInts((long) expectedVertices * V_STRIDE, segmentShift);
+        edgeTable = new DirectInts((long) expectedEdges * E_STRIDE, segmentShift);
+        index = new DirectInts(Integer.highestOneBit(Math.min(expectedVertices, 1 << 29) * 2 - 1) << 1,
+                segmentShift);
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert liveVertices <= vertexSlots;
+        assert liveEdges <= edgeSlots;
+        assert indexUsed * 2 <= index.capacity();
+        assert Integer.bitCount(index.capacity()) == 1;
+        assert liveLabelBytes <= labels.size();
+    }
+    
+    private void checkOpen() {
+        if (labels == null) {
+            throw new IllegalStateException("graph has been closed");
+        }
+    }
+    
+    /**
+     * Release the off-heap storage of this graph. Closing an already closed
+     * graph has no effect.
+     */
+    @Override public void close() {
+        if (isClosed()) {
+            return;
+        }
+        labels.free();
+        vertexTable.free();
+        edgeTable.free();
+        index.free();
+        labels = null;
+        vertexTable = null;
+        edgeTable = null;
+        index = null;
+    }
+    
+    /**
+     * @return true if this graph has been closed
+     */
+    public boolean isClosed() {
+        return labels == null;
+    }
+    
+    /**
+     * @return number of bytes of off-heap memory currently reserved by this
+     *         graph, or zero if it has been closed
+     */
+    public long offHeapBytes() {
+        if (isClosed()) {
+            return 0;
+        }
+        return labels.capacity()
+                + 4L * vertexTable.capacity()
+                + 4L * edgeTable.capacity()
+                + 4L * index.capacity();
+    }
+    
+    @Override public boolean add(String vertex) {
+        checkOpen();
+        byte[] bytes = vertex.getBytes(StandardCharsets.UTF_8);
+        if (find(bytes, vertex.hashCode()) != NONE) {
+            return false;
+        }
+        insertVertex(bytes, vertex.hashCode());
+        checkRep();
+        return true;
+    }
+    
+    @Override public int set(String source, String target, int weight) {
+        checkOpen();
+        byte[] srcBytes = source.getBytes(StandardCharsets.UTF_8);
+        byte[] tgtBytes = target.getBytes(StandardCharsets.UTF_8);
+        int src = find(srcBytes, source.hashCode());
+        int tgt = find(tgtBytes, target.hashCode());
+        
+        if (weight == 0) {
+            if (src == NONE || tgt == NONE) {
+                return 0;
+            }
+            int old = 0;
+            int prev = NONE;
+            for (int e = vertexTable.get(src * V_STRIDE + V_OUT_HEAD); e != NONE;
+                    prev = e, e = edgeTable.get(e * E_STRIDE + E_NEXT_OUT)) {
+                if (edgeTable.get(e * E_STRIDE + E_TARGET) == tgt) {
+                    old = edgeTable.get(e * E_STRIDE + E_WEIGHT);
+                    unlinkOut(src, prev, e);
+                    unlinkIn(tgt, e);
+                    freeEdge(e);
+                    break;
+                }
+            }
+            checkRep();
+            return old;
+        }
+        
+        if (src == NONE) {
+            src = insertVertex(srcBytes, source.hashCode());
+        }
+        if (tgt == NONE) {
+            tgt = source.equals(target) ? src : insertVertex(tgtBytes, target.hashCode());
+        }
+        for (int e = vertexTable.get(src * V_STRIDE + V_OUT_HEAD); e != NONE;
+                e = edgeTable.get(e * E_STRIDE + E_NEXT_OUT)) {
+            if (edgeTable.get(e * E_STRIDE + E_TARGET) == tgt) {
+                int old = edgeTable.get(e * E_STRIDE + E_WEIGHT);
+                edgeTable.set(e * E_STRIDE + E_WEIGHT, weight);
+                return old;
+            }
+        }
+        
+        int e = allocateEdge();
+        int base = e * E_STRIDE;
+        edgeTable.set(base + E_SOURCE, src);
+        edgeTable.set(base + E_TARGET, tgt);
+        edgeTable.set(base + E_WEIGHT, weight);
+        edgeTable.set(base + E_NEXT_OUT, vertexTable.get(src * V_STRIDE + V_OUT_HEAD));
+        edgeTable.set(base + E_NEXT_IN, vertexTable.get(tgt * V_STRIDE + V_IN_HEAD));
+        vertexTable.set(src * V_STRIDE + V_OUT_HEAD, e);
+        vertexTable.set(tgt * V_STRIDE + V_IN_HEAD, e);
+        liveEdges++;
+        checkRep();
+        return 0;
+    }
+    
+    @Override public boolean remove(String vertex) {
+        checkOpen();
+        int hash = vertex.hashCode();
+        int slot = findSlot(vertex.getBytes(StandardCharsets.UTF_8), hash);
+        if (slot == NONE) {
+            return false;
+        }
+        int v = index.get(slot) - 1;
+        
+        // unlink outgoing edges from their targets' in lists (including self loops)
+        for (int e = vertexTable.get(v * V_STRIDE + V_OUT_HEAD); e != NONE;) {
+            int next = edgeTable.get(e * E_STRIDE + E_NEXT_OUT);
+            unlinkIn(edgeTable.get(e * E_STRIDE + E_TARGET), e);
+            freeEdge(e);
+            e = next;
+        }
+        vertexTable.set(v * V_STRIDE + V_OUT_HEAD, NONE);
+        
+        // unlink the remaining incoming edges from their sources' out lists
+        for (int e = vertexTable.get(v * V_STRIDE + V_IN_HEAD); e != NONE;) {
+            int next = edgeTable.get(e * E_STRIDE + E_NEXT_IN);
+            int src = edgeTable.get(e * E_STRIDE + E_SOURCE);
+            int prev = NONE;
+            for (int o = vertexTable.get(src * V_STRIDE + V_OUT_HEAD); o != e;
+                    o = edgeTable.get(o * E_STRIDE + E_NEXT_OUT)) {
+                prev = o;
+            }
+            unlinkOut(src, prev, e);
+            freeEdge(e);
+            e = next;
+        }
+        vertexTable.set(v * V_STRIDE + V_IN_HEAD, NONE);
+        
+        liveLabelBytes -= vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH);
+        vertexTable.set(v * V_STRIDE + V_LABEL_LENGTH, NONE);
+        index.set(slot, SLOT_DELETED);
+        liveVertices--;
+        long deadLabelBytes = labels.size() - liveLabelBytes;
+        if (deadLabelBytes > liveLabelBytes && deadLabelBytes >= COMPACT_MIN_BYTES) {
+            compactLabels();
+        }
+        checkRep();
+        return true;
+    }
+    
+    @Override public Set<String> vertices() {
+        checkOpen();
+        Set<String> vs = new HashSet<String>();
+        for (int v = 0; v < vertexSlots; v++) {
+            if (vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH) >= 0) {
+                vs.add(label(v));
+            }
+        }
+        return vs;
+    }
+    
+    @Override public Map<String, Integer> sources(String target) {
+        checkOpen();
+        Map<String, Integer> srcs = new HashMap<String, Integer>();
+        int tgt = find(target.getBytes(StandardCharsets.UTF_8), target.hashCode());
+        if (tgt == NONE) {
+            return srcs;
+        }
+        for (int e = vertexTable.get(tgt * V_STRIDE + V_IN_HEAD); e != NONE;
+                e = edgeTable.get(e * E_STRIDE + E_NEXT_IN)) {
+            srcs.put(label(edgeTable.get(e * E_STRIDE + E_SOURCE)),
+                    edgeTable.get(e * E_STRIDE + E_WEIGHT));
+        }
+        return srcs;
+    }
+    
+    @Override public Map<String, Integer> targets(String source) {
+        checkOpen();
+        Map<String, Integer> tgts = new HashMap<String, Integer>();
+        int src = find(source.getBytes(StandardCharsets.UTF_8), source.hashCode());
+        if (src == NONE) {
+            return tgts;
+        }
+        for (int e = vertexTable.get(src * V_STRIDE + V_OUT_HEAD); e != NONE;
+                e = edgeTable.get(e * E_STRIDE + E_NEXT_OUT)) {
+            tgts.put(label(edgeTable.get(e * E_STRIDE + E_TARGET)),
+                    edgeTable.get(e * E_STRIDE + E_WEIGHT));
+        }
+        return tgts;
+    }
+    
+    /*
+     * Vertex table and index.
+     */
+    
+    private long labelOffset(int v) {
+        return (long) vertexTable.get(v * V_STRIDE + V_LABEL_OFFSET_HIGH) << 32
+                | vertexTable.get(v * V_STRIDE + V_LABEL_OFFSET) & 0xFFFFFFFFL;
+    }
+    
+    private void setLabelOffset(int v, long offset) {
+        vertexTable.set(v * V_STRIDE + V_LABEL_OFFSET, (int) offset);
+        vertexTable.set(v * V_STRIDE + V_LABEL_OFFSET_HIGH, (int) (offset >>> 32));
+    }
+    
+    private String label(int v) {
+        long offset = labelOffset(v);
+        int length = vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH);
+        byte[] bytes = new byte[length];
+        labels.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private boolean labelEquals(int v, byte[] bytes) {
+        if (vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH) != bytes.length) {
+            return false;
+        }
+        long offset = labelOffset(v);
+        for (int i = 0; i < bytes.length; i++) {
+            if (labels.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // returns the index slot holding the vertex with the given label, or NONE
+    private int findSlot(byte[] bytes, int hash) {
+        int mask = index.capacity() - 1;
+        for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+            int entry = index.get(slot);
+            if (entry == SLOT_EMPTY) {
+                return NONE;
+            }
+            if (entry != SLOT_DELETED
+                    && vertexTable.get((entry - 1) * V_STRIDE + V_HASH) == hash
+                    && labelEquals(entry - 1, bytes)) {
+                return slot;
+            }
+        }
+    }
+    
+    // returns the id of the vertex with the given label, or NONE
+    private int find(byte[] bytes, int hash) {
+        int slot = findSlot(bytes, hash);
+        return slot == NONE ? NONE : index.get(slot) - 1;
+    }
+    
+    private int insertVertex(byte[] bytes, int hash) {
+        if ((indexUsed + 1) * 2 > index.capacity()) {
+            rehash(liveVertices * 4 + 4 > index.capacity() ? index.capacity() * 2 : index.capacity());
+        }
+        vertexTable.ensureCapacity((long) (vertexSlots + 1) * V_STRIDE);
+        int v = vertexSlots++;
+        int base = v * V_STRIDE;
+        setLabelOffset(v, labels.append(bytes));
+        vertexTable.set(base + V_LABEL_LENGTH, bytes.length);
+        liveLabelBytes += bytes.length;
+        vertexTable.set(base + V_HASH, hash);
+        vertexTable.set(base + V_OUT_HEAD, NONE);
+        vertexTable.set(base + V_IN_HEAD, NONE);
+        
+        int mask = index.capacity() - 1;
+        int slot = mix(hash) & mask;
+        while (index.get(slot) != SLOT_EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        index.set(slot, v + 1);
+        indexUsed++;
+        liveVertices++;
+        return v;
+    }
+    
+    // rebuild the index with the given capacity, dropping deleted slots
+    private void rehash(int capacity) {
+        DirectInts fresh = new DirectInts(capacity, segmentShift);
+        int mask = capacity - 1;
+        for (int v = 0; v < vertexSlots; v++) {
+            if (vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH) >= 0) {
+                int slot = mix(vertexTable.get(v * V_STRIDE + V_HASH)) & mask;
+                while (fresh.get(slot) != SLOT_EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                fresh.set(slot, v + 1);
+            }
+        }
+        index.free();
+        index = fresh;
+        indexUsed = liveVertices;
+    }
+    
+    // copy the labels of live vertices to a fresh arena, dropping the rest
+    private void compactLabels() {
+        DirectBytes fresh = new DirectBytes(liveLabelBytes, segmentShift + 2);
+        for (int v = 0; v < vertexSlots; v++) {
+            int length = vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH);
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                labels.get(labelOffset(v), bytes);
+                setLabelOffset(v, fresh.append(bytes));
+            }
+        }
+        labels.free();
+        labels = fresh;
+    }
+    
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    /*
+     * Edge table.
+     */
+    
+    private int allocateEdge() {
+        if (freeEdge != NONE) {
+            int e = freeEdge;
+            freeEdge = edgeTable.get(e * E_STRIDE + E_NEXT_OUT);
+            return e;
+        }
+        edgeTable.ensureCapacity((long) (edgeSlots + 1) * E_STRIDE);
+        return edgeSlots++;
+    }
+    
+    private void freeEdge(int e) {
+        edgeTable.set(e * E_STRIDE + E_WEIGHT, 0);
+        edgeTable.set(e * E_STRIDE + E_NEXT_OUT, freeEdge);
+        freeEdge = e;
+        liveEdges--;
+    }
+    
+    // remove e from src's out list given its predecessor on that list (or NONE)
+    private void unlinkOut(int src, int prev, int e) {
+        int next = edgeTable.get(e * E_STRIDE + E_NEXT_OUT);
+        if (prev == NONE) {
+            vertexTable.set(src * V_STRIDE + V_OUT_HEAD, next);
+        } else {
+            edgeTable.set(prev * E_STRIDE + E_NEXT_OUT, next);
+        }
+    }
+    
+    // remove e from tgt's in list
+    private void unlinkIn(int tgt, int e) {
+        int prev = NONE;
+        for (int i = vertexTable.get(tgt * V_STRIDE + V_IN_HEAD); i != e;
+                i = edgeTable.get(i * E_STRIDE + E_NEXT_IN)) {
+            prev = i;
+        }
+        int next = edgeTable.get(e * E_STRIDE + E_NEXT_IN);
+        if (prev == NONE) {
+            vertexTable.set(tgt * V_STRIDE + V_IN_HEAD, next);
+        } else {
+            edgeTable.set(prev * E_STRIDE + E_NEXT_IN, next);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        checkOpen();
+        StringBuilder s = new StringBuilder("vertices:\n");
+        for (int v = 0; v < vertexSlots; v++) {
+            if (vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH) >= 0) {
+                s.append(label(v) + "\n");
+            }
+        }
+        s.append("\nedges:\n");
+        for (int v = 0; v < vertexSlots; v++) {
+            if (vertexTable.get(v * V_STRIDE + V_LABEL_LENGTH) < 0) {
+                continue;
+            }
+            for (int e = vertexTable.get(v * V_STRIDE + V_OUT_HEAD); e != NONE;
+                    e = edgeTable.get(e * E_STRIDE + E_NEXT_OUT)) {
+                s.append(label(v) + " -> " + label(edgeTable.get(e * E_STRIDE + E_TARGET))
+                        + " (" + edgeTable.get(e * E_STRIDE + E_WEIGHT) + ")\n");
+            }
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,292 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable graph stored as a set of changes layered over a shared,
+ * read-only base graph.
+ * 
+ * <p>The overlay records only how it differs from the base: per-edge weight
+ * deltas, vertices added, and base vertices hidden by remove(). Many overlays
+ * can share one base (typically a {@link FrozenGraph}), so each costs memory
+ * in proportion to its own changes. The base must not be modified while any
+ * overlay over it is in use.
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class OverlayGraph<L> implements IncrementalGraph<L>, MeasuredGraph<L> {
+    
+    private final Graph<L> base;
+    private final Set<L> added = new HashSet<L>();
+    private final Set<L> hidden = new HashSet<L>();
+    private final Map<L, Map<L, Integer>> outDeltas = new HashMap<L, Map<L, Integer>>();
+    private final Map<L, Map<L, Integer>> inDeltas = new HashMap<L, Map<L, Integer>>();
+    
+    // Abstraction function:
+    //   Represents the graph whose vertices are (base.vertices() - hidden) +
+    //     added, and in which the weight of the edge from s to t is
+    //     baseWeight(s, t) + outDeltas[s][t] (missing deltas being zero),
+    //     where baseWeight is base's weight if neither s nor t is hidden, and
+    //     zero otherwise.
+    // Representation invariant:
+    //   hidden is a subset of base.vertices(); added is disjoint from the
+    //     visible base vertices.
+    //   inDeltas is the transpose of outDeltas; no delta or delta map is
+    //     empty or zero.
+    //   Every resulting edge weight is nonnegative, and the endpoints of every
+    //     edge with a delta are vertices of the graph.
+    // Safety from rep exposure:
+    //   All fields are private and final; base is shared deliberately and is
+    //     only read; observers return fresh sets and maps.
+    
+    /**
+     * Create an overlay with no changes.
+     * 
+     * @param base graph to read through to; not modified by this overlay
+     */
+    public OverlayGraph(Graph<L> base) {
+        this.base = base;
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert wellFormed();
+    }
+    
+    // scan the whole rep; called only when assertions are enabled, since it
+    // takes time linear in the size of the overlay
+    private boolean wellFormed() {
+        for (L v : added) {
+            if (baseVisible(v)) {
+                return false;
+            }
+        }
+        int inCount = 0;
+        for (Map<L, Integer> deltas : inDeltas.values()) {
+            if (deltas.isEmpty()) {
+                return false;
+            }
+            inCount += deltas.size();
+        }
+        return inCount == deltaCount();
+    }
+    
+    /**
+     * @return the graph this overlay reads through to
+     */
+    public Graph<L> base() {
+        return base;
+    }
+    
+    /**
+     * @return number of edges whose weight differs from the base graph
+     */
+    public int deltaCount() {
+        int n = 0;
+        for (Map<L, Integer> deltas : outDeltas.values()) {
+            n += deltas.size();
+        }
+        return n;
+    }
+    
+    /**
+     * Estimate the heap retained by this overlay's own changes. The base
+     * graph is shared, so it is not included; measure it separately.
+     * 
+     * @return estimated footprint of this overlay, excluding base
+     */
+    @Override public Footprint footprint() {
+        long edgeBytes = 0;
+        for (Map<L, Integer> deltas : outDeltas.values()) {
+            edgeBytes += Footprint.hashMap(deltas.size()) + deltas.size() * Footprint.INTEGER;
+        }
+        for (Map<L, Integer> deltas : inDeltas.values()) {
+            edgeBytes += Footprint.hashMap(deltas.size()) + deltas.size() * Footprint.INTEGER;
+        }
+        long vertexBytes = Footprint.hashMap(added.size()) + Footprint.hashMap(hidden.size())
+                + Footprint.hashMap(outDeltas.size()) + Footprint.hashMap(inDeltas.size());
+        return new Footprint(vertexBytes, edgeBytes, Footprint.labels(added), 0, 0);
+    }
+    
+    private boolean baseVisible(L vertex) {
+        return !hidden.contains(vertex) && baseContains(vertex);
+    }
+    
+    private boolean baseContains(L vertex) {
+        if (base instanceof FrozenGraph) {
+            return ((FrozenGraph<L>) base).id(vertex) >= 0;
+        }
+        return base.vertices().contains(vertex);
+    }
+    
+    private int baseWeight(L source, L target) {
+        if (hidden.contains(source) || hidden.contains(target)) {
+            return 0;
+        }
+        if (base instanceof FrozenGraph) {
+            FrozenGraph<L> frozen = (FrozenGraph<L>) base;
+            int s = frozen.id(source);
+            int t = frozen.id(target);
+            return s < 0 || t < 0 ? 0 : frozen.weight(s, t);
+        }
+        Integer w = base.targets(source).get(target);
+        return w == null ? 0 : w;
+    }
+    
+    private int delta(L source, L target) {
+        Map<L, Integer> deltas = outDeltas.get(source);
+        Integer d = deltas == null ? null : deltas.get(target);
+        return d == null ? 0 : d;
+    }
+    
+    private void putDelta(L source, L target, int delta) {
+        putDelta(outDeltas, source, target, delta);
+        putDelta(inDeltas, target, source, delta);
+    }
+    
+    private static <L> void putDelta(Map<L, Map<L, Integer>> deltas, L from, L to, int delta) {
+        Map<L, Integer> row = deltas.get(from);
+        if (delta == 0) {
+            if (row != null) {
+                row.remove(to);
+                if (row.isEmpty()) {
+                    deltas.remove(from);
+                }
+            }
+            return;
+        }
+        if (row == null) {
+            row = new HashMap<L, Integer>();
+            deltas.put(from, row);
+        }
+        row.put(to, delta);
+    }
+    
+    private boolean contains(L vertex) {
+        return added.contains(vertex) || baseVisible(vertex);
+    }
+    
+    @Override public boolean add(L vertex) {
+        if (contains(vertex)) {
+            return false;
+        }
+        added.add(vertex);
+        checkRep();
+        return true;
+    }
+    
+    @Override public int set(L source, L target, int weight) {
+        return set(source, target, weight, baseWeight(source, target));
+    }
+    
+    // set the weight of an edge whose base weight the caller has looked up
+    private int set(L source, L target, int weight, int baseWeight) {
+        int old = baseWeight + delta(source, target);
+        if (weight != 0) {
+            add(source);
+            add(target);
+        }
+        putDelta(source, target, weight - baseWeight);
+        checkRep();
+        return old;
+    }
+    
+    @Override public void increment(L source, L target, int delta) {
+        int baseWeight = baseWeight(source, target);
+        set(source, target, baseWeight + delta(source, target) + delta, baseWeight);
+    }
+    
+    @Override public boolean remove(L vertex) {
+        if (!added.remove(vertex)) {
+            if (!baseVisible(vertex)) {
+                return false;
+            }
+            hidden.add(vertex);
+        }
+        Map<L, Integer> out = outDeltas.remove(vertex);
+        if (out != null) {
+            for (L t : out.keySet()) {
+                putDelta(inDeltas, t, vertex, 0);
+            }
+        }
+        Map<L, Integer> in = inDeltas.remove(vertex);
+        if (in != null) {
+            for (L s : in.keySet()) {
+                putDelta(outDeltas, s, vertex, 0);
+            }
+        }
+        checkRep();
+        return true;
+    }
+    
+    @Override public Set<L> vertices() {
+        Set<L> vs = new HashSet<L>(base.vertices());
+        vs.removeAll(hidden);
+        vs.addAll(added);
+        return vs;
+    }
+    
+    @Override public Map<L, Integer> sources(L target) {
+        Map<L, Integer> srcs = new HashMap<L, Integer>();
+        if (!hidden.contains(target)) {
+            for (Map.Entry<L, Integer> e : base.sources(target).entrySet()) {
+                if (!hidden.contains(e.getKey())) {
+                    srcs.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+        applyDeltas(srcs, inDeltas.get(target));
+        return srcs;
+    }
+    
+    @Override public Map<L, Integer> targets(L source) {
+        Map<L, Integer> tgts = new HashMap<L, Integer>();
+        if (!hidden.contains(source)) {
+            for (Map.Entry<L, Integer> e : base.targets(source).entrySet()) {
+                if (!hidden.contains(e.getKey())) {
+                    tgts.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+        applyDeltas(tgts, outDeltas.get(source));
+        return tgts;
+    }
+    
+    private static <L> void applyDeltas(Map<L, Integer> edges, Map<L, Integer> deltas) {
+        if (deltas == null) {
+            return;
+        }
+        for (Map.Entry<L, Integer> d : deltas.entrySet()) {
+            Integer w = edges.get(d.getKey());
+            int weight = (w == null ? 0 : w) + d.getValue();
+            if (weight == 0) {
+                edges.remove(d.getKey());
+            } else {
+                edges.put(d.getKey(), weight);
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        Set<L> vertices = vertices();
+        for (L v : vertices) {
+            s.append(v.toString() + "\n");
+        }
+        s.append("\nedges:\n");
+        for (L v : vertices) {
+            for (Map.Entry<L, Integer> e : targets(v).entrySet()) {
+                s.append(v.toString() + " -> " + e.getKey().toString() + " (" + e.getValue() + ")\n");
+            }
+        }
+        return s.toString();
+    }
+    
+}
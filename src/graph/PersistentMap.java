@@ -0,0 +1,353 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map with cheap non-destructive updates.
+ * Implemented as a hash array mapped trie: plus() and minus() copy only the
+ * O(log32 n) nodes on the path to the changed key and share everything else
+ * with the original map.
+ * Keys must be immutable and must not be null; values must not be null.
+ *
+ * <p>This class is internal to the rep of VersionedGraph.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+final class PersistentMap<K, V> {
+    
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<Object, Object>(null, 0);
+    
+    private final Node<K, V> root;
+    private final int size;
+    
+    // Abstraction function:
+    //   Represents the map containing exactly the key/value pairs of the leaves
+    //     reachable from root (the empty map if root is null).
+    // Representation invariant:
+    //   size is the number of leaves reachable from root.
+    //   A leaf with key hash h reached through bitmap nodes at depths
+    //     0..d-1 sits under the child selected by bits [5i, 5i+5) of h at
+    //     depth i.
+    //   No key appears in more than one leaf.
+    // Safety from rep exposure:
+    //   All fields are private and final, and nodes are never mutated after
+    //     construction.
+    
+    private PersistentMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    
+    /**
+     * @param <K> type of keys
+     * @param <V> type of values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+    
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * @param key a key
+     * @return the value for key, or null if there is none
+     */
+    V get(Object key) {
+        return root == null ? null : root.get(key, hash(key), 0);
+    }
+    
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+    
+    /**
+     * @param key a key
+     * @param value value for key
+     * @return a map equal to this one except that key maps to value
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        Leaf<K, V> leaf = new Leaf<K, V>(key, value, hash(key));
+        if (root == null) {
+            return new PersistentMap<K, V>(leaf, 1);
+        }
+        boolean[] added = new boolean[1];
+        Node<K, V> newRoot = root.put(leaf, 0, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<K, V>(newRoot, added[0] ? size + 1 : size);
+    }
+    
+    /**
+     * @param key a key
+     * @return a map equal to this one except that key is not mapped
+     */
+    PersistentMap<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        Node<K, V> newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? PersistentMap.<K, V>empty() : new PersistentMap<K, V>(newRoot, size - 1);
+    }
+    
+    /**
+     * Apply action to every key/value pair in this map, in unspecified order.
+     */
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach(action);
+        }
+    }
+    
+    /*
+     * Trie nodes.
+     */
+    
+    private abstract static class Node<K, V> {
+        
+        abstract V get(Object key, int hash, int shift);
+        
+        // returns this if unchanged; sets added[0] if the key was new
+        abstract Node<K, V> put(Leaf<K, V> leaf, int shift, boolean[] added);
+        
+        // returns this if key is absent, null if the node becomes empty
+        abstract Node<K, V> remove(Object key, int hash, int shift);
+        
+        abstract void forEach(BiConsumer<? super K, ? super V> action);
+    }
+    
+    // a node whose keys all share one hash: a Leaf or a Collision
+    private abstract static class HashedNode<K, V> extends Node<K, V> {
+        
+        abstract int hash();
+    }
+    
+    private static final class Leaf<K, V> extends HashedNode<K, V> {
+        
+        private final K key;
+        private final V value;
+        private final int hash;
+        
+        Leaf(K key, V value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+        
+        @Override int hash() {
+            return hash;
+        }
+        
+        @Override V get(Object k, int h, int shift) {
+            return h == hash && key.equals(k) ? value : null;
+        }
+        
+        @Override Node<K, V> put(Leaf<K, V> leaf, int shift, boolean[] added) {
+            if (leaf.hash == hash) {
+                if (leaf.key.equals(key)) {
+                    return leaf.value.equals(value) ? this : leaf;
+                }
+                added[0] = true;
+                @SuppressWarnings("unchecked")
+                Leaf<K, V>[] leaves = (Leaf<K, V>[]) new Leaf<?, ?>[] { this, leaf };
+                return new Collision<K, V>(hash, leaves);
+            }
+            added[0] = true;
+            return Bitmap.pair(this, leaf, shift);
+        }
+        
+        @Override Node<K, V> remove(Object k, int h, int shift) {
+            return h == hash && key.equals(k) ? null : this;
+        }
+        
+        @Override void forEach(BiConsumer<? super K, ? super V> action) {
+            action.accept(key, value);
+        }
+    }
+    
+    private static final class Collision<K, V> extends HashedNode<K, V> {
+        
+        private final int hash;
+        private final Leaf<K, V>[] leaves;
+        
+        Collision(int hash, Leaf<K, V>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+        
+        @Override int hash() {
+            return hash;
+        }
+        
+        @Override V get(Object k, int h, int shift) {
+            if (h != hash) {
+                return null;
+            }
+            for (Leaf<K, V> leaf : leaves) {
+                if (leaf.key.equals(k)) {
+                    return leaf.value;
+                }
+            }
+            return null;
+        }
+        
+        @Override Node<K, V> put(Leaf<K, V> leaf, int shift, boolean[] added) {
+            if (leaf.hash != hash) {
+                added[0] = true;
+                return Bitmap.pair(this, leaf, shift);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(leaf.key)) {
+                    if (leaves[i].value.equals(leaf.value)) {
+                        return this;
+                    }
+                    Leaf<K, V>[] copy = leaves.clone();
+                    copy[i] = leaf;
+                    return new Collision<K, V>(hash, copy);
+                }
+            }
+            added[0] = true;
+            Leaf<K, V>[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+            copy[leaves.length] = leaf;
+            return new Collision<K, V>(hash, copy);
+        }
+        
+        @Override Node<K, V> remove(Object k, int h, int shift) {
+            if (h != hash) {
+                return this;
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(k)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    @SuppressWarnings("unchecked")
+                    Leaf<K, V>[] copy = (Leaf<K, V>[]) new Leaf<?, ?>[leaves.length - 1];
+                    System.arraycopy(leaves, 0, copy, 0, i);
+                    System.arraycopy(leaves, i + 1, copy, i, leaves.length - i - 1);
+                    return new Collision<K, V>(hash, copy);
+                }
+            }
+            return this;
+        }
+        
+        @Override void forEach(BiConsumer<? super K, ? super V> action) {
+            for (Leaf<K, V> leaf : leaves) {
+                action.accept(leaf.key, leaf.value);
+            }
+        }
+    }
+    
+    private static final class Bitmap<K, V> extends Node<K, V> {
+        
+        private final int bitmap;
+        private final Node<K, V>[] children;
+        
+        Bitmap(int bitmap, Node<K, V>[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+        
+        // a node holding two nodes with different hashes
+        static <K, V> Node<K, V> pair(HashedNode<K, V> a, HashedNode<K, V> b, int shift) {
+            int ia = (a.hash() >>> shift) & 31;
+            int ib = (b.hash() >>> shift) & 31;
+            if (ia == ib) {
+                @SuppressWarnings("unchecked")
+                Node<K, V>[] child = (Node<K, V>[]) new Node<?, ?>[] { pair(a, b, shift + 5) };
+                return new Bitmap<K, V>(1 << ia, child);
+            }
+            @SuppressWarnings("unchecked")
+            Node<K, V>[] children = (Node<K, V>[]) (ia < ib
+                    ? new Node<?, ?>[] { a, b } : new Node<?, ?>[] { b, a });
+            return new Bitmap<K, V>((1 << ia) | (1 << ib), children);
+        }
+        
+        @Override V get(Object k, int h, int shift) {
+            int bit = 1 << ((h >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            return children[Integer.bitCount(bitmap & (bit - 1))].get(k, h, shift + 5);
+        }
+        
+        @Override Node<K, V> put(Leaf<K, V> leaf, int shift, boolean[] added) {
+            int bit = 1 << ((leaf.hash >>> shift) & 31);
+            int pos = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                @SuppressWarnings("unchecked")
+                Node<K, V>[] copy = (Node<K, V>[]) new Node<?, ?>[children.length + 1];
+                System.arraycopy(children, 0, copy, 0, pos);
+                copy[pos] = leaf;
+                System.arraycopy(children, pos, copy, pos + 1, children.length - pos);
+                return new Bitmap<K, V>(bitmap | bit, copy);
+            }
+            Node<K, V> child = children[pos].put(leaf, shift + 5, added);
+            if (child == children[pos]) {
+                return this;
+            }
+            Node<K, V>[] copy = children.clone();
+            copy[pos] = child;
+            return new Bitmap<K, V>(bitmap, copy);
+        }
+        
+        @Override Node<K, V> remove(Object k, int h, int shift) {
+            int bit = 1 << ((h >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int pos = Integer.bitCount(bitmap & (bit - 1));
+            Node<K, V> child = children[pos].remove(k, h, shift + 5);
+            if (child == children[pos]) {
+                return this;
+            }
+            if (child != null) {
+                if (children.length == 1 && child instanceof HashedNode) {
+                    return child; // collapse a single-entry path
+                }
+                Node<K, V>[] copy = children.clone();
+                copy[pos] = child;
+                return new Bitmap<K, V>(bitmap, copy);
+            }
+            if (children.length == 1) {
+                return null;
+            }
+            if (children.length == 2 && children[1 - pos] instanceof HashedNode) {
+                return children[1 - pos];
+            }
+            @SuppressWarnings("unchecked")
+            Node<K, V>[] copy = (Node<K, V>[]) new Node<?, ?>[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, pos);
+            System.arraycopy(children, pos + 1, copy, pos, children.length - pos - 1);
+            return new Bitmap<K, V>(bitmap & ~bit, copy);
+        }
+        
+        @Override void forEach(BiConsumer<? super K, ? super V> action) {
+            for (Node<K, V> child : children) {
+                child.forEach(action);
+            }
+        }
+    }
+}
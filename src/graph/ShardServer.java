@@ -0,0 +1,222 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A worker process holding one partition of a {@link ShardedGraph}.
+ * 
+ * <p>The shard stores every edge whose source vertex hashes to it, plus
+ * every vertex that hashes to it. It serves a simple binary request/response
+ * protocol over TCP (see the OP_ constants); each connection is handled by
+ * its own thread, and requests on one connection are answered in order.
+ * 
+ * <p>Run as a separate JVM with {@code java graph.ShardServer <port>}, or
+ * start in-process with {@link #ShardServer(int)} and {@link #start()}.
+ */
+public class ShardServer implements Closeable {
+    
+    /*
+     * Protocol. Every request is an op byte followed by its arguments; strings
+     * are written with writeUTF, counts and weights with writeInt.
+     */
+    
+    /** (vertex) -&gt; boolean: add vertex */
+    static final byte OP_ADD = 1;
+    /** (source, target, weight) -&gt; int: set edge, returns old weight */
+    static final byte OP_SET = 2;
+    /** (vertex) -&gt; boolean: remove vertex and local edges to and from it */
+    static final byte OP_REMOVE = 3;
+    /** () -&gt; n, n x vertex: local vertices */
+    static final byte OP_VERTICES = 4;
+    /** (target) -&gt; n, n x (source, weight): local edges to target */
+    static final byte OP_SOURCES = 5;
+    /** (source) -&gt; n, n x (target, weight): edges from source */
+    static final byte OP_TARGETS = 6;
+    /** (n, n x (source, target, delta)) -&gt; int n: increment edges */
+    static final byte OP_INCREMENT_BATCH = 7;
+    /** (n, n x vertex) -&gt; int n: add vertices */
+    static final byte OP_ADD_BATCH = 8;
+    /** (target, n, n x source) -&gt; n x weight: weights of edges to target */
+    static final byte OP_WEIGHTS_TO = 9;
+    
+    private final ServerSocket server;
+    private final HashRep<String> graph = new HashRep<String>();
+    
+    // Abstraction function:
+    //   Represents the partition of a sharded graph held in graph, served
+    //     on server's port.
+    // Representation invariant:
+    //   true
+    // Safety from rep exposure:
+    //   All fields are private; only copies of graph data leave this class.
+    // Thread safety argument:
+    //   graph is only accessed while holding its lock; server is thread-safe.
+    
+    /**
+     * Bind a shard server to a local port. Requests are not served until
+     * {@link #start()} is called.
+     * 
+     * @param port port on the loopback interface, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ShardServer(int port) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+    
+    /**
+     * @return the port this server is bound to
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+    
+    /**
+     * Start accepting connections on a background daemon thread.
+     */
+    public void start() {
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread handler = new Thread(() -> serve(socket), "shard-" + port() + "-conn");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        }, "shard-" + port() + "-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    /**
+     * Stop accepting connections. Connections already open are served until
+     * their clients close them.
+     */
+    @Override public void close() throws IOException {
+        server.close();
+    }
+    
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                synchronized (graph) {
+                    handle(op, in, out);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // connection lost; the client sees the failure
+        }
+    }
+    
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+        case OP_ADD:
+            out.writeBoolean(graph.add(in.readUTF()));
+            break;
+        case OP_SET: {
+            String source = in.readUTF();
+            String target = in.readUTF();
+            out.writeInt(graph.set(source, target, in.readInt()));
+            break;
+        }
+        case OP_REMOVE:
+            out.writeBoolean(graph.remove(in.readUTF()));
+            break;
+        case OP_VERTICES: {
+            Set<String> vertices = graph.vertices();
+            out.writeInt(vertices.size());
+            for (String v : vertices) {
+                out.writeUTF(v);
+            }
+            break;
+        }
+        case OP_SOURCES:
+            writeEdges(graph.sources(in.readUTF()), out);
+            break;
+        case OP_TARGETS:
+            writeEdges(graph.targets(in.readUTF()), out);
+            break;
+        case OP_INCREMENT_BATCH: {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String source = in.readUTF();
+                String target = in.readUTF();
+                graph.increment(source, target, in.readInt());
+            }
+            out.writeInt(n);
+            break;
+        }
+        case OP_ADD_BATCH: {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                graph.add(in.readUTF());
+            }
+            out.writeInt(n);
+            break;
+        }
+        case OP_WEIGHTS_TO: {
+            String target = in.readUTF();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                out.writeInt(graph.weight(in.readUTF(), target));
+            }
+            break;
+        }
+        default:
+            throw new IOException("unknown op " + op);
+        }
+    }
+    
+    private static void writeEdges(Map<String, Integer> edges, DataOutputStream out) throws IOException {
+        out.writeInt(edges.size());
+        for (Map.Entry<String, Integer> e : edges.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue());
+        }
+    }
+    
+    /**
+     * Run a shard server in this JVM until it is killed.
+     * 
+     * @param args one argument, the port to listen on (0 for any free port)
+     * @throws IOException if the port cannot be bound
+     * @throws InterruptedException if interrupted while serving
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("usage: java graph.ShardServer <port>");
+            System.exit(2);
+        }
+        ShardServer shard = new ShardServer(Integer.parseInt(args[0]));
+        shard.start();
+        System.out.println("shard listening on port " + shard.port());
+        Thread.currentThread().join();
+    }
+    
+}
@@ -0,0 +1,404 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An implementation of Graph with String labels that is hash-partitioned
+ * across several {@link ShardServer} processes.
+ * 
+ * <p>Each edge is stored on the shard that owns its source vertex, and each
+ * vertex is registered on the shard that owns it, so targets() is answered by
+ * one shard while sources() and vertices() gather from all of them.
+ * Increments are buffered per shard and sent in batches; every other
+ * operation first flushes the buffers, so reads always see earlier writes.
+ * 
+ * <p>{@link #weightsTo(Collection, String)} batches the second round of a
+ * two-hop search: it asks each shard, in one request, for the weights of
+ * the edges from all of its candidate sources to a target.
+ * 
+ * <p>Network failures are reported as UncheckedIOException, since the Graph
+ * operations cannot throw IOException. An instance is not thread-safe.
+ */
+public class ShardedGraph implements IncrementalGraph<String>, Closeable {
+    
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+    
+    private final List<Connection> shards = new ArrayList<Connection>();
+    private final int batchSize;
+    private final List<List<Increment>> pendingIncrements = new ArrayList<List<Increment>>();
+    private final List<Set<String>> pendingAdds = new ArrayList<Set<String>>();
+    
+    // Abstraction function:
+    //   Represents the graph whose vertices are the union of the shards'
+    //     vertices and whose edges are the union of the shards' edges, after
+    //     applying pendingAdds[i] and then pendingIncrements[i] to shard i.
+    // Representation invariant:
+    //   shards, pendingIncrements and pendingAdds have the same length n > 0.
+    //   Every edge on shard i has a source that hashes to i, and every vertex
+    //     of the graph is a vertex of the shard it hashes to.
+    //   Each pending list holds fewer than batchSize entries.
+    // Safety from rep exposure:
+    //   All fields are private; only fresh sets and maps are returned.
+    
+    /**
+     * Connect to a set of shard servers. Every client of the same graph must
+     * list the shards in the same order.
+     * 
+     * @param addresses addresses of the shard servers, nonempty
+     * @throws IOException if a shard cannot be reached
+     */
+    public ShardedGraph(List<InetSocketAddress> addresses) throws IOException {
+        this(addresses, DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Connect to a set of shard servers. Every client of the same graph must
+     * list the shards in the same order.
+     * 
+     * @param addresses addresses of the shard servers, nonempty
+     * @param batchSize number of buffered increments per shard that triggers
+     *                  a batch to be sent, positive
+     * @throws IOException if a shard cannot be reached
+     */
+    public ShardedGraph(List<InetSocketAddress> addresses, int batchSize) throws IOException {
+        if (addresses.isEmpty() || batchSize <= 0) {
+            throw new IllegalArgumentException("need at least one shard and a positive batch size");
+        }
+        this.batchSize = batchSize;
+        try {
+            for (InetSocketAddress address : addresses) {
+                shards.add(new Connection(address));
+                pendingIncrements.add(new ArrayList<Increment>());
+                pendingAdds.add(new HashSet<String>());
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert !shards.isEmpty();
+        assert pendingIncrements.size() == shards.size() && pendingAdds.size() == shards.size();
+    }
+    
+    /**
+     * @param vertex a label
+     * @param shardCount number of shards
+     * @return index of the shard that owns vertex
+     */
+    static int shardOf(String vertex, int shardCount) {
+        int h = vertex.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+    
+    private Connection owner(String vertex) {
+        return shards.get(shardOf(vertex, shards.size()));
+    }
+    
+    /**
+     * Close the connections to all shards. The shards keep their data.
+     */
+    @Override public void close() {
+        for (Connection c : shards) {
+            c.close();
+        }
+    }
+    
+    /**
+     * Send all buffered increments to their shards.
+     */
+    public void flush() {
+        try {
+            // scatter every nonempty batch, then gather the acknowledgements
+            for (int i = 0; i < shards.size(); i++) {
+                Connection c = shards.get(i);
+                Set<String> adds = pendingAdds.get(i);
+                if (!adds.isEmpty()) {
+                    c.out.writeByte(ShardServer.OP_ADD_BATCH);
+                    c.out.writeInt(adds.size());
+                    for (String v : adds) {
+                        c.out.writeUTF(v);
+                    }
+                }
+                List<Increment> incs = pendingIncrements.get(i);
+                if (!incs.isEmpty()) {
+                    c.out.writeByte(ShardServer.OP_INCREMENT_BATCH);
+                    c.out.writeInt(incs.size());
+                    for (Increment inc : incs) {
+                        c.out.writeUTF(inc.source);
+                        c.out.writeUTF(inc.target);
+                        c.out.writeInt(inc.delta);
+                    }
+                }
+                c.out.flush();
+            }
+            for (int i = 0; i < shards.size(); i++) {
+                Connection c = shards.get(i);
+                if (!pendingAdds.get(i).isEmpty()) {
+                    c.in.readInt();
+                    pendingAdds.get(i).clear();
+                }
+                if (!pendingIncrements.get(i).isEmpty()) {
+                    c.in.readInt();
+                    pendingIncrements.get(i).clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override public void increment(String source, String target, int delta) {
+        int s = shardOf(source, shards.size());
+        int t = shardOf(target, shards.size());
+        pendingIncrements.get(s).add(new Increment(source, target, delta));
+        if (s != t) {
+            pendingAdds.get(t).add(target);
+        }
+        if (pendingIncrements.get(s).size() >= batchSize || pendingAdds.get(t).size() >= batchSize) {
+            flush();
+        }
+    }
+    
+    @Override public boolean add(String vertex) {
+        flush();
+        try {
+            Connection c = owner(vertex);
+            c.out.writeByte(ShardServer.OP_ADD);
+            c.out.writeUTF(vertex);
+            c.out.flush();
+            return c.in.readBoolean();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override public int set(String source, String target, int weight) {
+        flush();
+        try {
+            Connection c = owner(source);
+            c.out.writeByte(ShardServer.OP_SET);
+            c.out.writeUTF(source);
+            c.out.writeUTF(target);
+            c.out.writeInt(weight);
+            c.out.flush();
+            int old = c.in.readInt();
+            Connection t = owner(target);
+            if (weight != 0 && t != c) {
+                t.out.writeByte(ShardServer.OP_ADD);
+                t.out.writeUTF(target);
+                t.out.flush();
+                t.in.readBoolean();
+            }
+            return old;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override public boolean remove(String vertex) {
+        flush();
+        try {
+            for (Connection c : shards) {
+                c.out.writeByte(ShardServer.OP_REMOVE);
+                c.out.writeUTF(vertex);
+                c.out.flush();
+            }
+            boolean removed = false;
+            for (Connection c : shards) {
+                removed |= c.in.readBoolean();
+            }
+            return removed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override public Set<String> vertices() {
+        flush();
+        try {
+            for (Connection c : shards) {
+                c.out.writeByte(ShardServer.OP_VERTICES);
+                c.out.flush();
+            }
+            Set<String> vs = new HashSet<String>();
+            for (Connection c : shards) {
+                for (int n = c.in.readInt(); n > 0; n--) {
+                    vs.add(c.in.readUTF());
+                }
+            }
+            return vs;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override public Map<String, Integer> sources(String target) {
+        flush();
+        try {
+            for (Connection c : shards) {
+                c.out.writeByte(ShardServer.OP_SOURCES);
+                c.out.writeUTF(target);
+                c.out.flush();
+            }
+            Map<String, Integer> srcs = new HashMap<String, Integer>();
+            for (Connection c : shards) {
+                readEdges(c.in, srcs);
+            }
+            return srcs;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override public Map<String, Integer> targets(String source) {
+        flush();
+        try {
+            Connection c = owner(source);
+            c.out.writeByte(ShardServer.OP_TARGETS);
+            c.out.writeUTF(source);
+            c.out.flush();
+            Map<String, Integer> tgts = new HashMap<String, Integer>();
+            readEdges(c.in, tgts);
+            return tgts;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Get the weights of the edges from several sources to one target, with
+     * one request to each shard that owns any of the sources.
+     * 
+     * @param sources labels of source vertices
+     * @param target label of the target vertex
+     * @return a map from each source with an edge to target to the weight of
+     *         that edge
+     */
+    public Map<String, Integer> weightsTo(Collection<String> sources, String target) {
+        flush();
+        List<List<String>> bySource = new ArrayList<List<String>>();
+        for (int i = 0; i < shards.size(); i++) {
+            bySource.add(new ArrayList<String>());
+        }
+        for (String s : sources) {
+            bySource.get(shardOf(s, shards.size())).add(s);
+        }
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                List<String> batch = bySource.get(i);
+                if (!batch.isEmpty()) {
+                    Connection c = shards.get(i);
+                    c.out.writeByte(ShardServer.OP_WEIGHTS_TO);
+                    c.out.writeUTF(target);
+                    c.out.writeInt(batch.size());
+                    for (String s : batch) {
+                        c.out.writeUTF(s);
+                    }
+                    c.out.flush();
+                }
+            }
+            Map<String, Integer> weights = new HashMap<String, Integer>();
+            for (int i = 0; i < shards.size(); i++) {
+                for (String s : bySource.get(i)) {
+                    int w = shards.get(i).in.readInt();
+                    if (w != 0) {
+                        weights.put(s, w);
+                    }
+                }
+            }
+            return weights;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static void readEdges(DataInputStream in, Map<String, Integer> edges) throws IOException {
+        for (int n = in.readInt(); n > 0; n--) {
+            String v = in.readUTF();
+            edges.put(v, in.readInt());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        Set<String> vertices = vertices();
+        for (String v : vertices) {
+            s.append(v + "\n");
+        }
+        s.append("\nedges:\n");
+        for (String v : vertices) {
+            for (Map.Entry<String, Integer> e : targets(v).entrySet()) {
+                s.append(v + " -> " + e.getKey() + " (" + e.getValue() + ")\n");
+            }
+        }
+        return s.toString();
+    }
+    
+}
+
+/**
+ * A client connection to one shard server.
+ * Mutable.
+ * This class is internal to the rep of ShardedGraph.
+ */
+class Connection {
+    
+    final Socket socket;
+    final DataInputStream in;
+    final DataOutputStream out;
+    
+    Connection(InetSocketAddress address) throws IOException {
+        socket = new Socket(address.getAddress(), address.getPort());
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+    
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing more to release
+        }
+    }
+}
+
+/**
+ * A buffered increment of one edge.
+ * Immutable.
+ * This class is internal to the rep of ShardedGraph.
+ */
+class Increment {
+    
+    final String source;
+    final String target;
+    final int delta;
+    
+    Increment(String source, String target, int delta) {
+        this.source = source;
+        this.target = target;
+        this.delta = delta;
+    }
+}
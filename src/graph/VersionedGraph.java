@@ -0,0 +1,506 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A multi-version implementation of Graph that hands out immutable
+ * point-in-time snapshots.
+ *
+ * <p>Every mutation publishes a new version atomically; readers that obtain a
+ * {@link Snapshot} see a consistent graph for as long as they hold it and
+ * never block, or are blocked by, writers. Versions share structure through
+ * persistent hash tries, so publishing a change copies only O(log n) nodes.
+ *
+ * <p>Batches of changes can be made with {@link #begin()}: the returned
+ * {@link Transaction} accumulates changes privately and publishes them as a
+ * single version on {@link Transaction#commit() commit}.
+ *
+ * <p>Superseded versions stay reachable through {@link #snapshot(long)} while
+ * they are within the retention limits given at construction; after that
+ * they are reclaimed by the garbage collector as soon as no reader holds them.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class VersionedGraph<L> implements Graph<L> {
+    
+    private final AtomicReference<Snapshot<L>> current;
+    private final Deque<Retained<L>> retained = new ArrayDeque<Retained<L>>();
+    private final int maxRetainedVersions;
+    private final long maxRetainedNanos;
+    
+    // Abstraction function:
+    //   Represents the graph of the current snapshot; the snapshots in
+    //     retained (newest first) are earlier versions still addressable by
+    //     version number.
+    // Representation invariant:
+    //   Version numbers strictly decrease from current through retained.
+    //   retained holds at most maxRetainedVersions entries.
+    // Safety from rep exposure:
+    //   All fields are private; snapshots are immutable and may be shared.
+    // Thread safety argument:
+    //   current is only replaced by compare-and-set, so each published
+    //     version is derived from the one it replaces. Writers publish while
+    //     holding retained's lock, which keeps retained in version order;
+    //     readers of current never take the lock.
+    
+    /**
+     * Create an empty versioned graph that does not retain superseded
+     * versions (readers that already hold them are unaffected).
+     */
+    public VersionedGraph() {
+        this(0, 0, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Create an empty versioned graph.
+     *
+     * @param maxRetainedVersions maximum number of superseded versions that
+     *                            remain reachable by version number, nonnegative
+     * @param maxRetainedAge maximum time a superseded version remains
+     *                       reachable by version number, nonnegative
+     * @param unit unit of maxRetainedAge
+     */
+    public VersionedGraph(int maxRetainedVersions, long maxRetainedAge, TimeUnit unit) {
+        if (maxRetainedVersions < 0 || maxRetainedAge < 0) {
+            throw new IllegalArgumentException("retention limits must be nonnegative");
+        }
+        this.maxRetainedVersions = maxRetainedVersions;
+        this.maxRetainedNanos = unit.toNanos(maxRetainedAge);
+        this.current = new AtomicReference<Snapshot<L>>(
+                new Snapshot<L>(0, PersistentMap.<L, Adjacency<L>>empty()));
+    }
+    
+    private void checkRep() {
+        synchronized (retained) {
+            assert retained.size() <= maxRetainedVersions;
+            long newer = current.get().version;
+            for (Retained<L> r : retained) {
+                assert r.snapshot.version < newer;
+                newer = r.snapshot.version;
+            }
+        }
+    }
+    
+    /**
+     * @return an immutable view of the latest published version of this graph
+     */
+    public Snapshot<L> snapshot() {
+        return current.get();
+    }
+    
+    /**
+     * Get a specific version of this graph.
+     *
+     * @param version a version number
+     * @return the snapshot with that version number
+     * @throws NoSuchElementException if that version is not current and is
+     *         no longer (or was never) retained
+     */
+    public Snapshot<L> snapshot(long version) {
+        Snapshot<L> latest = current.get();
+        if (latest.version == version) {
+            return latest;
+        }
+        synchronized (retained) {
+            trim(System.nanoTime());
+            for (Retained<L> r : retained) {
+                if (r.snapshot.version == version) {
+                    return r.snapshot;
+                }
+            }
+        }
+        throw new NoSuchElementException("version " + version + " is not retained");
+    }
+    
+    /**
+     * @return the version number of the latest published version
+     */
+    public long version() {
+        return current.get().version;
+    }
+    
+    /**
+     * Start a batch of changes against the latest published version.
+     *
+     * @return a transaction whose changes are published together on commit
+     */
+    public Transaction<L> begin() {
+        return new Transaction<L>(this, current.get());
+    }
+    
+    // publish next if base is still current; returns false on a conflicting commit
+    private boolean publish(Snapshot<L> base, Snapshot<L> next) {
+        if (next == base) {
+            return true;
+        }
+        synchronized (retained) {
+            if (!current.compareAndSet(base, next)) {
+                return false;
+            }
+            long now = System.nanoTime();
+            if (maxRetainedVersions > 0) {
+                retained.addFirst(new Retained<L>(base, now));
+            }
+            trim(now);
+        }
+        checkRep();
+        return true;
+    }
+    
+    // drop retained versions beyond the count or age limit; must hold retained's lock
+    private void trim(long now) {
+        while (retained.size() > maxRetainedVersions) {
+            retained.removeLast();
+        }
+        for (Iterator<Retained<L>> iter = retained.descendingIterator(); iter.hasNext();) {
+            if (now - iter.next().supersededAt > maxRetainedNanos) {
+                iter.remove();
+            } else {
+                break;
+            }
+        }
+    }
+    
+    @Override public boolean add(L vertex) {
+        while (true) {
+            Snapshot<L> base = current.get();
+            Transaction<L> tx = new Transaction<L>(this, base);
+            boolean res = tx.add(vertex);
+            if (publish(base, tx.result())) {
+                return res;
+            }
+        }
+    }
+    
+    @Override public int set(L source, L target, int weight) {
+        while (true) {
+            Snapshot<L> base = current.get();
+            Transaction<L> tx = new Transaction<L>(this, base);
+            int res = tx.set(source, target, weight);
+            if (publish(base, tx.result())) {
+                return res;
+            }
+        }
+    }
+    
+    @Override public boolean remove(L vertex) {
+        while (true) {
+            Snapshot<L> base = current.get();
+            Transaction<L> tx = new Transaction<L>(this, base);
+            boolean res = tx.remove(vertex);
+            if (publish(base, tx.result())) {
+                return res;
+            }
+        }
+    }
+    
+    @Override public Set<L> vertices() {
+        return current.get().vertices();
+    }
+    
+    @Override public Map<L, Integer> sources(L target) {
+        return current.get().sources(target);
+    }
+    
+    @Override public Map<L, Integer> targets(L source) {
+        return current.get().targets(source);
+    }
+    
+    @Override
+    public String toString() {
+        return current.get().toString();
+    }
+    
+    /*
+     * Shared read operations over a persistent vertex map.
+     */
+    
+    private static <L> Set<L> vertices(PersistentMap<L, Adjacency<L>> vertices) {
+        Set<L> vs = new HashSet<L>();
+        vertices.forEach((v, adj) -> vs.add(v));
+        return vs;
+    }
+    
+    private static <L> Map<L, Integer> toMap(Adjacency<L> adj, boolean outgoing) {
+        Map<L, Integer> edges = new HashMap<L, Integer>();
+        if (adj != null) {
+            (outgoing ? adj.out : adj.in).forEach(edges::put);
+        }
+        return edges;
+    }
+    
+    private static <L> String toString(PersistentMap<L, Adjacency<L>> vertices) {
+        StringBuilder s = new StringBuilder("vertices:\n");
+        vertices.forEach((v, adj) -> s.append(v.toString() + "\n"));
+        s.append("\nedges:\n");
+        vertices.forEach((v, adj) -> adj.out.forEach((t, w) ->
+                s.append(v.toString() + " -> " + t.toString() + " (" + w + ")\n")));
+        return s.toString();
+    }
+    
+    /**
+     * An immutable version of a VersionedGraph.
+     * Mutators throw UnsupportedOperationException.
+     *
+     * @param <L> type of vertex labels in this graph, must be immutable
+     */
+    public static final class Snapshot<L> implements Graph<L> {
+        
+        private final long version;
+        private final PersistentMap<L, Adjacency<L>> vertices;
+        
+        // Abstraction function:
+        //   Represents the graph whose vertices are the keys of vertices and
+        //     which has an edge from u to v with weight w iff
+        //     vertices.get(u).out maps v to w.
+        // Representation invariant:
+        //   vertices.get(u).out maps v to w iff vertices.get(v).in maps u to w.
+        //   No weight is zero.
+        // Safety from rep exposure:
+        //   All fields are private, final and immutable.
+        
+        private Snapshot(long version, PersistentMap<L, Adjacency<L>> vertices) {
+            this.version = version;
+            this.vertices = vertices;
+        }
+        
+        /**
+         * @return the version number of this snapshot; later versions of the
+         *         same graph have larger numbers
+         */
+        public long version() {
+            return version;
+        }
+        
+        @Override public boolean add(L vertex) {
+            throw new UnsupportedOperationException("snapshots are immutable");
+        }
+        
+        @Override public int set(L source, L target, int weight) {
+            throw new UnsupportedOperationException("snapshots are immutable");
+        }
+        
+        @Override public boolean remove(L vertex) {
+            throw new UnsupportedOperationException("snapshots are immutable");
+        }
+        
+        @Override public Set<L> vertices() {
+            return VersionedGraph.vertices(vertices);
+        }
+        
+        @Override public Map<L, Integer> sources(L target) {
+            return toMap(vertices.get(target), false);
+        }
+        
+        @Override public Map<L, Integer> targets(L source) {
+            return toMap(vertices.get(source), true);
+        }
+        
+        @Override
+        public String toString() {
+            return VersionedGraph.toString(vertices);
+        }
+    }
+    
+    /**
+     * A batch of changes to a VersionedGraph, made against the version that
+     * was current when the transaction began.
+     * Reads observe the transaction's own changes; nothing is visible to
+     * other readers until commit. Not safe for use by multiple threads.
+     *
+     * @param <L> type of vertex labels in this graph, must be immutable
+     */
+    public static final class Transaction<L> implements Graph<L> {
+        
+        private final VersionedGraph<L> owner;
+        private final Snapshot<L> base;
+        private PersistentMap<L, Adjacency<L>> vertices;
+        private boolean done = false;
+        
+        // Abstraction function:
+        //   Represents the graph of base with this transaction's changes
+        //     applied, held in vertices exactly as in Snapshot.
+        // Representation invariant:
+        //   Same as Snapshot for vertices.
+        // Safety from rep exposure:
+        //   All fields are private; vertices is immutable.
+        
+        private Transaction(VersionedGraph<L> owner, Snapshot<L> base) {
+            this.owner = owner;
+            this.base = base;
+            this.vertices = base.vertices;
+        }
+        
+        private void checkActive() {
+            if (done) {
+                throw new IllegalStateException("transaction already committed");
+            }
+        }
+        
+        private Snapshot<L> result() {
+            return vertices == base.vertices ? base : new Snapshot<L>(base.version + 1, vertices);
+        }
+        
+        /**
+         * Atomically publish this transaction's changes as a new version.
+         *
+         * @return the published snapshot (the base snapshot if there were no
+         *         changes)
+         * @throws ConcurrentModificationException if another change was
+         *         published after this transaction began; none of this
+         *         transaction's changes are published in that case
+         */
+        public Snapshot<L> commit() {
+            checkActive();
+            done = true;
+            Snapshot<L> next = result();
+            if (!owner.publish(base, next)) {
+                throw new ConcurrentModificationException(
+                        "version " + base.version + " was superseded before commit");
+            }
+            return next;
+        }
+        
+        @Override public boolean add(L vertex) {
+            checkActive();
+            if (vertices.containsKey(vertex)) {
+                return false;
+            }
+            vertices = vertices.plus(vertex, Adjacency.<L>empty());
+            return true;
+        }
+        
+        @Override public int set(L source, L target, int weight) {
+            checkActive();
+            Adjacency<L> src = vertices.get(source);
+            Integer old = src == null ? null : src.out.get(target);
+            int oldWeight = old == null ? 0 : old;
+            if (weight == 0) {
+                if (old != null) {
+                    vertices = vertices.plus(source, src.withOut(src.out.minus(target)));
+                    Adjacency<L> tgt = vertices.get(target);
+                    vertices = vertices.plus(target, tgt.withIn(tgt.in.minus(source)));
+                }
+                return oldWeight;
+            }
+            if (src == null) {
+                src = Adjacency.empty();
+            }
+            vertices = vertices.plus(source, src.withOut(src.out.plus(target, weight)));
+            Adjacency<L> tgt = vertices.get(target);
+            if (tgt == null) {
+                tgt = Adjacency.empty();
+            }
+            vertices = vertices.plus(target, tgt.withIn(tgt.in.plus(source, weight)));
+            return oldWeight;
+        }
+        
+        @Override public boolean remove(L vertex) {
+            checkActive();
+            Adjacency<L> adj = vertices.get(vertex);
+            if (adj == null) {
+                return false;
+            }
+            vertices = vertices.minus(vertex);
+            adj.out.forEach((t, w) -> {
+                Adjacency<L> tgt = vertices.get(t);
+                if (tgt != null) {
+                    vertices = vertices.plus(t, tgt.withIn(tgt.in.minus(vertex)));
+                }
+            });
+            adj.in.forEach((s, w) -> {
+                Adjacency<L> src = vertices.get(s);
+                if (src != null) {
+                    vertices = vertices.plus(s, src.withOut(src.out.minus(vertex)));
+                }
+            });
+            return true;
+        }
+        
+        @Override public Set<L> vertices() {
+            return VersionedGraph.vertices(vertices);
+        }
+        
+        @Override public Map<L, Integer> sources(L target) {
+            return toMap(vertices.get(target), false);
+        }
+        
+        @Override public Map<L, Integer> targets(L source) {
+            return toMap(vertices.get(source), true);
+        }
+        
+        @Override
+        public String toString() {
+            return VersionedGraph.toString(vertices);
+        }
+    }
+}
+
+/**
+ * The outgoing and incoming edges of one vertex of a VersionedGraph.
+ * Immutable.
+ * This class is internal to the rep of VersionedGraph.
+ */
+class Adjacency<L> {
+    
+    private static final Adjacency<Object> EMPTY = new Adjacency<Object>(
+            PersistentMap.<Object, Integer>empty(), PersistentMap.<Object, Integer>empty());
+    
+    final PersistentMap<L, Integer> out;
+    final PersistentMap<L, Integer> in;
+    
+    // Abstraction function:
+    //   out maps each target of the vertex to the edge weight, in maps each
+    //     source of the vertex to the edge weight.
+    // Representation invariant:
+    //   No weight is zero.
+    // Safety from rep exposure:
+    //   Fields are final and immutable.
+    
+    private Adjacency(PersistentMap<L, Integer> out, PersistentMap<L, Integer> in) {
+        this.out = out;
+        this.in = in;
+    }
+    
+    @SuppressWarnings("unchecked")
+    static <L> Adjacency<L> empty() {
+        return (Adjacency<L>) EMPTY;
+    }
+    
+    Adjacency<L> withOut(PersistentMap<L, Integer> newOut) {
+        return newOut == out ? this : new Adjacency<L>(newOut, in);
+    }
+    
+    Adjacency<L> withIn(PersistentMap<L, Integer> newIn) {
+        return newIn == in ? this : new Adjacency<L>(out, newIn);
+    }
+}
+
+/**
+ * A superseded snapshot and when it was superseded.
+ * Immutable.
+ * This class is internal to the rep of VersionedGraph.
+ */
+class Retained<L> {
+    
+    final VersionedGraph.Snapshot<L> snapshot;
+    final long supersededAt;
+    
+    Retained(VersionedGraph.Snapshot<L> snapshot, long supersededAt) {
+        this.snapshot = snapshot;
+        this.supersededAt = supersededAt;
+    }
+}
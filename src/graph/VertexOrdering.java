@@ -0,0 +1,188 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * A strategy for numbering the vertices of a {@link FrozenGraph} so that
+ * vertices used together have nearby ids, and so their labels and adjacency
+ * ranges sit close together in memory.
+ * 
+ * @see FrozenGraph#reorder(VertexOrdering)
+ */
+public enum VertexOrdering {
+    
+    /**
+     * Most frequent vertices first, where the frequency of a vertex is the
+     * total weight of its incoming and outgoing edges (for an affinity graph,
+     * about twice the number of times the word occurs).
+     */
+    FREQUENCY {
+        @Override int[] order(FrozenGraph<?> graph) {
+            long[] keys = new long[graph.vertexCount()];
+            for (int v = 0; v < keys.length; v++) {
+                long frequency = 0;
+                for (int i = graph.outStart(v); i < graph.outEnd(v); i++) {
+                    frequency += graph.outWeight(i);
+                }
+                for (int i = graph.inStart(v); i < graph.inEnd(v); i++) {
+                    frequency += graph.inWeight(i);
+                }
+                keys[v] = frequency;
+            }
+            return descending(keys);
+        }
+    },
+    
+    /**
+     * Reverse Cuthill-McKee: a breadth-first numbering of each connected
+     * component, ignoring edge direction, from a vertex of least degree and
+     * visiting neighbours in increasing order of degree, then reversed.
+     * Neighbours get nearby ids, which also narrows the id gaps that
+     * {@link CompressedGraph} encodes.
+     */
+    CUTHILL_MCKEE {
+        @Override int[] order(FrozenGraph<?> graph) {
+            int n = graph.vertexCount();
+            int[] degree = degrees(graph);
+            int[] byDegree = ascending(degree);
+            boolean[] placed = new boolean[n];
+            int[] order = new int[n];
+            int head = 0;
+            int tail = 0;
+            int[] neighbours = new int[0];
+            for (int root : byDegree) {
+                if (placed[root]) {
+                    continue;
+                }
+                placed[root] = true;
+                order[tail++] = root;
+                while (head < tail) {
+                    int v = order[head++];
+                    int count = 0;
+                    int size = degree[v];
+                    if (neighbours.length < size) {
+                        neighbours = new int[size];
+                    }
+                    for (int i = graph.outStart(v); i < graph.outEnd(v); i++) {
+                        int u = graph.outTarget(i);
+                        if (!placed[u]) {
+                            placed[u] = true;
+                            neighbours[count++] = u;
+                        }
+                    }
+                    for (int i = graph.inStart(v); i < graph.inEnd(v); i++) {
+                        int u = graph.inSource(i);
+                        if (!placed[u]) {
+                            placed[u] = true;
+                            neighbours[count++] = u;
+                        }
+                    }
+                    // sort the new neighbours by degree, then id
+                    long[] keyed = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        keyed[i] = ((long) degree[neighbours[i]] << 32) | neighbours[i];
+                    }
+                    Arrays.sort(keyed);
+                    for (long k : keyed) {
+                        order[tail++] = (int) k;
+                    }
+                }
+            }
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            return order;
+        }
+    },
+    
+    /**
+     * Hub clustering: vertices of more than average degree first, in
+     * decreasing order of degree, followed by the remaining vertices in their
+     * current order. Hubs, which most searches touch, share a few cache lines
+     * while the rest of the layout is preserved.
+     */
+    HUB_CLUSTERING {
+        @Override int[] order(FrozenGraph<?> graph) {
+            int n = graph.vertexCount();
+            int[] degree = degrees(graph);
+            long total = 0;
+            for (int d : degree) {
+                total += d;
+            }
+            int hubs = 0;
+            long[] hubKeys = new long[n];
+            for (int v = 0; v < n; v++) {
+                if ((long) degree[v] * n > total) {
+                    hubKeys[hubs++] = ((long) degree[v] << 32) | v;
+                }
+            }
+            hubKeys = Arrays.copyOf(hubKeys, hubs);
+            Arrays.sort(hubKeys);
+            int[] order = new int[n];
+            boolean[] placed = new boolean[n];
+            for (int i = 0; i < hubs; i++) {
+                int v = (int) hubKeys[hubs - 1 - i];
+                order[i] = v;
+                placed[v] = true;
+            }
+            int next = hubs;
+            for (int v = 0; v < n; v++) {
+                if (!placed[v]) {
+                    order[next++] = v;
+                }
+            }
+            return order;
+        }
+    };
+    
+    /**
+     * Compute a new numbering of a graph's vertices.
+     * 
+     * @param graph a frozen graph
+     * @return a permutation of 0..graph.vertexCount()-1, listing the current
+     *         id of each vertex in its new position
+     */
+    abstract int[] order(FrozenGraph<?> graph);
+    
+    // number of edges into and out of each vertex
+    private static int[] degrees(FrozenGraph<?> graph) {
+        int[] degree = new int[graph.vertexCount()];
+        for (int v = 0; v < degree.length; v++) {
+            degree[v] = graph.outEnd(v) - graph.outStart(v) + graph.inEnd(v) - graph.inStart(v);
+        }
+        return degree;
+    }
+    
+    // vertex ids sorted by increasing key, ties by id
+    private static int[] ascending(int[] keys) {
+        long[] keyed = new long[keys.length];
+        for (int v = 0; v < keys.length; v++) {
+            keyed[v] = ((long) keys[v] << 32) | v;
+        }
+        Arrays.sort(keyed);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keyed[i];
+        }
+        return order;
+    }
+    
+    // vertex ids sorted by decreasing key, ties by id
+    private static int[] descending(long[] keys) {
+        Integer[] ids = new Integer[keys.length];
+        for (int v = 0; v < keys.length; v++) {
+            ids[v] = v;
+        }
+        Arrays.sort(ids, (a, b) -> keys[a] != keys[b] ? Long.compare(keys[b], keys[a]) : Integer.compare(a, b));
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = ids[i];
+        }
+        return order;
+    }
+}
@@ -0,0 +1,312 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Graph that only remembers recent changes: time is divided into epochs,
+ * and each change to an edge weight expires a fixed number of epochs after
+ * the epoch in which it was made.
+ * 
+ * <p>The weight of an edge is the sum of the changes made to it during the
+ * last {@code window} epochs, including the current one. Counting clients
+ * such as GraphPoet's training call {@link #increment} as text
+ * arrives and {@link #advanceEpoch()} at each epoch boundary (every hour, or
+ * every batch of corpus text), so the graph always reflects the most recent
+ * text. {@link #set} replaces the history of an edge: the new weight counts
+ * as a change made in the current epoch.
+ * 
+ * <p>A vertex stays in the graph while it has edges, and otherwise until
+ * {@code window} epochs after it was last added or used in a nonzero set()
+ * or increment(). remove() takes effect at once.
+ * 
+ * <p>Changes are kept in a ring of one bucket per epoch, beside a hashed
+ * graph of the summed weights. Reads see the summed weights directly, and
+ * advancing an epoch only visits the edges and vertices changed in the
+ * epoch that expires.
+ * 
+ * <p>WindowedGraph is thread-safe: every operation, advanceEpoch()
+ * included, holds the graph's lock, so a GraphPoet may read the graph while
+ * another thread trains it or advances the epoch. Each operation is atomic,
+ * but a poem spans many reads, and may see weights from both sides of a
+ * concurrent advanceEpoch() or increment(). For poems that each see one
+ * consistent window, keep the WindowedGraph private to the writer and, at
+ * each epoch boundary, copy its weights into a {@link VersionedGraph} in one
+ * {@link VersionedGraph#begin() transaction}; a GraphPoet over the
+ * VersionedGraph reads a single snapshot per poem.
+ * 
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class WindowedGraph<L> implements IncrementalGraph<L>, MeasuredGraph<L> {
+    
+    private final HashRep<L> sum = new HashRep<L>();
+    private final Epoch<L>[] ring;
+    private long epoch = 0;
+    private final Map<L, Long> lastSeen = new HashMap<L, Long>();
+    
+    // Abstraction function:
+    //   Represents the graph sum, whose weights are the totals of the
+    //     changes recorded in the buckets of ring for epochs
+    //     epoch-window+1..epoch; ring[e % window] is the bucket of epoch e.
+    // Representation invariant:
+    //   ring[epoch % window].number == epoch, and every bucket's number is
+    //     in (epoch - window, epoch].
+    //   For every edge (s, t), sum's weight is the total of the deltas of
+    //     (s, t) in the buckets, and is positive; edges not in sum have no
+    //     deltas. No delta is zero, and no delta map is empty.
+    //   lastSeen has the same keys as sum.vertices(), each mapped to an epoch
+    //     in (epoch - window, epoch] whose bucket's touched set holds it, and
+    //     no edge of a vertex has a delta in a later epoch than lastSeen.
+    // Safety from rep exposure:
+    //   All fields are private; sum returns fresh sets and maps.
+    // Thread safety argument:
+    //   All accesses to the mutable fields happen in synchronized methods,
+    //     or in private methods called only from them.
+    
+    /**
+     * Create an empty windowed graph at epoch 0.
+     * 
+     * @param window number of epochs each change counts for, positive
+     */
+    @SuppressWarnings("unchecked")
+    public WindowedGraph(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        ring = (Epoch<L>[]) new Epoch<?>[window];
+        ring[0] = new Epoch<L>(0);
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert ring[(int) (epoch % ring.length)].number == epoch;
+        for (Epoch<L> bucket : ring) {
+            assert bucket == null || (bucket.number <= epoch && bucket.number > epoch - ring.length);
+        }
+        assert lastSeen.keySet().equals(sum.vertices());
+    }
+    
+    /**
+     * @return number of epochs each change counts for
+     */
+    public int window() {
+        return ring.length;
+    }
+    
+    /**
+     * @return the current epoch, starting at 0
+     */
+    public synchronized long epoch() {
+        return epoch;
+    }
+    
+    /**
+     * Start the next epoch, expiring the changes made window epochs ago and
+     * the vertices not seen since. Takes time proportional to the number of
+     * edges and vertices changed in the expiring epoch.
+     * 
+     * @return number of edges whose weight changed
+     */
+    public synchronized int advanceEpoch() {
+        epoch++;
+        int slot = (int) (epoch % ring.length);
+        Epoch<L> expired = ring[slot];
+        ring[slot] = new Epoch<L>(epoch);
+        int changed = 0;
+        if (expired != null) {
+            for (Map.Entry<L, Map<L, Integer>> out : expired.deltas.entrySet()) {
+                L source = out.getKey();
+                for (Map.Entry<L, Integer> delta : out.getValue().entrySet()) {
+                    L target = delta.getKey();
+                    int weight = sum.weight(source, target) - delta.getValue();
+                    if (weight > 0) {
+                        sum.set(source, target, weight);
+                    } else {
+                        // later negative deltas outlived the counts they
+                        // cancelled; the edge is gone
+                        sum.set(source, target, 0);
+                        forget(source, target);
+                    }
+                    changed++;
+                }
+            }
+            for (L vertex : expired.touched) {
+                Long seen = lastSeen.get(vertex);
+                if (seen != null && seen == expired.number) {
+                    // every epoch in which it had edges has now expired
+                    sum.remove(vertex);
+                    lastSeen.remove(vertex);
+                }
+            }
+        }
+        checkRep();
+        return changed;
+    }
+    
+    // record that vertex was used in the current epoch
+    private void touch(L vertex) {
+        lastSeen.put(vertex, epoch);
+        ring[(int) (epoch % ring.length)].touched.add(vertex);
+    }
+    
+    // remove every delta of an edge from the buckets
+    private void forget(L source, L target) {
+        for (Epoch<L> bucket : ring) {
+            if (bucket != null) {
+                bucket.put(source, target, 0);
+            }
+        }
+    }
+    
+    @Override public synchronized boolean add(L vertex) {
+        boolean added = sum.add(vertex);
+        touch(vertex);
+        checkRep();
+        return added;
+    }
+    
+    @Override public synchronized int set(L source, L target, int weight) {
+        int old = sum.set(source, target, weight);
+        forget(source, target);
+        if (weight != 0) {
+            ring[(int) (epoch % ring.length)].put(source, target, weight);
+            touch(source);
+            touch(target);
+        }
+        checkRep();
+        return old;
+    }
+    
+    @Override public synchronized void increment(L source, L target, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        int weight = sum.weight(source, target) + delta;
+        if (weight <= 0) {
+            // the edge is removed, so its history goes with it
+            set(source, target, 0);
+            return;
+        }
+        sum.set(source, target, weight);
+        Epoch<L> current = ring[(int) (epoch % ring.length)];
+        current.put(source, target, current.delta(source, target) + delta);
+        touch(source);
+        touch(target);
+        checkRep();
+    }
+    
+    @Override public synchronized boolean remove(L vertex) {
+        if (!lastSeen.containsKey(vertex)) {
+            return false;
+        }
+        for (L source : sum.sources(vertex).keySet()) {
+            forget(source, vertex);
+        }
+        for (L target : sum.targets(vertex).keySet()) {
+            forget(vertex, target);
+        }
+        sum.remove(vertex);
+        lastSeen.remove(vertex);
+        checkRep();
+        return true;
+    }
+    
+    @Override public synchronized Set<L> vertices() {
+        return sum.vertices();
+    }
+    
+    @Override public synchronized Map<L, Integer> sources(L target) {
+        return sum.sources(target);
+    }
+    
+    @Override public synchronized Map<L, Integer> targets(L source) {
+        return sum.targets(source);
+    }
+    
+    @Override public synchronized Footprint footprint() {
+        long history = Footprint.array(ring.length, 4);
+        for (Epoch<L> bucket : ring) {
+            if (bucket != null) {
+                history += bucket.bytes();
+            }
+        }
+        return sum.footprint().plus(new Footprint(
+                Footprint.hashMap(lastSeen.size()) + lastSeen.size() * Footprint.object(8), history, 0, 0, 0));
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return sum.toString();
+    }
+    
+}
+
+/**
+ * The changes made to a WindowedGraph in one epoch.
+ * Mutable.
+ * This class is internal to the rep of WindowedGraph.
+ */
+class Epoch<L> {
+    
+    final long number;
+    final Map<L, Map<L, Integer>> deltas = new HashMap<L, Map<L, Integer>>();
+    final Set<L> touched = new HashSet<L>();
+    
+    // Abstraction function:
+    //   Represents the changes of epoch `number`: deltas[s][t] was added to
+    //     the weight of edge (s, t), and the vertices in touched were used.
+    // Representation invariant:
+    //   no delta is zero and no delta map is empty
+    // Safety from rep exposure:
+    //   Fields are visible only within the package, to WindowedGraph.
+    
+    Epoch(long number) {
+        this.number = number;
+    }
+    
+    /**
+     * @return the change to edge (source, target) in this epoch, or zero
+     */
+    int delta(L source, L target) {
+        Map<L, Integer> out = deltas.get(source);
+        Integer delta = out == null ? null : out.get(target);
+        return delta == null ? 0 : delta;
+    }
+    
+    /**
+     * Replace the change to edge (source, target) in this epoch; zero
+     * removes it.
+     */
+    void put(L source, L target, int delta) {
+        Map<L, Integer> out = deltas.get(source);
+        if (delta == 0) {
+            if (out != null && out.remove(target) != null && out.isEmpty()) {
+                deltas.remove(source);
+            }
+            return;
+        }
+        if (out == null) {
+            out = new HashMap<L, Integer>();
+            deltas.put(source, out);
+        }
+        out.put(target, delta);
+    }
+    
+    /**
+     * @return estimated bytes retained by this epoch's changes
+     */
+    long bytes() {
+        long bytes = Footprint.object(3 * 4 + 8) + Footprint.hashMap(deltas.size())
+                + Footprint.hashMap(touched.size());
+        for (Map<L, Integer> out : deltas.values()) {
+            bytes += Footprint.hashMap(out.size()) + out.size() * Footprint.INTEGER;
+        }
+        return bytes;
+    }
+    
+}
@@ -7,13 +7,32 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 
+import graph.AdaptiveGraph;
+import graph.CompressedGraph;
+import graph.FlightEvents;
+import graph.Footprint;
+import graph.FrozenGraph;
 import graph.Graph;
+import graph.GraphMetrics;
+import graph.GraphMetrics.Counter;
+import graph.GraphMetrics.Histogram;
+import graph.IncrementalGraph;
+import graph.ShardedGraph;
+import graph.VersionedGraph;
 
 /**
  * A graph-based poetry generator.
@@ -39,6 +58,8 @@ import graph.Graph;
  * The bridge word between input words "w1" and "w2" will be some "b" such that
  * w1 -> b -> w2 is a two-edge-long path with maximum-weight weight among all
  * the two-edge-long paths from w1 to w2 in the affinity graph.
+ * Among bridges of equal weight, the least in {@link String#compareTo} order
+ * is chosen, so the choice does not depend on how the graph is stored.
  * If there are no such paths, no bridge word is inserted.
  * In the output poem, input words retain their original case, while bridge
  * words are lower case. The whitespace between every word in the poem is a
@@ -59,11 +80,32 @@ import graph.Graph;
  */
 public class GraphPoet {
     
-    private final Graph<String> graph = Graph.empty();
+    // metrics, recorded only if GraphMetrics.ENABLED (see GraphMetrics for units)
+    private static final Histogram TRAIN_READ = GraphMetrics.histogram("poet.train.read");
+    private static final Histogram TRAIN_UPDATE = GraphMetrics.histogram("poet.train.update");
+    private static final Counter TRAIN_WORDS = GraphMetrics.counter("poet.train.words");
+    private static final Histogram POEM = GraphMetrics.histogram("poet.poem");
+    private static final Histogram BRIDGE = GraphMetrics.histogram("poet.findBridge");
+    private static final Histogram BRIDGE_FAN_OUT = GraphMetrics.histogram("poet.findBridge.fanout");
     
-    // fields used only in checkRep:
-    private final Set<String> initVertices;
-    private final Map<String, Integer> initEdges = new HashMap<String, Integer>();
+    private static final int BRIDGE_CACHE_SIZE = 1 << 16;
+    
+    private volatile Graph<String> graph;
+    private final NGramModel model;
+    // bridges found in the graph, keyed by "w1 w2" in lowercase; null if
+    // graph may change
+    private final ConcurrentMap<String, String> bridges;
+    // estimated bytes of the keys of bridges, and the most the cache may hold
+    private final AtomicLong bridgeKeyBytes = new AtomicLong();
+    private volatile long cacheBudget = Long.MAX_VALUE;
+    private volatile QueryLog queryLog = null;
+    
+    // true iff graph was built by this poet from its corpus
+    private final boolean ownsGraph;
+    // fields used only in checkRep, null if graph is shared with its creator
+    // or has been frozen by fitTo (a frozen graph cannot change):
+    private volatile Set<String> initVertices;
+    private volatile Map<String, Integer> initEdges;
     
     // Abstraction function:
     //   A graph that takes a corpus (String) as input, generates a weighted digraph
@@ -71,10 +113,26 @@ public class GraphPoet {
     //   and can create new poems by exploring the graph and inserting bridges between
     //   words with a two-edge path between them.
     // Representation invariant:
-    //   Graph is created in the constructor and is not modified elsewhere.
+    //   If ownsGraph, graph is created in the constructor and is not modified
+    //   elsewhere, except to be replaced by an equal frozen or compressed
+    //   copy; until then, initVertices and initEdges hold a copy of it.
+    //   If !ownsGraph, initVertices and initEdges are null.
     //   Graph nodes are all lowercase words.
+    //   model is null, or a model of order >= 3 used before the graph to
+    //   choose bridges.
+    //   bridges is null unless graph cannot change; if non-null it maps
+    //   "w1 w2" to findBridge(graph, w1, w2) for at most BRIDGE_CACHE_SIZE
+    //   pairs of lowercase words, whose keys total about bridgeKeyBytes.
     // Safety from rep exposure:
-    //   graph is private and final.
+    //   graph is private; a graph passed in by the client is shared
+    //   deliberately, and is only read by this poet (an AdaptiveGraph may be
+    //   frozen by fitTo, which does not change its contents).
+    // Thread safety argument:
+    //   graph, initVertices and initEdges are volatile and replaced only by
+    //   fitTo, which is synchronized; each poem reads graph once, and the
+    //   copy is dropped only after the equal frozen graph replaces it. bridges is a concurrent map, and
+    //   bridgeKeyBytes is adjusted only by whoever inserted or removed the
+    //   entry.
     
     /**
      * Create a new poet with the graph from corpus (as described above).
@@ -83,17 +141,134 @@ public class GraphPoet {
      * @throws IOException if the corpus file cannot be found or read
      */
     public GraphPoet(File corpus) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(corpus));
+        this(corpus, 2);
+    }
+    
+    /**
+     * Create a new poet with the graph from corpus (as described above) and,
+     * if order is at least 3, an order-N model of the same corpus. Such a
+     * poet chooses each bridge with {@link NGramModel#bridge(List, String)},
+     * given the words of the poem so far, and falls back to the graph as
+     * described above when the model has no bridge.
+     * 
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @param order 2 to use the graph alone, or the order of the model
+     * @throws IOException if the corpus file cannot be found or read
+     */
+    public GraphPoet(File corpus, int order) throws IOException {
+        if (order < 2) {
+            throw new IllegalArgumentException("order must be at least 2");
+        }
+        graph = Graph.empty();
+        try (Reader in = new FileReader(corpus)) {
+            train(graph, in);
+        }
+        if (order > 2) {
+            try (Reader in = new FileReader(corpus)) {
+                model = NGramModel.train(in, order);
+            }
+        } else {
+            model = null;
+        }
+        
+        ownsGraph = true;
+        initVertices = graph.vertices();
+        initEdges = new HashMap<String, Integer>();
+        for (String v : initVertices) {
+            initEdges.putAll(graph.targets(v));
+        }
+        bridges = new ConcurrentHashMap<String, String>();
+    }
+    
+    /**
+     * Create a new poet that reads its affinity graph from an existing graph.
+     * The graph is not copied: poems reflect changes made to it later, so a
+     * {@link VersionedGraph} can be updated with new corpus data while this
+     * poet is in use. For a VersionedGraph, each poem reads a single
+     * consistent snapshot without blocking writers.
+     * 
+     * @param graph affinity graph (as described above); all vertices must be
+     *              lowercase words
+     */
+    public GraphPoet(Graph<String> graph) {
+        this(graph, null);
+    }
+    
+    /**
+     * Create a new poet that reads its affinity graph from an existing graph,
+     * as {@link #GraphPoet(Graph)}, and chooses bridges first with a model, as
+     * {@link #GraphPoet(File, int)}.
+     * 
+     * @param graph affinity graph (as described above); all vertices must be
+     *              lowercase words
+     * @param model higher-order model to consult before graph, or null
+     */
+    public GraphPoet(Graph<String> graph, NGramModel model) {
+        this.graph = graph;
+        this.model = model;
+        this.ownsGraph = false;
+        this.initVertices = null;
+        this.initEdges = null;
+        this.bridges = graph instanceof FrozenGraph || graph instanceof CompressedGraph
+                ? new ConcurrentHashMap<String, String>() : null;
+    }
+    
+    /**
+     * Record a sample of the inputs of later calls to {@link #poem(String)} in
+     * a log, for replay by {@link PoetWarmup}. Streamed inputs and replayed
+     * inputs are not recorded.
+     * 
+     * @param log log to record to, or null to stop recording
+     */
+    public void recordTo(QueryLog log) {
+        queryLog = log;
+    }
+    
+    /**
+     * Add the adjacencies of a corpus to an affinity graph (as described above),
+     * incrementing the weights of edges that already exist.
+     * 
+     * @param graph affinity graph to update
+     * @param corpus text from which to derive adjacencies
+     * @throws IOException if the corpus cannot be read
+     */
+    public static void train(Graph<String> graph, Reader corpus) throws IOException {
+        train(graph, corpus, null);
+    }
+    
+    /*
+     * Train as above, mapping each lowercased word through canonical (if not
+     * null) before it is stored, so that graphs can share word instances.
+     */
+    static void train(Graph<String> graph, Reader corpus, UnaryOperator<String> canonical)
+            throws IOException {
+        IncrementalGraph<String> incremental = graph instanceof IncrementalGraph
+                ? (IncrementalGraph<String>) graph : null;
+        BufferedReader br = new BufferedReader(corpus);
+        long readNanos = 0;
+        long updateNanos = 0;
+        long mark = GraphMetrics.ENABLED ? System.nanoTime() : 0;
         
         String line;
         while ((line = br.readLine()) != null) {
             String[] words = line.split("\\s");
             String lastWord = null;
+            if (GraphMetrics.ENABLED) {
+                long now = System.nanoTime();
+                readNanos += now - mark;
+                mark = now;
+                TRAIN_WORDS.add(words.length);
+            }
             
             for (String word : words) {
                 if (word.length() > 0) {
                     String lowWord = word.toLowerCase();
-                    if (lastWord != null) {
+                    if (canonical != null) {
+                        lowWord = canonical.apply(lowWord);
+                    }
+                    if (lastWord != null && incremental != null) {
+                        incremental.increment(lastWord, lowWord, 1);
+                    } else if (lastWord != null) {
                         Integer prevWght = graph.targets(lastWord).get(lowWord);
                         if (prevWght == null) prevWght = 0;
                         graph.set(lastWord, lowWord, prevWght + 1);
@@ -101,16 +276,24 @@ public class GraphPoet {
                     lastWord = lowWord;
                 }
             }
+            if (GraphMetrics.ENABLED) {
+                long now = System.nanoTime();
+                updateNanos += now - mark;
+                mark = now;
+            }
         }
-        
-        initVertices = graph.vertices();
-        for (String v : initVertices) {
-            initEdges.putAll(graph.targets(v));
+        if (GraphMetrics.ENABLED) {
+            TRAIN_READ.record(readNanos);
+            TRAIN_UPDATE.record(updateNanos);
         }
-        br.close();
     }
     
     private void checkRep() {
+        Map<String, Integer> initEdges = this.initEdges;
+        Set<String> initVertices = this.initVertices;
+        if (initVertices == null || initEdges == null) {
+            return;
+        }
         Set<String> vertices = graph.vertices();
         Map<String, Integer> edges = new HashMap<String, Integer>();
         assert(graph.vertices().equals(initVertices));
@@ -128,48 +311,298 @@ public class GraphPoet {
      * @return poem (as described above)
      */
     public String poem(String input) {
-        List<String> output = new ArrayList<String>();
-        
-        String[] words = input.split("\\s");
-        String lastWord = "";
-        String bridge = "";
+        QueryLog log = queryLog;
+        if (log != null) {
+            log.offer(input);
+        }
+        return replay(input);
+    }
+    
+    /*
+     * Generate a poem without recording the input, for replays of inputs
+     * that were already recorded.
+     */
+    String replay(String input) {
+        StringWriter output = new StringWriter();
+        try {
+            poem(new StringReader(input), output);
+        } catch (IOException e) {
+            throw new AssertionError("string streams do not throw", e);
+        }
+        return output.toString();
+    }
+    
+    /**
+     * Generate a poem from a stream of text, writing it as it is generated.
+     * Input is processed one word at a time, so memory use does not grow with
+     * the length of the input. The output is exactly what
+     * {@link #poem(String)} would return for the whole input.
+     * Neither stream is closed; output is flushed on return.
+     * 
+     * @param input text from which to create the poem
+     * @param output destination for the poem (as described above)
+     * @throws IOException if input cannot be read or output cannot be written
+     */
+    public void poem(Reader input, Writer output) throws IOException {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        Graph<String> view = view();
         
-        for (String word : words) {
-            if (word.length() > 0) {
-                if (!lastWord.equals("")) {
-                    bridge = findBridge(lastWord, word); 
-                    if (bridge.length() > 0) output.add(bridge);
+        char[] buffer = new char[8192];
+        StringBuilder word = new StringBuilder();
+        String lastWord = null;
+        List<String> recent = model == null ? null : new ArrayList<String>();
+        int n;
+        while ((n = input.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                char c = buffer[i];
+                if (!isSpace(c)) {
+                    word.append(c);
+                } else if (word.length() > 0) {
+                    lastWord = emit(view, recent, lastWord, word.toString(), output);
+                    word.setLength(0);
                 }
-                output.add(word);
-                lastWord = word;
             }
         }
+        if (word.length() > 0) {
+            emit(view, recent, lastWord, word.toString(), output);
+        }
+        output.flush();
         
         checkRep();
-        return String.join(" ", output);
+        if (GraphMetrics.ENABLED) {
+            POEM.record(System.nanoTime() - start);
+        }
+    }
+    
+    // the characters matched by the regex \s, which separate words
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    // write word to output, preceded by its bridge from lastWord (if any); returns word.
+    // recent holds the last words of the poem in lowercase if this poet has a model
+    private String emit(Graph<String> view, List<String> recent, String lastWord, String word,
+            Writer output) throws IOException {
+        if (lastWord != null) {
+            String bridge = recent == null ? null : model.bridge(recent, word.toLowerCase());
+            if (bridge == null) {
+                bridge = cachedBridge(view, lastWord, word);
+            }
+            output.write(' ');
+            if (bridge.length() > 0) {
+                output.write(bridge);
+                output.write(' ');
+                remember(recent, bridge);
+            }
+        }
+        output.write(word);
+        remember(recent, word.toLowerCase());
+        return word;
+    }
+    
+    // append a word to recent, keeping only the context the model can use
+    private void remember(List<String> recent, String word) {
+        if (recent == null) {
+            return;
+        }
+        if (recent.size() == model.order() - 2) {
+            recent.remove(0);
+        }
+        recent.add(word);
+    }
+    
+    // findBridge, through the bridge cache if this poet has one
+    private String cachedBridge(Graph<String> view, String lastWord, String word) {
+        if (bridges == null) {
+            return findBridge(view, lastWord, word);
+        }
+        String key = lastWord.toLowerCase() + ' ' + word.toLowerCase();
+        String bridge = bridges.get(key);
+        if (bridge == null) {
+            bridge = findBridge(view, lastWord, word);
+            int size = bridges.size();
+            long keyBytes = Footprint.string(key);
+            if (size < BRIDGE_CACHE_SIZE
+                    && Footprint.hashMap(size + 1) + bridgeKeyBytes.get() + keyBytes <= cacheBudget
+                    && bridges.putIfAbsent(key, bridge) == null) {
+                bridgeKeyBytes.addAndGet(keyBytes);
+            }
+        }
+        return bridge;
+    }
+    
+    // estimated bytes of the bridge cache; its values are graph labels
+    private long cacheBytes() {
+        return bridges == null ? 0 : Footprint.hashMap(bridges.size()) + bridgeKeyBytes.get();
+    }
+    
+    /**
+     * Estimate the heap retained by this poet: its graph (even if shared
+     * with the client; for an {@link graph.OverlayGraph}, without its base),
+     * its model, and its cache of bridges.
+     * 
+     * @return estimated footprint of this poet
+     */
+    public Footprint footprint() {
+        Footprint f = Footprint.of(graph).plus(new Footprint(0, 0, 0, cacheBytes(), 0));
+        if (model != null) {
+            f = f.plus(model.footprint());
+        }
+        Set<String> initVertices = this.initVertices;
+        Map<String, Integer> initEdges = this.initEdges;
+        if (initVertices != null && initEdges != null) {
+            // the copy of the graph kept for checkRep, until it is frozen
+            f = f.plus(new Footprint(0, 0, 0, 0, Footprint.hashMap(initVertices.size())
+                    + Footprint.hashMap(initEdges.size()) + initEdges.size() * Footprint.INTEGER));
+        }
+        return f;
+    }
+    
+    /**
+     * Shrink this poet toward a memory budget. Steps are taken in order of
+     * their cost to later poems, stopping once the footprint is within the
+     * budget:
+     * <ol><li> evict cached bridges;
+     *     <li> freeze the graph: a graph this poet built from its corpus is
+     *          replaced by a {@link FrozenGraph}, dropping the copy of it kept
+     *          for checking, and an {@link AdaptiveGraph} is frozen in place;
+     *     <li> compress a graph this poet built into a {@link CompressedGraph}.
+     * </ol>
+     * Poems are the same before and after, since bridges are chosen
+     * independently of how the graph is stored. From then on, the bridge
+     * cache only grows into whatever the budget leaves, until the next call.
+     * 
+     * @param maxBytes budget for {@code footprint().total()}, nonnegative
+     * @return the footprint after shrinking, which exceeds maxBytes if this
+     *         poet cannot shrink enough
+     */
+    public synchronized Footprint fitTo(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("budget must be nonnegative");
+        }
+        Footprint f = footprint();
+        if (f.total() > maxBytes && bridges != null) {
+            evictBridges(maxBytes - f.withoutCaches().total());
+            f = footprint();
+        }
+        if (f.total() > maxBytes && ownsGraph
+                && !(graph instanceof FrozenGraph || graph instanceof CompressedGraph)) {
+            graph = FrozenGraph.of(graph);
+            initVertices = null;
+            initEdges = null;
+            f = footprint();
+        } else if (f.total() > maxBytes && graph instanceof AdaptiveGraph) {
+            ((AdaptiveGraph<String>) graph).freeze();
+            f = footprint();
+        }
+        if (f.total() > maxBytes && ownsGraph && graph instanceof FrozenGraph) {
+            graph = CompressedGraph.of(graph);
+            f = footprint();
+        }
+        cacheBudget = Math.max(0, maxBytes - f.withoutCaches().total());
+        checkRep();
+        return f;
+    }
+    
+    // remove cached bridges until the cache fits in maxCacheBytes
+    private void evictBridges(long maxCacheBytes) {
+        for (String key : bridges.keySet()) {
+            if (cacheBytes() <= maxCacheBytes) {
+                return;
+            }
+            if (bridges.remove(key) != null) {
+                bridgeKeyBytes.addAndGet(-Footprint.string(key));
+            }
+        }
+    }
+    
+    // the graph to read for one poem: a fixed snapshot if the graph is versioned
+    private Graph<String> view() {
+        if (graph instanceof VersionedGraph) {
+            return ((VersionedGraph<String>) graph).snapshot();
+        }
+        return graph;
     }
     
-    private String findBridge(String source, String target) {
+    private static String findBridge(Graph<String> graph, String source, String target) {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
         String tgtLower = target.toLowerCase();
         String bridge = "";
         Integer maxWght = Integer.MIN_VALUE;
+        if (graph instanceof CompressedGraph) {
+            return findBridge((CompressedGraph<String>) graph, source, target, start);
+        }
         // find all outgoing edges from source
         Map<String, Integer> intermeds = graph.targets(source.toLowerCase());
         
-        for (Map.Entry<String, Integer> e1 : intermeds.entrySet()) {
-            String intermed = e1.getKey();
-            Integer weight1 = e1.getValue();
-            // find length 2 paths from source
-            Map<String, Integer> secondaries = graph.targets(intermed);
-            for (Map.Entry<String, Integer> e2 : secondaries.entrySet()) {
-                Integer weight2 = e2.getValue();
-                if (e2.getKey().equals(tgtLower) && weight1 + weight2 > maxWght) {
-                    maxWght = weight1 + weight2;
-                    bridge = intermed;
+        if (graph instanceof ShardedGraph) {
+            // one batched round trip per shard instead of one per intermediate
+            Map<String, Integer> seconds = ((ShardedGraph) graph).weightsTo(intermeds.keySet(), tgtLower);
+            for (Map.Entry<String, Integer> e1 : intermeds.entrySet()) {
+                Integer weight2 = seconds.get(e1.getKey());
+                if (weight2 != null && better(e1.getValue() + weight2, e1.getKey(), maxWght, bridge)) {
+                    maxWght = e1.getValue() + weight2;
+                    bridge = e1.getKey();
+                }
+            }
+        } else {
+            for (Map.Entry<String, Integer> e1 : intermeds.entrySet()) {
+                String intermed = e1.getKey();
+                Integer weight1 = e1.getValue();
+                // find length 2 paths from source
+                Map<String, Integer> secondaries = graph.targets(intermed);
+                for (Map.Entry<String, Integer> e2 : secondaries.entrySet()) {
+                    Integer weight2 = e2.getValue();
+                    if (e2.getKey().equals(tgtLower) && better(weight1 + weight2, intermed, maxWght, bridge)) {
+                        maxWght = weight1 + weight2;
+                        bridge = intermed;
+                    }
                 }
             }
         }
         
+        return bridgeFound(source, target, bridge, intermeds.size(), start);
+    }
+    
+    // whether a path of a given weight through candidate beats the best so
+    // far: heavier, or as heavy with a lesser label
+    private static boolean better(int weight, String candidate, int maxWeight, String bridge) {
+        return weight > maxWeight || weight == maxWeight && candidate.compareTo(bridge) < 0;
+    }
+    
+    // the same search over a compressed graph, decoding adjacency in place
+    private static String findBridge(CompressedGraph<String> graph, String source, String target,
+            long start) {
+        int s = graph.id(source.toLowerCase());
+        int t = graph.id(target.toLowerCase());
+        int[] best = { -1, Integer.MIN_VALUE };
+        int[] fanOut = { 0 };
+        if (s >= 0 && t >= 0) {
+            graph.forEachTarget(s, (intermed, weight1) -> {
+                fanOut[0]++;
+                int weight2 = graph.weight(intermed, t);
+                if (weight2 != 0 && (weight1 + weight2 > best[1] || weight1 + weight2 == best[1]
+                        && graph.label(intermed).compareTo(graph.label(best[0])) < 0)) {
+                    best[0] = intermed;
+                    best[1] = weight1 + weight2;
+                }
+            });
+        }
+        String bridge = best[0] < 0 ? "" : graph.label(best[0]);
+        return bridgeFound(source, target, bridge, fanOut[0], start);
+    }
+    
+    // record metrics, and an event if it was slow, for a finished bridge search
+    private static String bridgeFound(String source, String target, String bridge, int fanOut,
+            long start) {
+        if (GraphMetrics.ENABLED) {
+            long nanos = System.nanoTime() - start;
+            BRIDGE.record(nanos);
+            BRIDGE_FAN_OUT.record(fanOut);
+            if (nanos >= FlightEvents.SLOW_NANOS) {
+                FlightEvents.bridge(source, target, fanOut, bridge, nanos);
+            }
+        }
         return bridge;
     }
     
@@ -0,0 +1,320 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graph.Footprint;
+
+/**
+ * An immutable order-N word model: the number of times each sequence of up
+ * to N consecutive words occurs in a corpus.
+ * 
+ * <p>Words are defined as in {@link GraphPoet}, and sequences do not span
+ * lines. The model chooses bridge words with up to N-2 words of context
+ * before the bridge, backing off to shorter contexts when the longer ones
+ * were never seen; see {@link #bridge(List, String)}.
+ * 
+ * <p>The counts are stored as a trie over word ids in level order: the
+ * children of every node are consecutive nodes sorted by word id, so a node
+ * costs three ints and finding a child is a binary search.
+ */
+public class NGramModel {
+    
+    private final int order;
+    private final Map<String, Integer> ids;
+    private final String[] words;
+    private final int[] firstChild;
+    private final int[] label;
+    private final int[] count;
+    
+    // Abstraction function:
+    //   Represents the model of order `order` in which the count of the word
+    //     sequence (words[label[n1]], ..., words[label[nk]]) is count[nk],
+    //     where n1..nk is the path from the root (node 0) to node nk, and
+    //     every sequence with no such path has count zero.
+    //   The children of node v are nodes [firstChild[v], firstChild[v+1]).
+    // Representation invariant:
+    //   order >= 3; ids maps words[i] to i for every i, and nothing else.
+    //   firstChild has length nodes + 1, is nondecreasing, and
+    //     firstChild[v] > v for every v with children.
+    //   The labels of the children of each node are strictly increasing.
+    //   Every node but the root has positive count and depth <= order.
+    // Safety from rep exposure:
+    //   All fields are private and final, and arrays are never returned.
+    
+    /**
+     * Count the sequences of a corpus.
+     * 
+     * @param corpus text from which to derive the model
+     * @param order longest sequence to count, at least 3 (one word of
+     *              context before a bridge)
+     * @return the model of corpus
+     * @throws IOException if the corpus cannot be read
+     */
+    public static NGramModel train(Reader corpus, int order) throws IOException {
+        if (order < 3) {
+            throw new IllegalArgumentException("order must be at least 3");
+        }
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<String> words = new ArrayList<String>();
+        TrieBuilder trie = new TrieBuilder();
+        
+        BufferedReader br = new BufferedReader(corpus);
+        int[] window = new int[order];
+        String line;
+        while ((line = br.readLine()) != null) {
+            int length = 0;
+            for (String word : line.split("\\s")) {
+                if (word.length() == 0) {
+                    continue;
+                }
+                String lowWord = word.toLowerCase();
+                Integer id = ids.get(lowWord);
+                if (id == null) {
+                    id = words.size();
+                    ids.put(lowWord, id);
+                    words.add(lowWord);
+                }
+                if (length == order) {
+                    System.arraycopy(window, 1, window, 0, order - 1);
+                    length--;
+                }
+                window[length++] = id;
+                // count every sequence ending at this word
+                for (int start = length - 1; start >= 0; start--) {
+                    trie.increment(window, start, length);
+                }
+            }
+        }
+        return trie.build(order, ids, words.toArray(new String[words.size()]));
+    }
+    
+    private NGramModel(int order, Map<String, Integer> ids, String[] words,
+            int[] firstChild, int[] label, int[] count) {
+        this.order = order;
+        this.ids = ids;
+        this.words = words;
+        this.firstChild = firstChild;
+        this.label = label;
+        this.count = count;
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert order >= 3;
+        assert ids.size() == words.length;
+        assert firstChild.length == label.length + 1;
+        assert label.length == count.length;
+    }
+    
+    /**
+     * @return the length of the longest sequences counted
+     */
+    public int order() {
+        return order;
+    }
+    
+    /**
+     * @return number of distinct sequences counted
+     */
+    public int sequenceCount() {
+        return label.length - 1;
+    }
+    
+    /**
+     * Estimate the heap retained by this model: its vocabulary as vertices
+     * and labels, and its trie nodes as edges.
+     * 
+     * @return estimated footprint of this model
+     */
+    public Footprint footprint() {
+        return new Footprint(Footprint.array(words.length, 4),
+                Footprint.array(firstChild.length, 4) + Footprint.array(label.length, 4)
+                        + Footprint.array(count.length, 4),
+                Footprint.labels(Arrays.asList(words)), 0,
+                Footprint.hashMap(ids.size()) + ids.size() * Footprint.INTEGER);
+    }
+    
+    // the child of node labelled with word, or -1
+    private int child(int node, int word) {
+        int i = Arrays.binarySearch(label, firstChild[node], firstChild[node + 1], word);
+        return i < 0 ? -1 : i;
+    }
+    
+    // the node of a sequence of lowercase words, or -1
+    private int find(List<String> sequence) {
+        int node = 0;
+        for (String w : sequence) {
+            Integer id = ids.get(w);
+            if (id == null || (node = child(node, id)) < 0) {
+                return -1;
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * Get the number of times a sequence occurs in the corpus.
+     * 
+     * @param sequence words, case-insensitive
+     * @return the number of occurrences of sequence on a single line of the
+     *         corpus, or zero if it is empty or longer than order()
+     */
+    public int count(List<String> sequence) {
+        if (sequence.isEmpty() || sequence.size() > order) {
+            return 0;
+        }
+        List<String> lower = new ArrayList<String>(sequence.size());
+        for (String w : sequence) {
+            lower.add(w.toLowerCase());
+        }
+        int node = find(lower);
+        return node < 0 ? 0 : count[node];
+    }
+    
+    /**
+     * Choose a bridge word using context. For k from min(order() - 2,
+     * context.size()) down to 1, take c to be the last k words of context and
+     * look for words b such that the sequence c, b, next occurs in the corpus;
+     * if there are any, return the one that occurs most often, breaking ties
+     * by taking the least in {@link String#compareTo} order, as GraphPoet
+     * does for bridges from its graph.
+     * 
+     * @param context the words before the bridge, most recent last, in
+     *                lowercase
+     * @param next the word after the bridge, in lowercase
+     * @return a bridge word in lowercase, or null if no sequence of at least
+     *         three words ends with the last word of context, a bridge, and
+     *         next
+     */
+    public String bridge(List<String> context, String next) {
+        Integer nextId = ids.get(next);
+        if (nextId == null) {
+            return null;
+        }
+        for (int k = Math.min(order - 2, context.size()); k >= 1; k--) {
+            int node = find(context.subList(context.size() - k, context.size()));
+            if (node < 0) {
+                continue;
+            }
+            int best = -1;
+            int bestCount = 0;
+            for (int b = firstChild[node]; b < firstChild[node + 1]; b++) {
+                int end = child(b, nextId);
+                if (end >= 0 && (count[end] > bestCount || count[end] == bestCount && best >= 0
+                        && words[label[b]].compareTo(words[best]) < 0)) {
+                    best = label[b];
+                    bestCount = count[end];
+                }
+            }
+            if (best >= 0) {
+                return words[best];
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Builds the trie of an NGramModel by counting sequences in a hash trie,
+     * then lays it out in level order.
+     * Mutable.
+     * This class is internal to NGramModel.
+     */
+    private static class TrieBuilder {
+        
+        private final Map<Long, Integer> children = new HashMap<Long, Integer>();
+        private int[] parent = new int[64];
+        private int[] word = new int[64];
+        private int[] depth = new int[64];
+        private int[] count = new int[64];
+        private int nodes = 1;
+        
+        // Abstraction function:
+        //   Represents the trie in which node v (0 < v < nodes) is the child
+        //     of parent[v] labelled word[v], with count count[v]; node 0 is
+        //     the root, at depth 0.
+        // Representation invariant:
+        //   children maps (parent[v] << 32 | word[v]) to v for every v > 0.
+        // Safety from rep exposure:
+        //   Only fresh arrays leave this class, in build().
+        
+        // add one to the count of window[start..end)
+        void increment(int[] window, int start, int end) {
+            int node = 0;
+            for (int i = start; i < end; i++) {
+                long key = ((long) node << 32) | window[i];
+                Integer next = children.get(key);
+                if (next == null) {
+                    if (nodes == parent.length) {
+                        parent = Arrays.copyOf(parent, nodes * 2);
+                        word = Arrays.copyOf(word, nodes * 2);
+                        depth = Arrays.copyOf(depth, nodes * 2);
+                        count = Arrays.copyOf(count, nodes * 2);
+                    }
+                    next = nodes++;
+                    parent[next] = node;
+                    word[next] = window[i];
+                    depth[next] = depth[node] + 1;
+                    children.put(key, next);
+                }
+                node = next;
+            }
+            count[node]++;
+        }
+        
+        NGramModel build(int order, Map<String, Integer> ids, String[] words) {
+            // sort nodes by depth; within a depth, by the new id of the parent
+            // (already assigned) and then by word
+            int[] newIds = new int[nodes];
+            Integer[] byDepth = new Integer[nodes];
+            for (int v = 0; v < nodes; v++) {
+                byDepth[v] = v;
+            }
+            Arrays.sort(byDepth, (a, b) -> Integer.compare(depth[a], depth[b]));
+            int[] layout = new int[nodes];
+            int next = 0;
+            for (int lo = 0; lo < nodes; ) {
+                int hi = lo;
+                while (hi < nodes && depth[byDepth[hi]] == depth[byDepth[lo]]) {
+                    hi++;
+                }
+                Integer[] level = Arrays.copyOfRange(byDepth, lo, hi);
+                Arrays.sort(level, (a, b) -> newIds[parent[a]] != newIds[parent[b]]
+                        ? Integer.compare(newIds[parent[a]], newIds[parent[b]])
+                        : Integer.compare(word[a], word[b]));
+                for (int v : level) {
+                    newIds[v] = next;
+                    layout[next++] = v;
+                }
+                lo = hi;
+            }
+            
+            int[] firstChild = new int[nodes + 1];
+            int[] label = new int[nodes];
+            int[] counts = new int[nodes];
+            // children of node p are consecutive, so p's range starts at its
+            // first child and ends where the next node's children begin
+            int[] childCount = new int[nodes];
+            for (int n = 1; n < nodes; n++) {
+                int v = layout[n];
+                label[n] = word[v];
+                counts[n] = count[v];
+                childCount[newIds[parent[v]]]++;
+            }
+            firstChild[0] = 1;
+            for (int n = 0; n < nodes; n++) {
+                firstChild[n + 1] = firstChild[n] + childCount[n];
+            }
+            return new NGramModel(order, ids, words, firstChild, label, counts);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import graph.Footprint;
+import graph.FrozenGraph;
+import graph.Graph;
+import graph.OverlayGraph;
+
+/**
+ * A registry of poets for many tenants whose corpora overlap.
+ * 
+ * <p>The affinity graph of a tenant is the graph of a shared base corpus
+ * followed by the tenant's own corpus (as described in {@link GraphPoet}).
+ * The base graph is built once and frozen; each tenant's graph is an
+ * {@link OverlayGraph} over it that stores only the tenant's own counts.
+ * Every word, in the base or in any tenant, is stored as one canonical String
+ * from a shared dictionary.
+ * 
+ * <p>Tenants are loaded from a {@link CorpusSource} the first time their poet
+ * is requested, and the least recently used tenants are evicted when more
+ * than a fixed number are resident, or when the estimated heap of the
+ * resident tenants (see {@link GraphPoet#footprint()}) exceeds a budget; an
+ * evicted tenant is reloaded on its next request. Poets handed out before
+ * eviction remain usable.
+ * 
+ * <p>This class is thread-safe.
+ */
+public class PoetRegistry {
+    
+    /**
+     * A source of tenant corpora.
+     */
+    @FunctionalInterface
+    public interface CorpusSource {
+        
+        /**
+         * Open the corpus of a tenant.
+         * 
+         * @param tenant name of the tenant
+         * @return the tenant's corpus; the caller closes it
+         * @throws IOException if the corpus cannot be opened
+         */
+        Reader open(String tenant) throws IOException;
+    }
+    
+    private final ConcurrentMap<String, String> words = new ConcurrentHashMap<String, String>();
+    private final FrozenGraph<String> base;
+    private final CorpusSource tenants;
+    private final int maxResident;
+    private final long maxResidentBytes;
+    private final LinkedHashMap<String, GraphPoet> resident;
+    private final Map<String, Long> residentSizes = new HashMap<String, Long>();
+    private long residentBytes = 0;
+    
+    // Abstraction function:
+    //   Represents the tenants named in resident.keySet(), with poet
+    //     resident[t] for tenant t, whose graphs overlay base; every word
+    //     seen so far is the key of words, mapped to its canonical instance.
+    // Representation invariant:
+    //   resident.size() <= maxResident, and maxResident > 0.
+    //   residentSizes has the same keys as resident, mapped to the estimated
+    //     bytes of each poet when it was loaded; residentBytes is their sum,
+    //     and is at most maxResidentBytes unless only one tenant is resident.
+    //   words maps each key to itself.
+    //   Every vertex of base is a value of words.
+    // Safety from rep exposure:
+    //   All fields are private and final; base is immutable, and the poets
+    //     handed out do not expose their graphs.
+    // Thread safety argument:
+    //   words is a thread-safe map and base is immutable.
+    //   resident, residentSizes and residentBytes are only accessed while
+    //     holding resident's lock.
+    //   Each tenant's overlay is written only while its poet is built, before
+    //     the poet is published through resident's lock, and only read after.
+    
+    /**
+     * Create a registry.
+     * 
+     * @param baseCorpus text shared by every tenant's corpus
+     * @param tenants source of each tenant's own corpus
+     * @param maxResident maximum number of tenants kept loaded, positive
+     * @throws IOException if the base corpus cannot be read
+     */
+    public PoetRegistry(Reader baseCorpus, CorpusSource tenants, int maxResident) throws IOException {
+        this(baseCorpus, tenants, maxResident, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Create a registry with a memory budget for its tenants. The base graph
+     * and the shared dictionary are not counted against the budget; a
+     * tenant's poet is, excluding the base graph it shares.
+     * 
+     * @param baseCorpus text shared by every tenant's corpus
+     * @param tenants source of each tenant's own corpus
+     * @param maxResident maximum number of tenants kept loaded, positive
+     * @param maxResidentBytes estimated heap the loaded tenants may retain,
+     *                         positive; the most recently requested tenant
+     *                         stays loaded even if it alone exceeds this
+     * @throws IOException if the base corpus cannot be read
+     */
+    public PoetRegistry(Reader baseCorpus, CorpusSource tenants, int maxResident, long maxResidentBytes)
+            throws IOException {
+        if (maxResident <= 0 || maxResidentBytes <= 0) {
+            throw new IllegalArgumentException("maxResident and maxResidentBytes must be positive");
+        }
+        Graph<String> graph = Graph.empty();
+        GraphPoet.train(graph, baseCorpus, this::canonical);
+        this.base = FrozenGraph.of(graph);
+        this.tenants = tenants;
+        this.maxResident = maxResident;
+        this.maxResidentBytes = maxResidentBytes;
+        this.resident = new LinkedHashMap<String, GraphPoet>(16, 0.75f, true);
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert maxResident > 0;
+        synchronized (resident) {
+            assert resident.size() <= maxResident;
+            assert residentSizes.keySet().equals(resident.keySet());
+            long sum = 0;
+            for (long size : residentSizes.values()) {
+                sum += size;
+            }
+            assert sum == residentBytes;
+            assert residentBytes <= maxResidentBytes || resident.size() == 1;
+        }
+    }
+    
+    /**
+     * Get the canonical instance of a word, adding it to the shared
+     * dictionary if it is new.
+     * 
+     * @param word a word
+     * @return a String equal to word, the same instance for every equal word
+     */
+    public String canonical(String word) {
+        String existing = words.putIfAbsent(word, word);
+        return existing == null ? word : existing;
+    }
+    
+    /**
+     * @return number of distinct words in the shared dictionary
+     */
+    public int vocabularySize() {
+        return words.size();
+    }
+    
+    /**
+     * @return the immutable affinity graph of the base corpus
+     */
+    public Graph<String> base() {
+        return base;
+    }
+    
+    /**
+     * @return estimated heap retained by the resident tenants, as counted
+     *         against the budget
+     */
+    public long residentBytes() {
+        synchronized (resident) {
+            return residentBytes;
+        }
+    }
+    
+    /**
+     * Estimate the heap retained by this registry: the base graph, the
+     * shared dictionary, and the resident tenants.
+     * 
+     * @return estimated footprint of this registry
+     */
+    public Footprint footprint() {
+        Footprint f = base.footprint().plus(
+                new Footprint(0, 0, Footprint.labels(words.keySet()), 0, Footprint.hashMap(words.size())));
+        synchronized (resident) {
+            for (GraphPoet poet : resident.values()) {
+                f = f.plus(poet.footprint());
+            }
+        }
+        return f;
+    }
+    
+    /**
+     * Get the poet of a tenant, loading the tenant's corpus if it is not
+     * resident.
+     * 
+     * @param tenant name of the tenant
+     * @return a poet whose graph is the base graph trained on the tenant's
+     *         corpus
+     * @throws IOException if the tenant's corpus cannot be read
+     */
+    public GraphPoet poet(String tenant) throws IOException {
+        synchronized (resident) {
+            GraphPoet poet = resident.get(tenant);
+            if (poet != null) {
+                return poet;
+            }
+        }
+        // load without the lock, so a slow corpus does not block other tenants
+        OverlayGraph<String> graph = new OverlayGraph<String>(base);
+        try (Reader in = tenants.open(tenant)) {
+            GraphPoet.train(graph, in, this::canonical);
+        }
+        GraphPoet loaded = new GraphPoet(graph);
+        long size = loaded.footprint().total();
+        synchronized (resident) {
+            GraphPoet raced = resident.get(tenant);
+            if (raced != null) {
+                return raced;
+            }
+            resident.put(tenant, loaded);
+            residentSizes.put(tenant, size);
+            residentBytes += size;
+            // evict least recently used tenants, never the one just loaded
+            Iterator<String> eldest = resident.keySet().iterator();
+            while (resident.size() > 1
+                    && (resident.size() > maxResident || residentBytes > maxResidentBytes)) {
+                String evicted = eldest.next();
+                eldest.remove();
+                residentBytes -= residentSizes.remove(evicted);
+            }
+        }
+        checkRep();
+        return loaded;
+    }
+    
+    /**
+     * Unload a tenant; its poet is rebuilt on its next request.
+     * 
+     * @param tenant name of the tenant
+     * @return true if the tenant was resident
+     */
+    public boolean evict(String tenant) {
+        synchronized (resident) {
+            if (resident.remove(tenant) == null) {
+                return false;
+            }
+            residentBytes -= residentSizes.remove(tenant);
+            return true;
+        }
+    }
+    
+    /**
+     * @return names of the tenants currently loaded
+     */
+    public Set<String> residentTenants() {
+        synchronized (resident) {
+            return new HashSet<String>(resident.keySet());
+        }
+    }
+    
+}
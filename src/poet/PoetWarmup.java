@@ -0,0 +1,230 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import graph.GraphMetrics;
+import graph.GraphMetrics.Histogram;
+
+/**
+ * Warms up a poet before it serves traffic by replaying recorded inputs
+ * (see {@link QueryLog}) on a background thread.
+ * 
+ * <p>Replaying pulls the poet's graph into memory and CPU caches, runs the
+ * poem and bridge-search code often enough for the JIT to compile it, and
+ * fills the poet's bridge cache if it has one. Only poets built from a file,
+ * a {@link graph.FrozenGraph} or a {@link graph.CompressedGraph} cache
+ * bridges; poets over other graphs (such as an AdaptiveGraph,
+ * VersionedGraph or OverlayGraph) search for every bridge on every poem,
+ * so for them warm-up only helps the JIT and the hardware caches.
+ * 
+ * <p>Replayed inputs are not recorded in the poet's {@link QueryLog}, so the
+ * warm-up does not skew the sample toward the inputs it replays.
+ * 
+ * <p>The poet is not ready until the replay finishes; a service should wait
+ * with {@link #awaitReady(long, TimeUnit)} before reporting itself ready.
+ * If a poem throws during the replay, the replay stops and the warm-up
+ * fails: awaitReady and the latency getters then report the exception.
+ * 
+ * <p>The first and last passes are timed, and their 99th percentile poem
+ * latencies are reported as the cold and warm latencies. When
+ * {@link GraphMetrics#ENABLED}, each timed poem is also recorded in the
+ * {@code poet.warmup.cold} and {@code poet.warmup.warm} histograms.
+ * 
+ * <p>This class is thread-safe.
+ */
+public class PoetWarmup {
+    
+    private static final Histogram COLD = GraphMetrics.histogram("poet.warmup.cold");
+    private static final Histogram WARM = GraphMetrics.histogram("poet.warmup.warm");
+    
+    private final GraphPoet poet;
+    private final List<String> inputs;
+    private final int passes;
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private Thread thread = null;
+    private volatile long durationNanos = -1;
+    private volatile long coldP99Nanos = -1;
+    private volatile long warmP99Nanos = -1;
+    private volatile Throwable failure = null;
+    
+    // Abstraction function:
+    //   Represents a warm-up of poet with `passes` replays of inputs, started
+    //     iff thread is non-null, finished iff ready has reached zero, in
+    //     which case it failed with failure if that is non-null, and
+    //     otherwise the timings are those of the replay.
+    // Representation invariant:
+    //   passes > 0.
+    //   failure is null until ready reaches zero.
+    //   The timings are -1 until ready reaches zero; after, durationNanos is
+    //     nonnegative, and so are the p99 timings unless failure is non-null.
+    // Safety from rep exposure:
+    //   All fields are private; inputs is a private copy.
+    // Thread safety argument:
+    //   thread is guarded by this; the timings and failure are volatile and
+    //     written only by the warm-up thread, before it counts down ready.
+    
+    /**
+     * Prepare a warm-up.
+     * 
+     * @param poet poet to warm up
+     * @param inputs poem inputs to replay, e.g. from {@link QueryLog#load}
+     * @param passes number of times to replay inputs, positive
+     */
+    public PoetWarmup(GraphPoet poet, List<String> inputs, int passes) {
+        if (passes <= 0) {
+            throw new IllegalArgumentException("passes must be positive");
+        }
+        this.poet = poet;
+        this.inputs = new ArrayList<String>(inputs);
+        this.passes = passes;
+        checkRep();
+    }
+    
+    private void checkRep() {
+        assert passes > 0;
+    }
+    
+    /**
+     * Start replaying on a background daemon thread. Has no effect if the
+     * warm-up has already started.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::replay, "poet-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void replay() {
+        long start = System.nanoTime();
+        try {
+            long[] cold = timedPass(COLD);
+            for (int pass = 2; pass < passes; pass++) {
+                for (String input : inputs) {
+                    poet.replay(input);
+                }
+            }
+            long[] warm = passes > 1 ? timedPass(WARM) : cold;
+            coldP99Nanos = p99(cold);
+            warmP99Nanos = p99(warm);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        } finally {
+            durationNanos = System.nanoTime() - start;
+            ready.countDown();
+        }
+    }
+    
+    private long[] timedPass(Histogram histogram) {
+        long[] latencies = new long[inputs.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            long t = System.nanoTime();
+            poet.replay(inputs.get(i));
+            latencies[i] = System.nanoTime() - t;
+            if (GraphMetrics.ENABLED) {
+                histogram.record(latencies[i]);
+            }
+        }
+        return latencies;
+    }
+    
+    private static long p99(long[] latencies) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.99 * sorted.length) - 1];
+    }
+    
+    /**
+     * @return true iff the replay has finished
+     */
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+    
+    /**
+     * Wait for the replay to finish.
+     * 
+     * @param timeout maximum time to wait
+     * @param unit unit of timeout
+     * @return true if the replay finished, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException if the replay finished because a poem threw
+     *         an exception, which is the cause
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+        if (!ready.await(timeout, unit)) {
+            return false;
+        }
+        if (failure != null) {
+            throw new ExecutionException("warm-up failed", failure);
+        }
+        return true;
+    }
+    
+    // the p99 timing if the replay finished without failing
+    private long p99Nanos(long timing) {
+        if (!isReady()) {
+            return -1;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("warm-up failed", failure);
+        }
+        return timing;
+    }
+    
+    /**
+     * @return how long the replay took in nanoseconds, or -1 if it has not
+     *         finished
+     */
+    public long durationNanos() {
+        return isReady() ? durationNanos : -1;
+    }
+    
+    /**
+     * @return the 99th percentile poem latency of the first pass in
+     *         nanoseconds, or -1 if the replay has not finished
+     * @throws IllegalStateException if the replay failed; the cause is the
+     *         exception thrown by the poet
+     */
+    public long coldP99Nanos() {
+        return p99Nanos(coldP99Nanos);
+    }
+    
+    /**
+     * @return the 99th percentile poem latency of the last pass in
+     *         nanoseconds, or -1 if the replay has not finished
+     * @throws IllegalStateException if the replay failed; the cause is the
+     *         exception thrown by the poet
+     */
+    public long warmP99Nanos() {
+        return p99Nanos(warmP99Nanos);
+    }
+    
+    /**
+     * @return a one-line summary of the warm-up
+     */
+    @Override public String toString() {
+        if (!isReady()) {
+            return "warm-up of " + inputs.size() + " inputs x " + passes + " passes: not finished";
+        }
+        if (failure != null) {
+            return "warm-up of " + inputs.size() + " inputs x " + passes + " passes: failed: " + failure;
+        }
+        return String.format("warm-up of %d inputs x %d passes: %.1f ms, p99 %d us cold -> %d us warm",
+                inputs.size(), passes, durationNanos / 1e6, coldP99Nanos / 1000, warmP99Nanos / 1000);
+    }
+    
+}
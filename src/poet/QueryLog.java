@@ -0,0 +1,147 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded, uniformly random sample of the inputs given to poets, for
+ * replaying at startup with {@link PoetWarmup}.
+ * 
+ * <p>Attach a log to a poet with {@link GraphPoet#recordTo(QueryLog)}. The log
+ * keeps at most a fixed number of inputs however many are offered (reservoir
+ * sampling), and is saved as a gzipped list of length-prefixed UTF-8 strings.
+ * 
+ * <p>This class is thread-safe.
+ */
+public class QueryLog {
+    
+    private static final int MAGIC = 0x51_4C_4F_47; // "QLOG"
+    
+    private final int capacity;
+    private final Random random;
+    private final List<String> sample = new ArrayList<String>();
+    private long offered = 0;
+    
+    // Abstraction function:
+    //   Represents a sample of `offered` inputs, of which those in sample
+    //     were kept.
+    // Representation invariant:
+    //   sample.size() == min(offered, capacity), and capacity > 0.
+    // Safety from rep exposure:
+    //   All fields are private; sample() returns a copy.
+    // Thread safety argument:
+    //   All methods that touch sample, offered or random are synchronized.
+    
+    /**
+     * Create an empty log.
+     * 
+     * @param capacity maximum number of inputs kept, positive
+     * @param seed seed for choosing which inputs to keep
+     */
+    public QueryLog(int capacity, long seed) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.random = new Random(seed);
+        checkRep();
+    }
+    
+    private synchronized void checkRep() {
+        assert capacity > 0;
+        assert sample.size() == Math.min(offered, capacity);
+    }
+    
+    /**
+     * Offer an input to the sample. After n offers, each offered input is in
+     * the sample with probability min(1, capacity / n).
+     * 
+     * @param input a poem input
+     */
+    public synchronized void offer(String input) {
+        offered++;
+        if (sample.size() < capacity) {
+            sample.add(input);
+        } else {
+            long slot = (long) (random.nextDouble() * offered);
+            if (slot < capacity) {
+                sample.set((int) slot, input);
+            }
+        }
+        checkRep();
+    }
+    
+    /**
+     * @return number of inputs offered to this log
+     */
+    public synchronized long offered() {
+        return offered;
+    }
+    
+    /**
+     * @return the inputs currently in the sample
+     */
+    public synchronized List<String> sample() {
+        return new ArrayList<String>(sample);
+    }
+    
+    /**
+     * Save the sample to a file, replacing its contents.
+     * 
+     * @param file destination
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        List<String> inputs = sample();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(inputs.size());
+            for (String input : inputs) {
+                byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+    
+    /**
+     * Read the inputs saved by {@link #save(File)}.
+     * 
+     * @param file a saved log
+     * @return the inputs in the log, in the order they were saved
+     * @throws IOException if the file cannot be read or is not a saved log
+     */
+    public static List<String> load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a query log");
+            }
+            int n = in.readInt();
+            List<String> inputs = new ArrayList<String>(Math.min(n, 1 << 16));
+            for (int i = 0; i < n; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                inputs.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return inputs;
+        }
+    }
+    
+}
@@ -0,0 +1,197 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import graph.AdaptiveGraph.Representation;
+
+/**
+ * Tests for AdaptiveGraph.
+ *
+ * This class runs the GraphInstanceTest tests against AdaptiveGraph, as
+ * well as tests for that particular implementation.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class AdaptiveGraphTest extends GraphInstanceTest {
+    
+    /*
+     * Provide an AdaptiveGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new AdaptiveGraph<String>(2, 2, 3, 2);
+    }
+    
+    /*
+     * Testing AdaptiveGraph...
+     */
+    
+    // Testing strategy for AdaptiveGraph
+    //   representation(): new graph, past vertex threshold, past edge
+    //     threshold, after many reads, write after freezing
+    //   promotions(): counts each change of representation
+    //   contents are preserved across every change of representation
+    //   frozen ordering: applied when the graph freezes
+    //   freeze(): from each representation, already frozen
+    //   freezeBackoff(): thaw soon after freezing, thaw after the frozen
+    //     graph paid off, capped at MAX_FREEZE_BACKOFF
+    //   concurrent reads and writes
+    
+    @Test
+    public void testPromoteOnVertices() {
+        AdaptiveGraph<String> g = new AdaptiveGraph<String>(2, 100, 1000, 1);
+        assertEquals(Representation.ARRAY, g.representation());
+        g.add("a");
+        g.add("b");
+        assertEquals(Representation.ARRAY, g.representation());
+        g.set("b", "c", 4);
+        assertEquals(Representation.HASHED, g.representation());
+        assertEquals(1, g.promotions(Representation.HASHED));
+        assertEquals(Collections.singletonMap("b", 4), g.sources("c"));
+    }
+    
+    @Test
+    public void testPromoteOnEdges() {
+        AdaptiveGraph<String> g = new AdaptiveGraph<String>(100, 1, 1000, 1);
+        g.set("a", "a", 1);
+        assertEquals(Representation.ARRAY, g.representation());
+        g.set("a", "a", 2);
+        assertEquals(Representation.ARRAY, g.representation());
+        g.set("a", "b", 3);
+        assertEquals(Representation.HASHED, g.representation());
+        assertEquals(2, g.targets("a").size());
+    }
+    
+    @Test
+    public void testFreezeAndThaw() {
+        AdaptiveGraph<String> g = new AdaptiveGraph<String>(100, 100, 4, 2);
+        g.set("a", "b", 1);
+        g.set("b", "c", 2);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Collections.singletonMap("b", 1), g.targets("a"));
+        }
+        assertEquals(Representation.ARRAY, g.representation());
+        g.targets("a");
+        assertEquals(Representation.FROZEN, g.representation());
+        assertEquals(1, g.promotions(Representation.FROZEN));
+        assertEquals(Collections.singletonMap("b", 2), g.sources("c"));
+        
+        assertTrue(g.remove("b"));
+        assertEquals(Representation.HASHED, g.representation());
+        assertEquals(1, g.promotions(Representation.HASHED));
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+    }
+    
+    @Test
+    public void testFreezeWithOrdering() {
+        AdaptiveGraph<String> g = new AdaptiveGraph<String>(100, 100, 2, 1, VertexOrdering.FREQUENCY);
+        g.set("a", "b", 1);
+        g.set("b", "c", 5);
+        g.targets("a");
+        g.targets("a");
+        assertEquals(Representation.FROZEN, g.representation());
+        assertEquals(Collections.singletonMap("b", 1), g.targets("a"));
+        assertEquals(Collections.singletonMap("b", 5), g.sources("c"));
+    }
+    
+    @Test
+    public void testFreeze() {
+        AdaptiveGraph<String> g = new AdaptiveGraph<String>(2, 100, 1000, 1000);
+        g.set("a", "b", 1);
+        g.freeze();
+        assertEquals(Representation.FROZEN, g.representation());
+        g.freeze();
+        assertEquals(1, g.promotions(Representation.FROZEN));
+        g.set("b", "c", 2);
+        assertEquals(Representation.HASHED, g.representation());
+        g.freeze();
+        assertEquals(Representation.FROZEN, g.representation());
+        assertEquals(Collections.singletonMap("b", 2), g.sources("c"));
+    }
+    
+    @Test
+    public void testFreezeBackoff() {
+        AdaptiveGraph<String> g = new AdaptiveGraph<String>(100, 100, 4, 1);
+        g.add("a");
+        for (int i = 0; i < 4; i++) {
+            g.vertices();
+        }
+        assertEquals(Representation.FROZEN, g.representation());
+        assertEquals(1, g.freezeBackoff());
+        
+        g.add("b");
+        assertEquals(Representation.HASHED, g.representation());
+        assertEquals(2, g.freezeBackoff());
+        for (int i = 0; i < 7; i++) {
+            g.vertices();
+        }
+        assertEquals(Representation.HASHED, g.representation());
+        g.vertices();
+        assertEquals(Representation.FROZEN, g.representation());
+        
+        for (int i = 0; i < 8; i++) {
+            g.vertices();
+        }
+        g.add("c");
+        assertEquals(1, g.freezeBackoff());
+        for (int i = 0; i < 4; i++) {
+            g.vertices();
+        }
+        assertEquals(Representation.FROZEN, g.representation());
+        assertEquals(3, g.promotions(Representation.FROZEN));
+    }
+    
+    @Test
+    public void testFreezeBackoffCapped() {
+        AdaptiveGraph<String> g = new AdaptiveGraph<String>(100, 100, 1, 1);
+        for (int i = 0; i < 20; i++) {
+            g.freeze();
+            g.add("v" + i);
+        }
+        assertEquals(AdaptiveGraph.MAX_FREEZE_BACKOFF, g.freezeBackoff());
+        assertEquals(20, g.vertices().size());
+    }
+    
+    @Test
+    public void testConcurrentReadsAndWrites() throws InterruptedException {
+        final AdaptiveGraph<String> g = new AdaptiveGraph<String>(4, 4, 8, 1);
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        for (int t = 0; t < 4; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        if (i % 50 == 0) {
+                            g.set("w" + id, "w" + (i % 7), i + 1);
+                        } else {
+                            g.targets("w" + (i % 4));
+                            g.vertices();
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+        for (int t = 0; t < 4; t++) {
+            assertEquals(7, g.targets("w" + t).size());
+        }
+    }
+    
+}
@@ -0,0 +1,124 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the BulkGraph operations of ConcreteEdgesGraph and
+ * ConcreteVerticesGraph.
+ */
+public class BulkGraphTest {
+    
+    // Testing strategy
+    //   removeAll(): empty batch, vertices with edges in and out, self loop,
+    //     labels not in the graph, duplicate labels; result equals removing
+    //     one at a time
+    //   setAll(): new edges with new vertices, changed weights, removed
+    //     edges, zero weight for a missing edge; result equals setting one at
+    //     a time
+    //   large batch on a large graph (single pass)
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static List<BulkGraph<String>> instances() {
+        return Arrays.<BulkGraph<String>>asList(new ConcreteEdgesGraph<String>(),
+                new ConcreteVerticesGraph<String>());
+    }
+    
+    private static void fill(Graph<String> g) {
+        g.add("lonely");
+        g.set("a", "a", 1);
+        g.set("a", "b", 2);
+        g.set("b", "c", 3);
+        g.set("c", "a", 4);
+        g.set("c", "d", 5);
+    }
+    
+    private static void assertSameGraph(Graph<String> expected, Graph<String> actual) {
+        assertEquals(expected.vertices(), actual.vertices());
+        for (String v : expected.vertices()) {
+            assertEquals(expected.targets(v), actual.targets(v));
+            assertEquals(expected.sources(v), actual.sources(v));
+        }
+    }
+    
+    @Test
+    public void testRemoveAll() {
+        for (BulkGraph<String> g : instances()) {
+            fill(g);
+            assertEquals(0, g.removeAll(Collections.<String>emptyList()));
+            assertEquals(2, g.removeAll(Arrays.asList("a", "d", "missing", "a")));
+            
+            Graph<String> expected = new ConcreteEdgesGraph<String>();
+            fill(expected);
+            expected.remove("a");
+            expected.remove("d");
+            assertSameGraph(expected, g);
+            assertEquals(Collections.singletonMap("c", 3), g.targets("b"));
+            assertEquals(Collections.emptyMap(), g.targets("c"));
+        }
+    }
+    
+    @Test
+    public void testSetAll() {
+        for (BulkGraph<String> g : instances()) {
+            fill(g);
+            Map<String, Map<String, Integer>> weights = new HashMap<String, Map<String, Integer>>();
+            weights.put("a", new HashMap<String, Integer>());
+            weights.get("a").put("a", 0);
+            weights.get("a").put("b", 7);
+            weights.get("a").put("e", 1);
+            weights.put("f", Collections.singletonMap("g", 2));
+            weights.put("h", Collections.singletonMap("i", 0));
+            g.setAll(weights);
+            
+            Graph<String> expected = new ConcreteEdgesGraph<String>();
+            fill(expected);
+            expected.set("a", "a", 0);
+            expected.set("a", "b", 7);
+            expected.set("a", "e", 1);
+            expected.set("f", "g", 2);
+            assertSameGraph(expected, g);
+            assertFalse(g.vertices().contains("h"));
+        }
+    }
+    
+    @Test(timeout=10000)
+    public void testLargeBatch() {
+        for (BulkGraph<String> g : instances()) {
+            Map<String, Map<String, Integer>> weights = new HashMap<String, Map<String, Integer>>();
+            for (int v = 0; v < 2000; v++) {
+                Map<String, Integer> tgts = new HashMap<String, Integer>();
+                for (int d = 1; d <= 5; d++) {
+                    tgts.put("w" + (v + d) % 2000, d);
+                }
+                weights.put("w" + v, tgts);
+            }
+            g.setAll(weights);
+            assertEquals(2000, g.vertices().size());
+            
+            List<String> stopwords = new ArrayList<String>();
+            for (int v = 0; v < 2000; v += 2) {
+                stopwords.add("w" + v);
+            }
+            assertEquals(1000, g.removeAll(stopwords));
+            assertEquals(new HashSet<String>(Arrays.asList("w3", "w5")), g.targets("w1").keySet());
+        }
+    }
+    
+}
@@ -0,0 +1,121 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for CompressedGraph.
+ */
+public class CompressedGraphTest {
+    
+    // Testing strategy
+    //   of(): empty graph, isolated vertex, self loop, vertex with more than
+    //     one block of edges, large weights
+    //   weight(): edge in first, middle and last block, missing edge before,
+    //     between and after the stored ids
+    //   forEachTarget()/forEachSource(): increasing ids, consistent with
+    //     targets()/sources()
+    //   adjacencyBytes(): much smaller than four ints per edge
+    //   mutators: unsupported
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static Graph<String> sample() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        g.add("lonely");
+        g.set("hub", "hub", 1);
+        for (int i = 0; i < 50; i += 2) {
+            g.set("hub", "v" + i, i + 1);
+            g.set("v" + i, "hub", 1_000_000 + i);
+        }
+        return g;
+    }
+    
+    @Test
+    public void testEmpty() {
+        CompressedGraph<String> c = CompressedGraph.of(new ConcreteEdgesGraph<String>());
+        assertEquals(0, c.vertexCount());
+        assertEquals(0, c.edgeCount());
+        assertEquals(-1, c.id("a"));
+    }
+    
+    @Test
+    public void testCopy() {
+        Graph<String> g = sample();
+        CompressedGraph<String> c = CompressedGraph.of(g);
+        assertEquals(g.vertices(), c.vertices());
+        assertEquals(51, c.edgeCount());
+        for (String v : g.vertices()) {
+            assertEquals(v, c.label(c.id(v)));
+            assertEquals(g.targets(v), c.targets(v));
+            assertEquals(g.sources(v), c.sources(v));
+        }
+        assertEquals(new HashMap<String, Integer>(), c.sources("missing"));
+    }
+    
+    @Test
+    public void testWeight() {
+        Graph<String> g = sample();
+        CompressedGraph<String> c = CompressedGraph.of(g);
+        int hub = c.id("hub");
+        for (String v : g.vertices()) {
+            Integer w = g.targets("hub").get(v);
+            assertEquals(w == null ? 0 : w, c.weight(hub, c.id(v)));
+            w = g.sources("hub").get(v);
+            assertEquals(w == null ? 0 : w, c.weight(c.id(v), hub));
+        }
+        for (int v = 0; v < c.vertexCount(); v++) {
+            assertEquals(0, c.weight(c.id("lonely"), v));
+        }
+    }
+    
+    @Test
+    public void testVisitors() {
+        CompressedGraph<String> c = CompressedGraph.of(sample());
+        int hub = c.id("hub");
+        List<Integer> ids = new ArrayList<Integer>();
+        Map<String, Integer> tgts = new HashMap<String, Integer>();
+        c.forEachTarget(hub, (t, w) -> {
+            ids.add(t);
+            tgts.put(c.label(t), w);
+        });
+        assertEquals(c.targets("hub"), tgts);
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) < ids.get(i));
+        }
+        Map<String, Integer> srcs = new HashMap<String, Integer>();
+        c.forEachSource(hub, (s, w) -> srcs.put(c.label(s), w));
+        assertEquals(c.sources("hub"), srcs);
+    }
+    
+    @Test
+    public void testCompact() {
+        Graph<String> g = new AdaptiveGraph<String>();
+        for (int v = 0; v < 300; v++) {
+            for (int d = 1; d <= 60; d++) {
+                g.set("w" + v, "w" + (v + d) % 300, 1 + d % 3);
+            }
+        }
+        CompressedGraph<String> c = CompressedGraph.of(g);
+        long csrBytes = 4L * (2 * (c.vertexCount() + 1) + 4 * c.edgeCount());
+        assertTrue(c.adjacencyBytes() * 2 < csrBytes);
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testImmutable() {
+        CompressedGraph.of(sample()).add("a");
+    }
+    
+}
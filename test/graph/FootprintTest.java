@@ -0,0 +1,148 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for Footprint and the MeasuredGraph implementations.
+ */
+public class FootprintTest {
+    
+    // Testing strategy
+    //   Footprint values: total(), plus(), withoutCaches(), negative parts,
+    //     equals()
+    //   size model: alignment, arrays, strings, hash maps of 0 and n entries
+    //   of(): each measured implementation on the same graph, and a graph
+    //     that does not measure itself; empty and non-empty; label bytes
+    //     agree across implementations; compact forms are smaller
+    //   overlay: excludes its base
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static void fill(Graph<String> g) {
+        for (int i = 0; i < 200; i++) {
+            for (int j = 1; j <= 5; j++) {
+                g.set("w" + i, "w" + ((i * 7 + j) % 200), j);
+            }
+        }
+        g.add("lonely");
+    }
+    
+    @Test
+    public void testValues() {
+        Footprint a = new Footprint(1, 2, 3, 4, 5);
+        assertEquals(15, a.total());
+        Footprint b = a.plus(new Footprint(10, 20, 30, 40, 50));
+        assertEquals(new Footprint(11, 22, 33, 44, 55), b);
+        assertEquals(new Footprint(1, 2, 3, 0, 5), a.withoutCaches());
+        assertEquals(a, Footprint.ZERO.plus(a));
+        assertEquals(a.hashCode(), new Footprint(1, 2, 3, 4, 5).hashCode());
+        assertTrue(a.toString().startsWith("15 bytes"));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegative() {
+        new Footprint(0, -1, 0, 0, 0);
+    }
+    
+    @Test
+    public void testSizeModel() {
+        assertEquals(16, Footprint.object(0));
+        assertEquals(16, Footprint.object(4));
+        assertEquals(24, Footprint.object(5));
+        assertEquals(16, Footprint.array(0, 4));
+        assertEquals(56, Footprint.array(10, 4));
+        assertEquals(Footprint.object(8) + Footprint.array(3, 2), Footprint.string("abc"));
+        assertTrue(Footprint.hashMap(0) > 0);
+        assertTrue(Footprint.hashMap(100) > 100 * Footprint.object(16));
+        assertEquals(2 * Footprint.string("ab"), Footprint.labels(Arrays.asList("ab", "cd")));
+    }
+    
+    @Test
+    public void testEmptyGraphs() {
+        assertEquals(0, Footprint.of(new ConcreteEdgesGraph<String>()).labels());
+        assertEquals(4 * Footprint.array(0, 4), Footprint.of(FrozenGraph.of(new ConcreteEdgesGraph<String>())).edges());
+        assertEquals(0, Footprint.of(new VersionedGraph<String>()).labels());
+    }
+    
+    @Test
+    public void testImplementationsAgreeOnLabels() {
+        Graph<String> edges = new ConcreteEdgesGraph<String>();
+        fill(edges);
+        Graph<String> vertices = new ConcreteVerticesGraph<String>();
+        fill(vertices);
+        Graph<String> versioned = new VersionedGraph<String>();
+        fill(versioned);
+        AdaptiveGraph<String> adaptive = new AdaptiveGraph<String>();
+        fill(adaptive);
+        assertEquals(AdaptiveGraph.Representation.HASHED, adaptive.representation());
+        
+        long labels = Footprint.labels(edges.vertices());
+        for (Graph<String> g : Arrays.asList(edges, vertices, versioned, adaptive, FrozenGraph.of(edges),
+                CompressedGraph.of(edges), new InstrumentedGraph<String>(edges))) {
+            Footprint f = Footprint.of(g);
+            assertEquals(g.getClass().getSimpleName(), labels, f.labels());
+            assertTrue(f.vertices() > 0 && f.edges() > 0);
+            assertEquals(0, f.caches());
+        }
+    }
+    
+    @Test
+    public void testCompactFormsSmaller() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        fill(g);
+        long concrete = Footprint.of(g).total();
+        FrozenGraph<String> frozen = FrozenGraph.of(g);
+        long frozenBytes = Footprint.of(frozen).total();
+        long compressed = Footprint.of(CompressedGraph.of(frozen)).total();
+        assertTrue(frozenBytes < concrete);
+        assertTrue(compressed < frozenBytes);
+        assertTrue(Footprint.of(frozen).indexes() > 0);
+        
+        AdaptiveGraph<String> adaptive = new AdaptiveGraph<String>();
+        fill(adaptive);
+        long hashed = adaptive.footprint().total();
+        adaptive.freeze();
+        assertEquals(AdaptiveGraph.Representation.FROZEN, adaptive.representation());
+        assertEquals(frozenBytes, adaptive.footprint().total());
+        assertTrue(frozenBytes < hashed);
+    }
+    
+    @Test
+    public void testGrowsWithEdges() {
+        Graph<String> g = new ConcreteVerticesGraph<String>();
+        g.add("a");
+        long before = Footprint.of(g).total();
+        g.set("a", "b", 1);
+        long after = Footprint.of(g).total();
+        assertTrue(after > before);
+        g.remove("b");
+        assertEquals(before, Footprint.of(g).total());
+    }
+    
+    @Test
+    public void testOverlayExcludesBase() {
+        Graph<String> base = new ConcreteEdgesGraph<String>();
+        fill(base);
+        OverlayGraph<String> overlay = new OverlayGraph<String>(FrozenGraph.of(base));
+        Footprint empty = overlay.footprint();
+        assertEquals(0, empty.labels());
+        assertTrue(empty.total() < Footprint.of(base).total() / 10);
+        
+        overlay.increment("w1", "new", 1);
+        assertEquals(Footprint.string("new"), overlay.footprint().labels());
+        assertTrue(overlay.footprint().edges() > empty.edges());
+        assertEquals(Collections.singletonMap("w1", 1), overlay.sources("new"));
+    }
+    
+}
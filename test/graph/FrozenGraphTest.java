@@ -0,0 +1,91 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for FrozenGraph.
+ */
+public class FrozenGraphTest {
+    
+    // Testing strategy
+    //   of(): empty graph, graph with isolated vertex, self loop, several edges
+    //   id()/label(): round trip, missing label
+    //   out/in accessors: ranges sorted by id and consistent with targets()
+    //   weight(): existing and missing edge
+    //   mutators: unsupported
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static Graph<String> sample() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        g.add("lonely");
+        g.set("a", "a", 1);
+        g.set("a", "b", 2);
+        g.set("a", "c", 3);
+        g.set("c", "b", 4);
+        return g;
+    }
+    
+    @Test
+    public void testEmpty() {
+        FrozenGraph<String> f = FrozenGraph.of(new ConcreteEdgesGraph<String>());
+        assertEquals(0, f.vertexCount());
+        assertEquals(0, f.edgeCount());
+        assertEquals(-1, f.id("a"));
+    }
+    
+    @Test
+    public void testCopy() {
+        Graph<String> g = sample();
+        FrozenGraph<String> f = FrozenGraph.of(g);
+        assertEquals(g.vertices(), f.vertices());
+        assertEquals(4, f.vertexCount());
+        assertEquals(4, f.edgeCount());
+        for (String v : g.vertices()) {
+            assertEquals(v, f.label(f.id(v)));
+            assertEquals(g.targets(v), f.targets(v));
+            assertEquals(g.sources(v), f.sources(v));
+        }
+        assertEquals(new HashMap<String, Integer>(), f.targets("missing"));
+    }
+    
+    @Test
+    public void testPrimitiveAccess() {
+        FrozenGraph<String> f = FrozenGraph.of(sample());
+        int a = f.id("a");
+        Map<String, Integer> tgts = new HashMap<String, Integer>();
+        int last = -1;
+        for (int i = f.outStart(a); i < f.outEnd(a); i++) {
+            assertTrue(f.outTarget(i) > last);
+            last = f.outTarget(i);
+            tgts.put(f.label(f.outTarget(i)), f.outWeight(i));
+        }
+        assertEquals(f.targets("a"), tgts);
+        
+        int b = f.id("b");
+        assertEquals(new HashSet<String>(Arrays.asList("a", "c")),
+                new HashSet<String>(Arrays.asList(f.label(f.inSource(f.inStart(b))),
+                        f.label(f.inSource(f.inStart(b) + 1)))));
+        assertEquals(4, f.weight(f.id("c"), b));
+        assertEquals(0, f.weight(b, f.id("c")));
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testImmutable() {
+        FrozenGraph.of(sample()).set("a", "b", 1);
+    }
+    
+}
@@ -0,0 +1,158 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests for GraphAnalytics.
+ */
+public class GraphAnalyticsTest {
+    
+    // Testing strategy
+    //   graph: empty, small, large enough to split into many tasks; frozen or
+    //     not
+    //   pageRank(): symmetric cycle, weighted edges, dangling vertices
+    //   degree distributions: isolated vertices, self loop, hub
+    //   distances(): source with no edges, chain, unreachable vertices,
+    //     several sources, missing label; large graph against sequential BFS
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static final double EPSILON = 1e-9;
+    
+    @Test
+    public void testEmpty() {
+        GraphAnalytics<String> a = new GraphAnalytics<String>(new ConcreteEdgesGraph<String>());
+        assertEquals(0, a.pageRank(0.85, 10, 0).length);
+        assertEquals(0, a.outDegreeDistribution().length);
+        assertEquals(Collections.emptyMap(), a.distances("a"));
+    }
+    
+    @Test
+    public void testPageRankCycle() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        g.set("a", "b", 1);
+        g.set("b", "c", 5);
+        g.set("c", "a", 2);
+        Map<String, Double> ranks = new GraphAnalytics<String>(g).pageRank();
+        for (double r : ranks.values()) {
+            assertEquals(1.0 / 3, r, EPSILON);
+        }
+    }
+    
+    @Test
+    public void testPageRankWeighted() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        g.set("hub", "heavy", 9);
+        g.set("hub", "light", 1);
+        g.set("heavy", "hub", 1);
+        g.set("light", "hub", 1);
+        g.add("dangling");
+        Map<String, Double> ranks = new GraphAnalytics<String>(g, new ForkJoinPool(2)).pageRank();
+        double sum = 0;
+        for (double r : ranks.values()) {
+            sum += r;
+        }
+        assertEquals(1.0, sum, 1e-6);
+        assertTrue(ranks.get("hub") > ranks.get("heavy"));
+        assertTrue(ranks.get("heavy") > ranks.get("light"));
+        assertTrue(ranks.get("light") > ranks.get("dangling"));
+    }
+    
+    @Test
+    public void testDegreeDistributions() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        g.add("lonely");
+        g.set("a", "a", 1);
+        g.set("a", "b", 1);
+        g.set("a", "c", 1);
+        g.set("b", "c", 1);
+        GraphAnalytics<String> a = new GraphAnalytics<String>(g);
+        assertArrayEquals(new long[] { 2, 1, 0, 1 }, a.outDegreeDistribution());
+        assertArrayEquals(new long[] { 1, 2, 1 }, a.inDegreeDistribution());
+    }
+    
+    @Test
+    public void testDistances() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        g.set("a", "b", 1);
+        g.set("b", "c", 1);
+        g.set("a", "c", 1);
+        g.set("c", "d", 1);
+        g.set("e", "a", 1);
+        GraphAnalytics<String> a = new GraphAnalytics<String>(g);
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("a", 0);
+        expected.put("b", 1);
+        expected.put("c", 1);
+        expected.put("d", 2);
+        assertEquals(expected, a.distances("a"));
+        assertEquals(Collections.singletonMap("d", 0), a.distances("d"));
+        
+        FrozenGraph<String> f = a.frozen();
+        int[] d = a.distancesFromIds(f.id("d"), f.id("e"));
+        assertEquals(0, d[f.id("e")]);
+        assertEquals(1, d[f.id("a")]);
+        assertEquals(0, d[f.id("d")]);
+    }
+    
+    @Test(timeout=30000)
+    public void testLargeGraph() {
+        int n = 50_000;
+        Random random = new Random(7);
+        IntGraph ints = IntGraph.empty();
+        for (int v = 0; v < n; v++) {
+            ints.add(v);
+            for (int k = 0; k < 3; k++) {
+                ints.set(v, random.nextInt(n), 1 + random.nextInt(5));
+            }
+        }
+        GraphAnalytics<Integer> a = new GraphAnalytics<Integer>(new IntGraphAdapter(ints));
+        FrozenGraph<Integer> f = a.frozen();
+        
+        int[] expected = new int[n];
+        Arrays.fill(expected, -1);
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        expected[0] = 0;
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int v = queue.remove();
+            for (int i = f.outStart(v); i < f.outEnd(v); i++) {
+                int t = f.outTarget(i);
+                if (expected[t] < 0) {
+                    expected[t] = expected[v] + 1;
+                    queue.add(t);
+                }
+            }
+        }
+        assertArrayEquals(expected, a.distancesFromIds(0));
+        
+        double sum = 0;
+        for (double r : a.pageRank(0.85, 50, 1e-12)) {
+            sum += r;
+        }
+        assertEquals(1.0, sum, 1e-6);
+        long vertices = 0;
+        for (long count : a.inDegreeDistribution()) {
+            vertices += count;
+        }
+        assertEquals(n, vertices);
+    }
+    
+}
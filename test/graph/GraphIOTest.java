@@ -0,0 +1,129 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for GraphIO.
+ */
+public class GraphIOTest {
+    
+    // Testing strategy
+    //   writeEdgeList(): ConcreteEdgesGraph, ConcreteVerticesGraph, other
+    //     graph; isolated vertices; labels with tabs, newlines, backslashes
+    //     and non-ASCII characters; large and negative weights
+    //   writeDot(): quotes in labels, every vertex and edge present
+    //   readEdgeList(): round trip into bulk and non-bulk graphs; one thread
+    //     and several; chunks smaller than the file; blank lines and CRLF;
+    //     malformed lines
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static void fill(Graph<String> g) {
+        g.add("lonely");
+        g.add("tab\there");
+        g.set("a", "b", 1);
+        g.set("b", "a", 2_000_000_000);
+        g.set("back\\slash", "new\nline", 3);
+        g.set("caf\u00e9", "\"quoted\"", 4);
+        g.set("a", "a", 5);
+    }
+    
+    private static void assertSameGraph(Graph<String> expected, Graph<String> actual) {
+        assertEquals(expected.vertices(), actual.vertices());
+        for (String v : expected.vertices()) {
+            assertEquals(expected.targets(v), actual.targets(v));
+        }
+    }
+    
+    private static Path write(String content) throws IOException {
+        Path file = Files.createTempFile("edges", ".tsv");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Graph<String>> graphs = Arrays.<Graph<String>>asList(new ConcreteEdgesGraph<String>(),
+                new ConcreteVerticesGraph<String>(), new AdaptiveGraph<String>());
+        for (Graph<String> g : graphs) {
+            fill(g);
+            StringWriter out = new StringWriter();
+            GraphIO.writeEdgeList(g, out);
+            assertTrue(out.toString().contains("b\ta\t2000000000\n"));
+            assertTrue(out.toString().contains("back\\\\slash\tnew\\nline\t3\n"));
+            Path file = write(out.toString());
+            for (Graph<String> into : Arrays.<Graph<String>>asList(new ConcreteEdgesGraph<String>(),
+                    new AdaptiveGraph<String>())) {
+                assertEquals(5, GraphIO.readEdgeList(file, into, 3, 64));
+                assertSameGraph(g, into);
+            }
+        }
+    }
+    
+    @Test
+    public void testDot() throws IOException {
+        Graph<String> g = new ConcreteVerticesGraph<String>();
+        fill(g);
+        Writer out = new StringWriter();
+        GraphIO.writeDot(g, out);
+        String dot = out.toString();
+        assertTrue(dot.startsWith("digraph {\n"));
+        assertTrue(dot.endsWith("}\n"));
+        assertTrue(dot.contains("  \"lonely\";\n"));
+        assertTrue(dot.contains("  \"caf\u00e9\" -> \"\\\"quoted\\\"\" [label=4];\n"));
+        assertEquals(8 + 5 + 2, dot.split("\n").length);
+    }
+    
+    @Test
+    public void testLargeParallel() throws IOException {
+        StringBuilder content = new StringBuilder();
+        Graph<String> expected = new AdaptiveGraph<String>();
+        for (int i = 0; i < 5000; i++) {
+            content.append("w").append(i).append("\tw").append((i * 7) % 5000).append('\t').append(i + 1);
+            content.append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 100 == 0) {
+                content.append("\n");
+            }
+            expected.set("w" + i, "w" + (i * 7) % 5000, i + 1);
+        }
+        content.append("w1\tw7\t9\n");
+        expected.set("w1", "w7", 9);
+        Path file = write(content.toString());
+        Graph<String> g = new ConcreteVerticesGraph<String>();
+        assertEquals(5001, GraphIO.readEdgeList(file, g, 4, 1024));
+        assertSameGraph(expected, g);
+        
+        Graph<String> one = new AdaptiveGraph<String>();
+        GraphIO.readEdgeList(file, one, 1);
+        assertSameGraph(expected, one);
+    }
+    
+    @Test(expected=IOException.class)
+    public void testMissingWeight() throws IOException {
+        GraphIO.readEdgeList(write("a\tb\n"), new ConcreteEdgesGraph<String>(), 2);
+    }
+    
+    @Test(expected=IOException.class)
+    public void testBadWeight() throws IOException {
+        GraphIO.readEdgeList(write("a\tb\t1x\n"), new ConcreteEdgesGraph<String>(), 2);
+    }
+    
+}
@@ -0,0 +1,98 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import graph.GraphMetrics.Counter;
+import graph.GraphMetrics.Histogram;
+
+/**
+ * Tests for InstrumentedGraph and GraphMetrics.
+ * 
+ * This class runs the GraphInstanceTest tests against InstrumentedGraph, as
+ * well as tests for the metrics it records.
+ * 
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class InstrumentedGraphTest extends GraphInstanceTest {
+    
+    /*
+     * Provide an InstrumentedGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new InstrumentedGraph<String>(new ConcreteVerticesGraph<String>());
+    }
+    
+    /*
+     * Testing GraphMetrics...
+     */
+    
+    // Testing strategy for GraphMetrics
+    //   counter()/histogram(): same name returns same metric
+    //   Histogram: no values, zeros, values spanning several buckets;
+    //     percentile() at 0, 0.5, 0.99, 1
+    //   report(): includes every registered metric
+    //   InstrumentedGraph records only when GraphMetrics.ENABLED
+    // Testing strategy for FlightEvents
+    //   available(): JVM with and without the Flight Recorder API
+    //   operation()/bridge(): null vertex, empty bridge; must not throw
+    
+    @Test
+    public void testCounter() {
+        Counter c = GraphMetrics.counter("test.counter");
+        assertSame(c, GraphMetrics.counter("test.counter"));
+        long before = c.get();
+        c.increment();
+        c.add(4);
+        assertEquals(before + 5, c.get());
+    }
+    
+    @Test
+    public void testHistogram() {
+        Histogram h = GraphMetrics.histogram("test.histogram.fresh");
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(0.99));
+        
+        for (int i = 0; i < 98; i++) {
+            h.record(0);
+        }
+        h.record(5);
+        h.record(1000);
+        assertEquals(100, h.count());
+        assertEquals(0, h.percentile(0.5));
+        assertEquals(7, h.percentile(0.99));
+        assertEquals(1023, h.percentile(1.0));
+        assertEquals(10.05, h.mean(), 1e-9);
+        assertTrue(GraphMetrics.report().contains("test.histogram.fresh count=100"));
+    }
+    
+    @Test
+    public void testRecordsWhenEnabled() {
+        Histogram targets = GraphMetrics.histogram("graph.targets");
+        long before = targets.count();
+        Graph<String> g = emptyInstance();
+        g.set("a", "b", 1);
+        g.targets("a");
+        assertEquals(GraphMetrics.ENABLED ? before + 1 : before, targets.count());
+    }
+    
+    @Test
+    public void testFlightEvents() {
+        boolean api;
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+            api = true;
+        } catch (ClassNotFoundException e) {
+            api = false;
+        }
+        assertEquals(api, FlightEvents.available());
+        
+        FlightEvents.operation("vertices", null, 0, "ConcreteEdgesGraph", FlightEvents.SLOW_NANOS);
+        FlightEvents.bridge("a", "b", 3, "", FlightEvents.SLOW_NANOS);
+    }
+    
+}
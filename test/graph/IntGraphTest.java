@@ -0,0 +1,112 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for IntGraph, HashIntGraph and IntGraphAdapter.
+ */
+public class IntGraphTest {
+    
+    // Testing strategy
+    //   add/contains/vertexCount: new vertex, duplicate, label 0, negative label
+    //   set: new edge, update, zero for existing and missing edge, self loop
+    //   remove: vertex with incoming, outgoing and self edges; missing vertex;
+    //     slot reuse after removal
+    //   weight/outDegree/inDegree: existing and missing vertices
+    //   forEachTarget/forEachSource: agree with set
+    //   many vertices: forces map resizing and backward-shift deletion
+    //   IntGraphAdapter: reads and writes through to the IntGraph
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    @Test
+    public void testAddAndSet() {
+        IntGraph g = IntGraph.empty();
+        assertTrue(g.add(0));
+        assertFalse(g.add(0));
+        assertTrue(g.add(-5));
+        assertEquals(0, g.set(0, -5, 3));
+        assertEquals(3, g.set(0, -5, 4));
+        assertEquals(0, g.set(7, 7, 1));
+        assertEquals(3, g.vertexCount());
+        assertEquals(4, g.weight(0, -5));
+        assertEquals(0, g.weight(-5, 0));
+        assertEquals(1, g.outDegree(0));
+        assertEquals(1, g.inDegree(-5));
+        assertEquals(1, g.inDegree(7));
+        assertEquals(4, g.set(0, -5, 0));
+        assertEquals(0, g.set(0, -5, 0));
+        assertEquals(0, g.set(99, 100, 0));
+        assertFalse(g.contains(99));
+    }
+    
+    @Test
+    public void testRemove() {
+        IntGraph g = new HashIntGraph();
+        g.set(1, 1, 1);
+        g.set(1, 2, 2);
+        g.set(2, 1, 3);
+        g.set(3, 1, 4);
+        assertTrue(g.remove(1));
+        assertFalse(g.remove(1));
+        assertFalse(g.contains(1));
+        assertEquals(0, g.outDegree(2));
+        assertEquals(0, g.outDegree(3));
+        assertEquals(0, g.inDegree(2));
+        
+        g.set(4, 2, 5);
+        Map<Integer, Integer> srcs = new HashMap<Integer, Integer>();
+        g.forEachSource(2, srcs::put);
+        assertEquals(Collections.singletonMap(4, 5), srcs);
+    }
+    
+    @Test
+    public void testManyVertices() {
+        IntGraph g = new HashIntGraph();
+        for (int i = 0; i < 2000; i++) {
+            g.set(i % 37, i, i + 1);
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            g.set(i % 37, i, 0);
+        }
+        int[] count = new int[1];
+        g.forEachTarget(5, (t, w) -> {
+            assertEquals(t + 1, w);
+            assertEquals(1, t % 2);
+            count[0]++;
+        });
+        assertEquals(g.outDegree(5), count[0]);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i % 2 == 0 ? 0 : i + 1, g.weight(i % 37, i));
+        }
+    }
+    
+    @Test
+    public void testAdapter() {
+        IntGraph ints = new HashIntGraph();
+        Graph<Integer> g = new IntGraphAdapter(ints);
+        assertEquals(0, g.set(1, 2, 3));
+        ints.set(2, 3, 4);
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3)), g.vertices());
+        assertEquals(Collections.singletonMap(3, 4), g.targets(2));
+        assertEquals(Collections.singletonMap(1, 3), g.sources(2));
+        assertTrue(g.remove(2));
+        assertEquals(Collections.emptyMap(), g.targets(1));
+        assertFalse(ints.contains(2));
+    }
+    
+}
@@ -0,0 +1,454 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for LoggedGraph.
+ *
+ * This class runs the GraphInstanceTest tests against LoggedGraph, as well
+ * as tests for that particular implementation.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class LoggedGraphTest extends GraphInstanceTest {
+    
+    private final List<LoggedGraph> opened = new ArrayList<LoggedGraph>();
+    private final List<Path> directories = new ArrayList<Path>();
+    
+    @After
+    public void tearDown() throws IOException {
+        for (LoggedGraph g : opened) {
+            g.close();
+        }
+        for (Path dir : directories) {
+            for (File f : dir.toFile().listFiles()) {
+                f.delete();
+            }
+            Files.delete(dir);
+        }
+    }
+    
+    private Path directory() {
+        try {
+            Path dir = Files.createTempDirectory("wal");
+            directories.add(dir);
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private LoggedGraph open(Path dir, long commitIntervalMillis, int checkpointRecords) {
+        try {
+            LoggedGraph g = new LoggedGraph(dir, new ConcreteEdgesGraph<String>(), commitIntervalMillis,
+                    checkpointRecords);
+            opened.add(g);
+            return g;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /*
+     * Copy the files in dir as a crash would leave them, to open the copy
+     * while the original is still open.
+     */
+    private Path crashCopy(Path dir) throws IOException {
+        Path copy = directory();
+        for (File f : dir.toFile().listFiles()) {
+            Files.copy(f.toPath(), copy.resolve(f.getName()));
+        }
+        return copy;
+    }
+    
+    private static void assertSameGraph(Graph<String> expected, Graph<String> actual) {
+        assertEquals(expected.vertices(), actual.vertices());
+        for (String v : expected.vertices()) {
+            assertEquals(expected.targets(v), actual.targets(v));
+        }
+    }
+    
+    /*
+     * Provide a LoggedGraph for tests in GraphInstanceTest; a small
+     * checkpoint interval makes them run across several checkpoints.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return open(directory(), 0, 3);
+    }
+    
+    /*
+     * Testing LoggedGraph...
+     */
+    
+    // Testing strategy for LoggedGraph
+    //   recovery: empty directory, log only, checkpoint only, checkpoint and
+    //     log tail, log still holding records the checkpoint includes
+    //   log tail: complete, torn record, corrupt record
+    //   commit: every mutation, background interval, explicit sync()
+    //   concurrency: several threads incrementing the same edges
+    //   misuse: non-empty memory graph, mutation after close
+    //   log failure: torn write, failed fsync; mutations, sync() and
+    //     checkpoint() after it; recovery after it
+    
+    private static void fill(Graph<String> g) {
+        g.add("lonely");
+        g.set("a", "b", 1);
+        g.set("b", "c", 2);
+        g.set("caf\u00e9", "a", 3);
+        ((IncrementalGraph<String>) g).increment("a", "b", 4);
+        g.add("gone");
+        g.remove("gone");
+        g.set("b", "c", 0);
+    }
+    
+    @Test
+    public void testRecoverFromLogOnly() throws IOException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 0, 1000);
+        fill(g);
+        g.close();
+        assertFalse(Files.exists(dir.resolve("checkpoint")));
+        
+        LoggedGraph recovered = open(dir, 0, 1000);
+        assertSameGraph(g, recovered);
+        assertEquals(Collections.singletonMap("a", 5), recovered.sources("b"));
+    }
+    
+    @Test
+    public void testRecoverFromCheckpointAndTail() throws IOException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 0, 5);
+        fill(g);
+        g.close();
+        assertTrue(Files.exists(dir.resolve("checkpoint")));
+        assertTrue(Files.size(dir.resolve("wal")) > 0);
+        
+        assertSameGraph(g, open(dir, 0, 5));
+    }
+    
+    @Test
+    public void testRecoverFromCheckpointOnly() throws IOException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 0, 1000);
+        fill(g);
+        g.checkpoint();
+        g.close();
+        assertEquals(0, Files.size(dir.resolve("wal")));
+        
+        LoggedGraph recovered = open(dir, 0, 1000);
+        assertSameGraph(g, recovered);
+        recovered.increment("a", "b", 1);
+        assertEquals(Collections.singletonMap("b", 6), recovered.targets("a"));
+    }
+    
+    @Test
+    public void testStaleLogNotReplayed() throws IOException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 0, 1000);
+        fill(g);
+        byte[] log = Files.readAllBytes(dir.resolve("wal"));
+        g.checkpoint();
+        g.close();
+        // as if the process died between writing the checkpoint and
+        // truncating the log
+        Files.write(dir.resolve("wal"), log);
+        
+        LoggedGraph recovered = open(dir, 0, 1000);
+        assertSameGraph(g, recovered);
+        assertEquals(Collections.singletonMap("b", 5), recovered.targets("a"));
+    }
+    
+    @Test
+    public void testTornRecordIgnored() throws IOException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 0, 1000);
+        g.set("a", "b", 1);
+        long good = Files.size(dir.resolve("wal"));
+        g.set("b", "c", 2);
+        g.close();
+        long full = Files.size(dir.resolve("wal"));
+        try (FileChannel c = FileChannel.open(dir.resolve("wal"),
+                StandardOpenOption.WRITE)) {
+            c.truncate(full - 3);
+        }
+        
+        LoggedGraph recovered = open(dir, 0, 1000);
+        assertEquals(Collections.singletonMap("b", 1), recovered.targets("a"));
+        assertEquals(Collections.emptyMap(), recovered.targets("b"));
+        assertEquals(good, Files.size(dir.resolve("wal")));
+        
+        recovered.set("x", "y", 7);
+        recovered.close();
+        assertEquals(Collections.singletonMap("y", 7), open(dir, 0, 1000).targets("x"));
+    }
+    
+    @Test
+    public void testCorruptRecordIgnored() throws IOException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 0, 1000);
+        g.set("a", "b", 1);
+        g.set("b", "c", 2);
+        g.close();
+        byte[] log = Files.readAllBytes(dir.resolve("wal"));
+        log[log.length - 1] ^= 0x55;
+        Files.write(dir.resolve("wal"), log);
+        
+        LoggedGraph recovered = open(dir, 0, 1000);
+        assertEquals(Collections.singletonMap("b", 1), recovered.targets("a"));
+        assertEquals(Collections.emptyMap(), recovered.targets("b"));
+    }
+    
+    @Test
+    public void testBackgroundCommit() throws IOException, InterruptedException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 5, 1000);
+        fill(g);
+        g.sync();
+        assertSameGraph(g, open(crashCopy(dir), 0, 1000));
+        
+        g.set("later", "on", 9);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (open(crashCopy(dir), 0, 1000).targets("later").isEmpty()) {
+            assertTrue("background commit never happened", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+    
+    @Test
+    public void testConcurrentIncrements() throws IOException, InterruptedException {
+        Path dir = directory();
+        LoggedGraph g = open(dir, 0, 50);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final String source = "s" + (t % 2);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    g.increment(source, "t", 1);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(Integer.valueOf(200), g.sources("t").get("s0"));
+        assertEquals(Integer.valueOf(200), g.sources("t").get("s1"));
+        
+        assertSameGraph(g, open(crashCopy(dir), 0, 50));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testNonEmptyMemory() throws IOException {
+        Graph<String> memory = new ConcreteEdgesGraph<String>();
+        memory.add("a");
+        new LoggedGraph(directory(), memory, 0, 10);
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testClosed() throws IOException {
+        LoggedGraph g = open(directory(), 0, 10);
+        g.close();
+        g.add("a");
+    }
+    
+    /**
+     * A log channel that fails on demand.
+     * Mutable.
+     */
+    private static class FailingChannel extends FileChannel {
+        
+        private final FileChannel channel;
+        volatile boolean failWrites = false;
+        volatile boolean failForce = false;
+        
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+        
+        // write half of src, leaving a torn record, then fail
+        @Override public int write(ByteBuffer src) throws IOException {
+            if (failWrites) {
+                ByteBuffer half = src.duplicate();
+                half.limit(half.position() + half.remaining() / 2);
+                channel.write(half);
+                throw new IOException("injected write failure");
+            }
+            return channel.write(src);
+        }
+        
+        @Override public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("injected fsync failure");
+            }
+            channel.force(metaData);
+        }
+        
+        @Override public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+        
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+        
+        @Override public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override public long position() throws IOException {
+            return channel.position();
+        }
+        
+        @Override public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+        
+        @Override public long size() throws IOException {
+            return channel.size();
+        }
+        
+        @Override public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+        
+        @Override public long transferTo(long position, long count, WritableByteChannel target)
+                throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+        
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count)
+                throws IOException {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+        
+        @Override public int write(ByteBuffer src, long position) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+        
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+        
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+        
+        @Override protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+    
+    private LoggedGraph openFailing(Path dir, FailingChannel[] channel) throws IOException {
+        LoggedGraph g = new LoggedGraph(dir, new ConcreteEdgesGraph<String>(), 0, 1000, log -> {
+            channel[0] = new FailingChannel(log);
+            return channel[0];
+        });
+        opened.add(g);
+        return g;
+    }
+    
+    @Test
+    public void testTornWriteFailsGraph() throws IOException {
+        Path dir = directory();
+        FailingChannel[] channel = new FailingChannel[1];
+        LoggedGraph g = openFailing(dir, channel);
+        g.set("a", "b", 1);
+        channel[0].failWrites = true;
+        try {
+            g.set("b", "c", 2);
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertEquals("injected write failure", e.getCause().getMessage());
+        }
+        
+        channel[0].failWrites = false;
+        try {
+            g.add("d");
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertEquals("injected write failure", e.getCause().getMessage());
+        }
+        assertFalse(g.vertices().contains("d"));
+        try {
+            g.sync();
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        try {
+            g.checkpoint();
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        g.close();
+        
+        LoggedGraph recovered = open(dir, 0, 1000);
+        assertEquals(Collections.singletonMap("b", 1), recovered.targets("a"));
+        assertEquals(Collections.emptyMap(), recovered.targets("b"));
+        assertFalse(recovered.vertices().contains("d"));
+    }
+    
+    @Test
+    public void testFailedFsyncFailsGraph() throws IOException {
+        Path dir = directory();
+        FailingChannel[] channel = new FailingChannel[1];
+        LoggedGraph g = openFailing(dir, channel);
+        g.add("a");
+        channel[0].failForce = true;
+        try {
+            g.add("b");
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertEquals("injected fsync failure", e.getCause().getMessage());
+        }
+        channel[0].failForce = false;
+        try {
+            g.increment("a", "a", 1);
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertEquals("injected fsync failure", e.getCause().getMessage());
+        }
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+        g.close();
+        
+        LoggedGraph recovered = open(dir, 0, 1000);
+        assertTrue(recovered.vertices().contains("a"));
+        assertEquals(Collections.emptyMap(), recovered.targets("a"));
+    }
+    
+}
@@ -0,0 +1,210 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests for OffHeapGraph.
+ *
+ * This class runs the GraphInstanceTest tests against OffHeapGraph, as
+ * well as tests for that particular implementation.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class OffHeapGraphTest extends GraphInstanceTest {
+    
+    /*
+     * Provide an OffHeapGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new OffHeapGraph(1, 1);
+    }
+    
+    /*
+     * Testing OffHeapGraph...
+     */
+    
+    // Testing strategy for OffHeapGraph
+    //   growth: start from minimal capacity, add enough vertices and edges
+    //     to force every buffer and the index to grow
+    //   labels: non-ASCII labels, labels with equal hash codes
+    //   remove: vertex with self loop, incoming and outgoing edges
+    //   close(): operations after close, double close, frees direct memory
+    //   segments: tables that grow from one partial segment to many,
+    //     tables created with many segments, labels spanning segments
+    //   label arena: compacted after many removals, labels intact
+    
+    @Test
+    public void testGrowth() {
+        OffHeapGraph g = new OffHeapGraph(1, 1);
+        for (int i = 0; i < 1000; i++) {
+            g.set("w" + i, "w" + (i + 1), i + 1);
+        }
+        assertEquals(1001, g.vertices().size());
+        assertEquals(Collections.singletonMap("w501", 501), g.targets("w500"));
+        assertEquals(Collections.singletonMap("w499", 500), g.sources("w500"));
+        assertTrue(g.offHeapBytes() > 0);
+        g.close();
+    }
+    
+    @Test
+    public void testLabels() {
+        OffHeapGraph g = new OffHeapGraph();
+        // "Aa" and "BB" have the same String.hashCode()
+        g.set("Aa", "BB", 1);
+        g.set("BB", "\u00e9t\u00e9", 2);
+        assertEquals(Collections.singletonMap("BB", 1), g.targets("Aa"));
+        assertEquals(Collections.singletonMap("BB", 2), g.sources("\u00e9t\u00e9"));
+        assertFalse(g.add("Aa"));
+        assertTrue(g.remove("Aa"));
+        assertTrue(g.add("Aa"));
+        assertEquals(Collections.emptyMap(), g.sources("BB"));
+        g.close();
+    }
+    
+    @Test
+    public void testRemoveConnected() {
+        OffHeapGraph g = new OffHeapGraph();
+        g.set("a", "a", 1);
+        g.set("a", "b", 2);
+        g.set("b", "a", 3);
+        g.set("c", "a", 4);
+        g.set("b", "c", 5);
+        assertTrue(g.remove("a"));
+        assertEquals(Collections.emptyMap(), g.targets("c"));
+        assertEquals(Collections.singletonMap("c", 5), g.targets("b"));
+        
+        // freed edge records are reused
+        g.set("c", "b", 6);
+        Map<String, Integer> srcs = new HashMap<String, Integer>();
+        srcs.put("c", 6);
+        assertEquals(srcs, g.sources("b"));
+        g.close();
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testClosed() {
+        OffHeapGraph g = new OffHeapGraph();
+        g.add("a");
+        g.close();
+        g.close();
+        assertTrue(g.isClosed());
+        assertEquals(0, g.offHeapBytes());
+        g.vertices();
+    }
+    
+    @Test
+    public void testCloseFreesMemory() {
+        Assume.assumeTrue(DirectMemory.canFree());
+        BufferPoolMXBean direct = null;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                direct = pool;
+            }
+        }
+        Assume.assumeNotNull(direct);
+        
+        OffHeapGraph g = new OffHeapGraph(1 << 16, 1 << 18);
+        for (int i = 0; i < 1000; i++) {
+            g.set("w" + i, "w" + (i + 1), 1);
+        }
+        long used = direct.getMemoryUsed();
+        long reserved = g.offHeapBytes();
+        g.close();
+        assertTrue(direct.getMemoryUsed() <= used - reserved);
+    }
+    
+    @Test
+    public void testSegments() {
+        Graph<String> expected = new ConcreteEdgesGraph<String>();
+        OffHeapGraph small = new OffHeapGraph(1, 1, 4);
+        OffHeapGraph large = new OffHeapGraph(100, 500, 4);
+        for (int i = 0; i < 500; i++) {
+            String source = "w" + (i % 97);
+            String target = "w" + (i * 7 % 101);
+            expected.set(source, target, i + 1);
+            small.set(source, target, i + 1);
+            large.set(source, target, i + 1);
+        }
+        for (int i = 0; i < 101; i += 3) {
+            expected.remove("w" + i);
+            small.remove("w" + i);
+            large.remove("w" + i);
+        }
+        
+        assertEquals(expected.vertices(), small.vertices());
+        assertEquals(expected.vertices(), large.vertices());
+        for (String v : expected.vertices()) {
+            assertEquals(expected.targets(v), small.targets(v));
+            assertEquals(expected.sources(v), large.sources(v));
+        }
+        small.close();
+        large.close();
+    }
+    
+    @Test
+    public void testDirectIntsGrowth() {
+        DirectInts ints = new DirectInts(3, 3);
+        for (int i = 0; i < 100; i++) {
+            ints.ensureCapacity(i + 1);
+            ints.set(i, i * i);
+        }
+        assertEquals(104, ints.capacity());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * i, ints.get(i));
+        }
+        assertEquals(0, ints.get(103));
+        ints.free();
+    }
+    
+    @Test
+    public void testDirectBytesSpanSegments() {
+        DirectBytes bytes = new DirectBytes(1, 3);
+        long first = bytes.append("abc".getBytes());
+        long second = bytes.append("a label longer than several segments".getBytes());
+        assertEquals(0, first);
+        assertEquals(3, second);
+        byte[] label = new byte[36];
+        bytes.get(second, label);
+        assertEquals("a label longer than several segments", new String(label));
+        assertEquals('c', bytes.get(2));
+        assertEquals(39, bytes.size());
+        assertEquals(40, bytes.capacity());
+        bytes.free();
+    }
+    
+    @Test
+    public void testLabelsCompacted() {
+        OffHeapGraph g = new OffHeapGraph(1, 1, 4);
+        for (int i = 0; i < 10000; i++) {
+            g.set("a rather long vertex label " + i, "a rather long vertex label " + (i + 1), 1);
+        }
+        long before = g.offHeapBytes();
+        for (int i = 0; i <= 10000; i++) {
+            if (i % 100 != 0) {
+                assertTrue(g.remove("a rather long vertex label " + i));
+            }
+        }
+        assertTrue(g.offHeapBytes() < before);
+        assertEquals(101, g.vertices().size());
+        assertTrue(g.vertices().contains("a rather long vertex label 500"));
+        g.set("a rather long vertex label 500", "a rather long vertex label 600", 7);
+        assertEquals(Collections.singletonMap("a rather long vertex label 500", 7),
+                g.sources("a rather long vertex label 600"));
+        assertTrue(g.add("a rather long vertex label 501"));
+        assertFalse(g.add("a rather long vertex label 700"));
+        g.close();
+    }
+    
+}
@@ -0,0 +1,103 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for OverlayGraph.
+ *
+ * This class runs the GraphInstanceTest tests against OverlayGraph over an
+ * empty base, as well as tests for that particular implementation.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class OverlayGraphTest extends GraphInstanceTest {
+    
+    /*
+     * Provide an OverlayGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new OverlayGraph<String>(FrozenGraph.of(Graph.<String>empty()));
+    }
+    
+    /*
+     * Testing OverlayGraph...
+     */
+    
+    // Testing strategy for OverlayGraph
+    //   base: FrozenGraph, other graph
+    //   set()/increment(): edge only in base, only in overlay, in both;
+    //     weight restored to the base weight
+    //   remove(): base vertex, then re-added; added vertex
+    //   base is never modified; deltaCount() counts changed edges only
+    
+    private static Graph<String> base() {
+        Graph<String> g = new ConcreteVerticesGraph<String>();
+        g.set("a", "b", 2);
+        g.set("b", "c", 3);
+        g.add("d");
+        return g;
+    }
+    
+    @Test
+    public void testReadThrough() {
+        for (Graph<String> b : Arrays.asList(base(), FrozenGraph.of(base()))) {
+            OverlayGraph<String> g = new OverlayGraph<String>(b);
+            assertEquals(b.vertices(), g.vertices());
+            assertEquals(Collections.singletonMap("b", 2), g.targets("a"));
+            assertFalse(g.add("d"));
+            assertEquals(0, g.deltaCount());
+        }
+    }
+    
+    @Test
+    public void testDeltas() {
+        Graph<String> b = FrozenGraph.of(base());
+        OverlayGraph<String> g = new OverlayGraph<String>(b);
+        g.increment("a", "b", 1);
+        g.increment("a", "e", 4);
+        assertEquals(3, g.set("b", "c", 0));
+        
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("b", 3);
+        expected.put("e", 4);
+        assertEquals(expected, g.targets("a"));
+        assertEquals(Collections.emptyMap(), g.sources("c"));
+        assertTrue(g.vertices().contains("e"));
+        assertEquals(3, g.deltaCount());
+        
+        assertEquals(3, g.set("a", "b", 2));
+        assertEquals(2, g.deltaCount());
+        assertEquals(Collections.singletonMap("b", 2), b.targets("a"));
+        assertEquals(Collections.singletonMap("b", 3), b.sources("c"));
+    }
+    
+    @Test
+    public void testRemoveBaseVertex() {
+        OverlayGraph<String> g = new OverlayGraph<String>(FrozenGraph.of(base()));
+        g.increment("c", "a", 1);
+        assertTrue(g.remove("b"));
+        assertFalse(g.remove("b"));
+        assertEquals(new HashSet<String>(Arrays.asList("a", "c", "d")), g.vertices());
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+        assertEquals(Collections.singletonMap("a", 1), g.targets("c"));
+        
+        assertTrue(g.add("b"));
+        assertEquals(Collections.emptyMap(), g.sources("b"));
+        g.set("b", "c", 5);
+        assertEquals(Collections.singletonMap("b", 5), g.sources("c"));
+        assertTrue(g.remove("b"));
+        assertEquals(Collections.emptyMap(), g.sources("c"));
+    }
+    
+}
@@ -0,0 +1,129 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for ShardedGraph and ShardServer.
+ *
+ * This class runs the GraphInstanceTest tests against ShardedGraph backed
+ * by in-process shard servers, as well as tests for that particular
+ * implementation.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class ShardedGraphTest extends GraphInstanceTest {
+    
+    private final List<ShardServer> servers = new ArrayList<ShardServer>();
+    private final List<ShardedGraph> clients = new ArrayList<ShardedGraph>();
+    
+    @After
+    public void tearDown() throws IOException {
+        for (ShardedGraph g : clients) {
+            g.close();
+        }
+        for (ShardServer s : servers) {
+            s.close();
+        }
+    }
+    
+    private ShardedGraph connect(int shards, int batchSize) {
+        try {
+            List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+            for (int i = 0; i < shards; i++) {
+                ShardServer s = new ShardServer(0);
+                s.start();
+                servers.add(s);
+                addresses.add(new InetSocketAddress("localhost", s.port()));
+            }
+            ShardedGraph g = new ShardedGraph(addresses, batchSize);
+            clients.add(g);
+            return g;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /*
+     * Provide a ShardedGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return connect(3, 4);
+    }
+    
+    /*
+     * Testing ShardedGraph...
+     */
+    
+    // Testing strategy for ShardedGraph
+    //   edges whose endpoints live on the same or different shards
+    //   increment(): below and past the batch size, read after buffering,
+    //     increments that cancel out
+    //   weightsTo(): no sources, sources on several shards, missing edges
+    //   remove(): vertex with edges stored on other shards
+    
+    @Test
+    public void testCrossShardEdges() {
+        ShardedGraph g = connect(4, 8);
+        for (int i = 0; i < 20; i++) {
+            g.set("v" + i, "v" + (i + 1) % 20, i + 1);
+        }
+        assertEquals(20, g.vertices().size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Collections.singletonMap("v" + (i + 1) % 20, i + 1), g.targets("v" + i));
+            assertEquals(Collections.singletonMap("v" + i, i + 1), g.sources("v" + (i + 1) % 20));
+        }
+        assertTrue(g.remove("v5"));
+        assertEquals(Collections.emptyMap(), g.targets("v4"));
+        assertEquals(Collections.emptyMap(), g.sources("v6"));
+        assertFalse(g.vertices().contains("v5"));
+    }
+    
+    @Test
+    public void testIncrement() {
+        ShardedGraph g = connect(2, 3);
+        g.increment("a", "b", 1);
+        g.increment("a", "b", 1);
+        assertEquals(Collections.singletonMap("b", 2), g.targets("a"));
+        for (int i = 0; i < 10; i++) {
+            g.increment("x" + i, "y", 1);
+            g.increment("y", "x" + i, i + 1);
+        }
+        g.increment("a", "b", -2);
+        assertEquals(13, g.vertices().size());
+        assertEquals(10, g.sources("y").size());
+        assertEquals(10, g.targets("y").size());
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+        assertTrue(g.vertices().contains("b"));
+    }
+    
+    @Test
+    public void testWeightsTo() {
+        ShardedGraph g = connect(3, 16);
+        assertEquals(Collections.emptyMap(), g.weightsTo(Collections.<String>emptyList(), "t"));
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        for (int i = 0; i < 10; i++) {
+            g.increment("s" + i, "t", i + 1);
+            expected.put("s" + i, i + 1);
+        }
+        List<String> sources = new ArrayList<String>(expected.keySet());
+        sources.addAll(Arrays.asList("t", "missing"));
+        assertEquals(expected, g.weightsTo(sources, "t"));
+    }
+    
+}
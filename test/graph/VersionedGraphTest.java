@@ -0,0 +1,148 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for VersionedGraph.
+ *
+ * This class runs the GraphInstanceTest tests against VersionedGraph, as
+ * well as tests for that particular implementation.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class VersionedGraphTest extends GraphInstanceTest {
+    
+    /*
+     * Provide a VersionedGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new VersionedGraph<String>();
+    }
+    
+    /*
+     * Testing VersionedGraph...
+     */
+    
+    // Testing strategy for VersionedGraph
+    //   snapshot(): unaffected by later set, remove; mutators unsupported
+    //   begin()/commit(): batch visible only after commit, empty batch,
+    //     conflicting commit, reuse after commit
+    //   snapshot(long): current version, retained version, version past the
+    //     count limit, version past the age limit
+    //   many keys: enough vertices to force trie nodes below the root and
+    //     removal back to empty
+    
+    @Test
+    public void testSnapshotIsolation() {
+        VersionedGraph<String> g = new VersionedGraph<String>();
+        g.set("a", "b", 1);
+        VersionedGraph.Snapshot<String> before = g.snapshot();
+        g.set("a", "b", 2);
+        g.set("b", "c", 3);
+        g.remove("a");
+        
+        assertEquals(Collections.singletonMap("b", 1), before.targets("a"));
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b")), before.vertices());
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c")), g.vertices());
+        assertEquals(Collections.emptyMap(), g.sources("b"));
+        assertTrue(g.snapshot().version() > before.version());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSnapshotImmutable() {
+        new VersionedGraph<String>().snapshot().add("a");
+    }
+    
+    @Test
+    public void testTransaction() {
+        VersionedGraph<String> g = new VersionedGraph<String>();
+        VersionedGraph.Transaction<String> tx = g.begin();
+        tx.set("a", "b", 1);
+        tx.set("b", "a", 2);
+        assertEquals(Collections.singletonMap("a", 2), tx.targets("b"));
+        assertEquals(Collections.emptySet(), g.vertices());
+        long version = tx.commit().version();
+        assertEquals(version, g.version());
+        assertEquals(Collections.singletonMap("a", 2), g.targets("b"));
+        
+        assertEquals(version, g.begin().commit().version());
+    }
+    
+    @Test(expected=ConcurrentModificationException.class)
+    public void testConflictingCommit() {
+        VersionedGraph<String> g = new VersionedGraph<String>();
+        VersionedGraph.Transaction<String> tx = g.begin();
+        tx.add("a");
+        g.add("b");
+        tx.commit();
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testCommitTwice() {
+        VersionedGraph.Transaction<String> tx = new VersionedGraph<String>().begin();
+        tx.commit();
+        tx.commit();
+    }
+    
+    @Test
+    public void testRetention() {
+        VersionedGraph<String> g = new VersionedGraph<String>(2, 1, TimeUnit.HOURS);
+        g.add("a");
+        long v1 = g.version();
+        g.add("b");
+        long v2 = g.version();
+        g.add("c");
+        g.add("d");
+        
+        assertEquals(g.snapshot(), g.snapshot(g.version()));
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b")), g.snapshot(v2).vertices());
+        try {
+            g.snapshot(v1);
+            fail("expected version beyond count limit to be reclaimed");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+    
+    @Test(expected=NoSuchElementException.class)
+    public void testRetentionAge() throws InterruptedException {
+        VersionedGraph<String> g = new VersionedGraph<String>(10, 1, TimeUnit.MILLISECONDS);
+        g.add("a");
+        long v1 = g.version();
+        g.add("b");
+        Thread.sleep(5);
+        g.snapshot(v1);
+    }
+    
+    @Test
+    public void testManyVertices() {
+        VersionedGraph<Integer> g = new VersionedGraph<Integer>();
+        VersionedGraph.Transaction<Integer> tx = g.begin();
+        for (int i = 0; i < 5000; i++) {
+            tx.set(i, (i * 31) % 5000, i + 1);
+        }
+        tx.commit();
+        assertEquals(5000, g.vertices().size());
+        assertEquals(Collections.singletonMap(31 * 7 % 5000, 8), g.targets(7));
+        
+        tx = g.begin();
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(tx.remove(i));
+        }
+        tx.commit();
+        assertEquals(Collections.emptySet(), g.vertices());
+    }
+    
+}
@@ -0,0 +1,95 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for VertexOrdering and FrozenGraph.reorder().
+ */
+public class VertexOrderingTest {
+    
+    // Testing strategy
+    //   every ordering: empty graph, graph with isolated vertices, self loops
+    //     and several components; result equals the original graph and
+    //     targets stay sorted by id
+    //   FREQUENCY: most frequent vertex first
+    //   CUTHILL_MCKEE: path numbered in a shuffled order gets consecutive ids
+    //   HUB_CLUSTERING: hubs first by degree, others keep their order
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static Graph<String> sample() {
+        Graph<String> g = new ConcreteEdgesGraph<String>();
+        g.add("lonely");
+        g.set("hub", "hub", 1);
+        for (String v : Arrays.asList("a", "b", "c", "d")) {
+            g.set("hub", v, 2);
+            g.set(v, "hub", 3);
+        }
+        g.set("x", "y", 9);
+        return g;
+    }
+    
+    @Test
+    public void testPreservesGraph() {
+        Graph<String> g = sample();
+        for (VertexOrdering ordering : VertexOrdering.values()) {
+            assertEquals(0, FrozenGraph.of(new ConcreteEdgesGraph<String>(), ordering).vertexCount());
+            FrozenGraph<String> f = FrozenGraph.of(g, ordering);
+            assertEquals(g.vertices(), f.vertices());
+            for (String v : g.vertices()) {
+                assertEquals(v, f.label(f.id(v)));
+                assertEquals(g.targets(v), f.targets(v));
+                assertEquals(g.sources(v), f.sources(v));
+                int id = f.id(v);
+                for (int i = f.outStart(id) + 1; i < f.outEnd(id); i++) {
+                    assertTrue(f.outTarget(i - 1) < f.outTarget(i));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testFrequency() {
+        FrozenGraph<String> f = FrozenGraph.of(sample(), VertexOrdering.FREQUENCY);
+        assertEquals("hub", f.label(0));
+        assertEquals("x", f.label(1));
+        assertEquals("lonely", f.label(f.vertexCount() - 1));
+    }
+    
+    @Test
+    public void testCuthillMcKee() {
+        List<Integer> shuffled = Arrays.asList(7, 2, 9, 0, 5, 3, 8, 1, 6, 4);
+        Collections.shuffle(shuffled, new java.util.Random(1));
+        Graph<Integer> path = new ConcreteEdgesGraph<Integer>();
+        for (int i = 0; i + 1 < shuffled.size(); i++) {
+            path.set(i, i + 1, 1);
+        }
+        FrozenGraph<Integer> f = FrozenGraph.of(path, shuffled).reorder(VertexOrdering.CUTHILL_MCKEE);
+        for (int i = 0; i + 1 < shuffled.size(); i++) {
+            assertEquals(1, Math.abs(f.id(i) - f.id(i + 1)));
+        }
+    }
+    
+    @Test
+    public void testHubClustering() {
+        FrozenGraph<String> f = FrozenGraph.of(sample(),
+                Arrays.asList("lonely", "x", "a", "hub", "y", "b", "c", "d"));
+        FrozenGraph<String> r = f.reorder(VertexOrdering.HUB_CLUSTERING);
+        assertEquals(Arrays.asList("hub", "lonely", "x", "a", "y", "b", "c", "d"),
+                Arrays.asList(r.label(0), r.label(1), r.label(2), r.label(3),
+                        r.label(4), r.label(5), r.label(6), r.label(7)));
+    }
+    
+}
@@ -0,0 +1,226 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for WindowedGraph.
+ *
+ * This class runs the GraphInstanceTest tests against WindowedGraph, as
+ * well as tests for that particular implementation.
+ *
+ * Tests against the Graph spec should be in GraphInstanceTest.
+ */
+public class WindowedGraphTest extends GraphInstanceTest {
+    
+    /*
+     * Provide a WindowedGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new WindowedGraph<String>(3);
+    }
+    
+    /*
+     * Testing WindowedGraph...
+     */
+    
+    // Testing strategy for WindowedGraph
+    //   window: 1, several
+    //   increment(): weights summed across epochs, each part expiring in
+    //     turn; negative deltas, including one outliving the counts it
+    //     cancelled
+    //   set(): replaces the edge's history
+    //   vertices: kept while they have edges or were seen in the window,
+    //     expire with them; remove() forgets them at once
+    //   advanceEpoch(): returns the number of changed edges, which depends
+    //     only on the expiring epoch
+    //   footprint(): shrinks as history expires
+    //   concurrency: reads while another thread increments and advances
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new WindowedGraph<String>(0);
+    }
+    
+    @Test
+    public void testIncrementsExpireInTurn() {
+        WindowedGraph<String> g = new WindowedGraph<String>(2);
+        assertEquals(2, g.window());
+        g.increment("a", "b", 2);
+        g.advanceEpoch();
+        g.increment("a", "b", 1);
+        assertEquals(1, g.epoch());
+        assertEquals(Collections.singletonMap("b", 3), g.targets("a"));
+        
+        assertEquals(1, g.advanceEpoch());
+        assertEquals(Collections.singletonMap("b", 1), g.targets("a"));
+        assertEquals(Collections.singletonMap("a", 1), g.sources("b"));
+        
+        assertEquals(1, g.advanceEpoch());
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+        assertEquals(Collections.emptySet(), g.vertices());
+    }
+    
+    @Test
+    public void testWindowOfOne() {
+        WindowedGraph<String> g = new WindowedGraph<String>(1);
+        g.increment("a", "b", 1);
+        g.increment("a", "b", 1);
+        assertEquals(Collections.singletonMap("b", 2), g.targets("a"));
+        g.advanceEpoch();
+        assertEquals(Collections.emptySet(), g.vertices());
+    }
+    
+    @Test
+    public void testSetReplacesHistory() {
+        WindowedGraph<String> g = new WindowedGraph<String>(2);
+        g.increment("a", "b", 5);
+        g.advanceEpoch();
+        assertEquals(5, g.set("a", "b", 2));
+        g.advanceEpoch();
+        assertEquals(Collections.singletonMap("b", 2), g.targets("a"));
+        g.advanceEpoch();
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+    }
+    
+    @Test
+    public void testNegativeDeltas() {
+        WindowedGraph<String> g = new WindowedGraph<String>(3);
+        g.increment("a", "b", 3);
+        g.advanceEpoch();
+        g.increment("a", "b", -2);
+        assertEquals(Collections.singletonMap("b", 1), g.targets("a"));
+        g.advanceEpoch();
+        g.advanceEpoch();
+        // the -2 outlives the 3 it was taken from
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+        g.advanceEpoch();
+        assertEquals(Collections.emptyMap(), g.targets("a"));
+        
+        g.increment("c", "d", 1);
+        g.increment("c", "d", -1);
+        assertEquals(Collections.emptyMap(), g.targets("c"));
+        g.increment("c", "d", 4);
+        g.advanceEpoch();
+        assertEquals(Collections.singletonMap("d", 4), g.targets("c"));
+    }
+    
+    @Test
+    public void testVertexLifetime() {
+        WindowedGraph<String> g = new WindowedGraph<String>(3);
+        g.add("x");
+        g.increment("a", "b", 1);
+        g.advanceEpoch();
+        g.advanceEpoch();
+        g.increment("b", "c", 1);
+        assertEquals(new HashSet<String>(Arrays.asList("x", "a", "b", "c")), g.vertices());
+        
+        g.advanceEpoch();
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c")), g.vertices());
+        g.advanceEpoch();
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c")), g.vertices());
+        g.advanceEpoch();
+        assertEquals(Collections.emptySet(), g.vertices());
+    }
+    
+    @Test
+    public void testRemoveForgetsHistory() {
+        WindowedGraph<String> g = new WindowedGraph<String>(2);
+        g.increment("a", "b", 1);
+        g.increment("b", "a", 1);
+        assertTrue(g.remove("a"));
+        assertFalse(g.remove("a"));
+        g.increment("a", "c", 7);
+        g.advanceEpoch();
+        assertEquals(Collections.singletonMap("c", 7), g.targets("a"));
+        assertEquals(Collections.emptyMap(), g.targets("b"));
+        g.advanceEpoch();
+        assertEquals(Collections.emptySet(), g.vertices());
+    }
+    
+    @Test
+    public void testAdvanceCostsChangedEdges() {
+        WindowedGraph<String> g = new WindowedGraph<String>(2);
+        for (int i = 0; i < 1000; i++) {
+            g.increment("w" + i, "w" + (i + 1), 1);
+        }
+        g.advanceEpoch();
+        g.increment("w0", "w1", 1);
+        g.increment("new", "w0", 1);
+        assertEquals(1000, g.advanceEpoch());
+        assertEquals(Collections.singletonMap("w1", 1), g.targets("w0"));
+        assertEquals(3, g.vertices().size());
+        assertEquals(2, g.advanceEpoch());
+        assertEquals(0, g.advanceEpoch());
+    }
+    
+    @Test
+    public void testFootprintShrinks() {
+        WindowedGraph<String> g = new WindowedGraph<String>(2);
+        long empty = g.footprint().total();
+        for (int i = 0; i < 100; i++) {
+            g.increment("w" + i, "w" + (i + 1), 1);
+        }
+        long full = g.footprint().total();
+        assertTrue(full > empty);
+        g.advanceEpoch();
+        g.advanceEpoch();
+        assertTrue(g.footprint().total() < full);
+        assertEquals(0, g.footprint().labels());
+    }
+    
+    @Test
+    public void testConcurrentReads() throws InterruptedException {
+        final WindowedGraph<String> g = new WindowedGraph<String>(3);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 5000; i++) {
+                    g.increment("w" + (i % 13), "w" + (i % 7), 1);
+                    if (i % 100 == 99) {
+                        g.advanceEpoch();
+                    }
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int t = 0; t < 3; t++) {
+            readers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 5000; i++) {
+                        for (Map.Entry<String, Integer> e : g.targets("w" + (i % 13)).entrySet()) {
+                            assertTrue(e.getValue() > 0);
+                        }
+                        g.vertices();
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(50, g.epoch());
+    }
+    
+}
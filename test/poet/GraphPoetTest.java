@@ -6,10 +6,29 @@ package poet;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 
+import graph.AdaptiveGraph;
+import graph.CompressedGraph;
+import graph.Footprint;
+import graph.FrozenGraph;
+import graph.Graph;
+import graph.ShardServer;
+import graph.ShardedGraph;
+import graph.VersionedGraph;
+import graph.WindowedGraph;
+
 /**
  * Tests for GraphPoet.
  */
@@ -22,6 +41,17 @@ public class GraphPoetTest {
     //   File with repeated words
     //   File with higher weights than 1
     //   File with bridge words not directly in between w1 and w2
+    //   Shared versioned graph updated after the poet is created
+    //   Sharded graph: same poem as a local graph trained on the same corpus
+    //   Compressed graph: same poem as the graph it was compressed from,
+    //     including corpora with ties between bridges of equal weight
+    //   Order-N model: bridge chosen with context, falls back to the graph
+    //   Streaming poem: same output as poem(String) for runs of mixed
+    //     whitespace, leading/trailing whitespace, words spanning reads
+    //   Footprint and fitTo(): budget already met, met by evicting bridges,
+    //     met by compressing the poet's own graph, shared adaptive graph
+    //     frozen; poems unchanged throughout, including corpora with ties
+    //   Windowed graph: bridges follow the recent corpus as old text expires
     
     @Test(expected=AssertionError.class)
     public void testAssertionsEnabled() {
@@ -72,4 +102,206 @@ public class GraphPoetTest {
         System.out.println(ind);
         assertEquals(ind.poem("The first second"), "The first and second");
     }
+    
+    // covers shared versioned graph updated after the poet is created
+    @Test
+    public void testVersionedGraph() throws IOException {
+        VersionedGraph<String> graph = new VersionedGraph<String>();
+        GraphPoet live = new GraphPoet(graph);
+        assertEquals("One line", live.poem("One line"));
+        
+        VersionedGraph.Transaction<String> tx = graph.begin();
+        GraphPoet.train(tx, new StringReader("one good line\none good line\none bad line"));
+        tx.commit();
+        assertEquals("One good line", live.poem("One line"));
+    }
+    
+    // covers sharded graph trained with batched increments
+    @Test
+    public void testShardedGraph() throws IOException {
+        String corpus = "one good line\none good line\none bad line\nline of poems";
+        Graph<String> graph = Graph.empty();
+        GraphPoet.train(graph, new StringReader(corpus));
+        GraphPoet local = new GraphPoet(graph);
+        try (ShardServer a = new ShardServer(0); ShardServer b = new ShardServer(0)) {
+            a.start();
+            b.start();
+            try (ShardedGraph sharded = new ShardedGraph(Arrays.asList(
+                    new InetSocketAddress("localhost", a.port()),
+                    new InetSocketAddress("localhost", b.port())), 2)) {
+                GraphPoet remote = new GraphPoet(sharded);
+                GraphPoet.train(sharded, new StringReader(corpus));
+                assertEquals(local.poem("One line poems"), remote.poem("One line poems"));
+                assertEquals("One good line of poems", remote.poem("One line poems"));
+            }
+        }
+    }
+    
+    // covers compressed graph
+    @Test
+    public void testCompressedGraph() throws IOException {
+        Graph<String> graph = Graph.empty();
+        GraphPoet.train(graph, new StringReader("one good line\none good line\none bad line\nline of poems"));
+        GraphPoet compressed = new GraphPoet(CompressedGraph.of(graph));
+        assertEquals(new GraphPoet(graph).poem("One line poems"), compressed.poem("One line poems"));
+        assertEquals("One good line of poems", compressed.poem("One line poems"));
+        assertEquals("Unknown words", compressed.poem("Unknown words"));
+    }
+    
+    // covers ties between bridges of equal weight, in every representation
+    @Test
+    public void testTiesBrokenByLabel() throws IOException {
+        Graph<String> graph = Graph.empty();
+        GraphPoet.train(graph, new StringReader("one good line\none fine line\none bad line"));
+        for (Graph<String> g : Arrays.asList(graph, FrozenGraph.of(graph), CompressedGraph.of(graph))) {
+            assertEquals("One bad line", new GraphPoet(g).poem("One line"));
+        }
+        
+        // words whose hash order differs from their String order
+        String[] words = { "zebra", "apple", "moon", "kite", "river", "bread", "yak", "cloud" };
+        Random random = new Random(42);
+        for (int corpus = 0; corpus < 100; corpus++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 40; i++) {
+                text.append(words[random.nextInt(words.length)]).append(i % 10 == 9 ? '\n' : ' ');
+            }
+            Graph<String> g = Graph.empty();
+            GraphPoet.train(g, new StringReader(text.toString()));
+            String input = String.join(" ", words) + " " + String.join(" ", words).toUpperCase();
+            String expected = new GraphPoet(g).poem(input);
+            assertEquals(expected, new GraphPoet(FrozenGraph.of(g)).poem(input));
+            assertEquals(expected, new GraphPoet(CompressedGraph.of(g)).poem(input));
+        }
+    }
+    
+    // covers order-N model with bridges of equal count, whose first-seen
+    // bridge is not the least
+    @Test
+    public void testNGramTiesBrokenByLabel() throws IOException {
+        String text = "red fish swim fast\nred fish dive fast\nred fish kick fast";
+        Graph<String> graph = Graph.empty();
+        GraphPoet.train(graph, new StringReader(text));
+        NGramModel model = NGramModel.train(new StringReader(text), 4);
+        assertEquals("dive", model.bridge(Arrays.asList("red", "fish"), "fast"));
+        assertEquals("Red fish dive fast", new GraphPoet(graph).poem("Red fish fast"));
+        assertEquals("Red fish dive fast", new GraphPoet(graph, model).poem("Red fish fast"));
+    }
+    
+    // covers order-N model with and without enough context
+    @Test
+    public void testNGramModel() throws IOException {
+        File corpus = new File("test/poet/ngrams.txt");
+        assertEquals("Red fish dive fast", new GraphPoet(corpus).poem("Red fish fast"));
+        assertEquals("Red fish dive fast", new GraphPoet(corpus, 3).poem("Red fish fast"));
+        GraphPoet ngrams = new GraphPoet(corpus, 4);
+        assertEquals("Red fish swim fast", ngrams.poem("Red fish fast"));
+        assertEquals("Fish dive fast red fish swim fast", ngrams.poem("Fish fast red fish fast"));
+        assertEquals("Blue fish", ngrams.poem("Blue fish"));
+    }
+    
+    // covers streaming poem with mixed whitespace
+    @Test
+    public void testStreaming() throws IOException {
+        GraphPoet ind = new GraphPoet(new File("test/poet/indirects.txt"));
+        String input = "  The first\tsecond\n\nfirst \r\n second  or\u000Bfirst ";
+        StringWriter out = new StringWriter();
+        ind.poem(new StringReader(input), out);
+        assertEquals(ind.poem(input), out.toString());
+        assertTrue(out.toString().startsWith("The first and second "));
+        
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            big.append("first second ");
+        }
+        out = new StringWriter();
+        ind.poem(new StringReader(big.toString()), out);
+        assertEquals(ind.poem(big.toString()), out.toString());
+    }
+    
+    // covers footprint and each step of fitTo
+    @Test
+    public void testFitTo() throws IOException {
+        GraphPoet ind = new GraphPoet(new File("test/poet/indirects.txt"));
+        String input = "The first second or first";
+        String poem = ind.poem(input);
+        Footprint before = ind.footprint();
+        assertTrue(before.caches() > 0);
+        assertTrue(before.labels() > 0);
+        
+        assertEquals(before, ind.fitTo(before.total()));
+        Footprint evicted = ind.fitTo(before.total() - 1);
+        assertTrue(evicted.caches() < before.caches());
+        assertEquals(before.withoutCaches(), evicted.withoutCaches());
+        assertEquals(poem, ind.poem(input));
+        
+        Footprint compacted = ind.fitTo(0);
+        assertEquals(Footprint.hashMap(0), compacted.caches());
+        // only the compressed graph remains, without the copy kept for checkRep
+        Graph<String> graph = Graph.empty();
+        try (Reader corpus = new FileReader("test/poet/indirects.txt")) {
+            GraphPoet.train(graph, corpus);
+        }
+        assertEquals(CompressedGraph.of(FrozenGraph.of(graph)).footprint(), compacted.withoutCaches());
+        assertTrue(compacted.total() < before.withoutCaches().total());
+        assertEquals(poem, ind.poem(input));
+        assertEquals(Footprint.hashMap(0), ind.footprint().caches());
+    }
+    
+    // covers fitTo on corpora with ties between bridges
+    @Test
+    public void testFitToKeepsPoemsWithTies() throws IOException {
+        String[] words = { "zebra", "apple", "moon", "kite", "river", "bread", "yak", "cloud" };
+        String input = String.join(" ", words) + " " + String.join(" ", words).toUpperCase();
+        Random random = new Random(7);
+        for (int corpus = 0; corpus < 20; corpus++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 40; i++) {
+                text.append(words[random.nextInt(words.length)]).append(i % 10 == 9 ? '\n' : ' ');
+            }
+            File file = File.createTempFile("corpus", ".txt");
+            file.deleteOnExit();
+            Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+            
+            GraphPoet poet = new GraphPoet(file);
+            String before = poet.poem(input);
+            poet.fitTo(poet.footprint().total() - 1);
+            assertEquals(before, poet.poem(input));
+            poet.fitTo(0);
+            assertEquals(before, poet.poem(input));
+        }
+    }
+    
+    // covers fitTo with a shared adaptive graph
+    @Test
+    public void testFitToFreezesAdaptiveGraph() throws IOException {
+        AdaptiveGraph<String> graph = new AdaptiveGraph<String>(1, 1, 1000, 1000);
+        GraphPoet.train(graph, new StringReader("one good line\none good line\none bad line"));
+        GraphPoet poet = new GraphPoet(graph);
+        assertEquals(AdaptiveGraph.Representation.HASHED, graph.representation());
+        long hashed = poet.footprint().total();
+        assertEquals(graph.footprint(), poet.footprint());
+        
+        assertTrue(poet.fitTo(0).total() < hashed);
+        assertEquals(AdaptiveGraph.Representation.FROZEN, graph.representation());
+        assertEquals("One good line", poet.poem("One line"));
+    }
+    
+    // covers windowed graph trained in epochs
+    @Test
+    public void testWindowedGraph() throws IOException {
+        WindowedGraph<String> graph = new WindowedGraph<String>(2);
+        GraphPoet poet = new GraphPoet(graph);
+        GraphPoet.train(graph, new StringReader("one good line\none good line"));
+        assertEquals("One good line", poet.poem("One line"));
+        graph.advanceEpoch();
+        GraphPoet.train(graph, new StringReader("one bad line\none bad line\none bad line"));
+        assertEquals("One bad line", poet.poem("One line"));
+        graph.advanceEpoch();
+        GraphPoet.train(graph, new StringReader("one good line"));
+        assertEquals("One bad line", poet.poem("One line"));
+        graph.advanceEpoch();
+        assertEquals("One good line", poet.poem("One line"));
+        graph.advanceEpoch();
+        assertEquals("One line", poet.poem("One line"));
+    }
 }
@@ -0,0 +1,74 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for NGramModel.
+ */
+public class NGramModelTest {
+    
+    // Testing strategy:
+    //   train(): empty corpus, sequences repeated, sequences across line
+    //     breaks, mixed case, order below 3
+    //   count(): empty sequence, unigram, longest sequence, longer than
+    //     order, unseen word
+    //   bridge(): longest context found, backoff to shorter context, no
+    //     bridge at any length, unknown next word
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static final String CORPUS = "Red fish swim fast\nblue fish dive fast\nfish dive fast\nfish dive fast";
+    
+    @Test
+    public void testEmpty() throws IOException {
+        NGramModel m = NGramModel.train(new StringReader(""), 3);
+        assertEquals(0, m.sequenceCount());
+        assertEquals(0, m.count(Arrays.asList("a")));
+        assertNull(m.bridge(Arrays.asList("a"), "b"));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testOrderTooLow() throws IOException {
+        NGramModel.train(new StringReader(CORPUS), 2);
+    }
+    
+    @Test
+    public void testCount() throws IOException {
+        NGramModel m = NGramModel.train(new StringReader(CORPUS), 4);
+        assertEquals(4, m.order());
+        assertEquals(0, m.count(Collections.<String>emptyList()));
+        assertEquals(4, m.count(Arrays.asList("FISH")));
+        assertEquals(3, m.count(Arrays.asList("fish", "dive", "fast")));
+        assertEquals(1, m.count(Arrays.asList("red", "fish", "swim", "fast")));
+        assertEquals(0, m.count(Arrays.asList("fast", "blue")));
+        assertEquals(0, m.count(Arrays.asList("red", "fish", "swim", "fast", "fast")));
+        assertEquals(0, m.count(Arrays.asList("whale")));
+    }
+    
+    @Test
+    public void testBridge() throws IOException {
+        NGramModel m = NGramModel.train(new StringReader(CORPUS), 4);
+        assertEquals("swim", m.bridge(Arrays.asList("red", "fish"), "fast"));
+        assertEquals("dive", m.bridge(Arrays.asList("green", "fish"), "fast"));
+        assertEquals("dive", m.bridge(Arrays.asList("fish"), "fast"));
+        assertNull(m.bridge(Arrays.asList("fish"), "blue"));
+        assertNull(m.bridge(Arrays.asList("red", "fish"), "whale"));
+        
+        NGramModel trigrams = NGramModel.train(new StringReader(CORPUS), 3);
+        assertEquals("dive", trigrams.bridge(Arrays.asList("red", "fish"), "fast"));
+    }
+    
+}
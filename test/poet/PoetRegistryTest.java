@@ -0,0 +1,114 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+import graph.Graph;
+
+/**
+ * Tests for PoetRegistry.
+ */
+public class PoetRegistryTest {
+    
+    // Testing strategy:
+    //   poet(): first request loads, repeated request reuses, tenant evicted
+    //     by LRU and reloaded
+    //   poems equal those of a poet trained on base corpus + tenant corpus
+    //   words shared by base and tenants are stored once
+    //   evict(): resident and absent tenant
+    //   byte budget: tenants evicted once their footprints exceed it, the
+    //     tenant just loaded kept even if it alone exceeds it
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    private static final String BASE = "one good line\none good line";
+    
+    private final Map<String, String> corpora = new HashMap<String, String>();
+    private final Map<String, Integer> loads = new HashMap<String, Integer>();
+    
+    private PoetRegistry registry(int maxResident) throws IOException {
+        return registry(maxResident, Long.MAX_VALUE);
+    }
+    
+    private PoetRegistry registry(int maxResident, long maxResidentBytes) throws IOException {
+        corpora.put("bad", "one bad line\none bad line\none bad line");
+        corpora.put("poems", "line of poems");
+        return new PoetRegistry(new StringReader(BASE), tenant -> {
+            loads.merge(tenant, 1, Integer::sum);
+            return new StringReader(corpora.get(tenant));
+        }, maxResident, maxResidentBytes);
+    }
+    
+    @Test
+    public void testPoemsMatchCombinedCorpus() throws IOException {
+        PoetRegistry registry = registry(4);
+        Graph<String> combined = Graph.empty();
+        GraphPoet.train(combined, new StringReader(BASE + "\n" + corpora.get("bad")));
+        assertEquals(new GraphPoet(combined).poem("One line"), registry.poet("bad").poem("One line"));
+        assertEquals("One bad line", registry.poet("bad").poem("One line"));
+        assertEquals("One good line of poems", registry.poet("poems").poem("One line poems"));
+        assertEquals(new HashSet<String>(Arrays.asList("one", "good", "line")),
+                registry.base().vertices());
+    }
+    
+    @Test
+    public void testSharedVocabulary() throws IOException {
+        PoetRegistry registry = registry(4);
+        assertEquals(3, registry.vocabularySize());
+        registry.poet("bad");
+        registry.poet("poems");
+        assertEquals(6, registry.vocabularySize());
+        assertSame(registry.canonical("line"), registry.canonical(new String("line")));
+    }
+    
+    @Test
+    public void testEviction() throws IOException {
+        PoetRegistry registry = registry(1);
+        GraphPoet bad = registry.poet("bad");
+        assertSame(bad, registry.poet("bad"));
+        registry.poet("poems");
+        assertEquals(new HashSet<String>(Arrays.asList("poems")), registry.residentTenants());
+        assertEquals("One bad line", bad.poem("One line"));
+        
+        assertEquals("One bad line", registry.poet("bad").poem("One line"));
+        assertEquals(Integer.valueOf(2), loads.get("bad"));
+        assertTrue(registry.evict("bad"));
+        assertFalse(registry.evict("bad"));
+    }
+    
+    @Test
+    public void testByteBudget() throws IOException {
+        PoetRegistry unlimited = registry(4);
+        long bad = unlimited.poet("bad").footprint().total();
+        long poems = unlimited.poet("poems").footprint().total();
+        assertEquals(bad + poems, unlimited.residentBytes());
+        assertTrue(unlimited.footprint().total() > bad + poems);
+        
+        PoetRegistry registry = registry(4, bad + poems - 1);
+        registry.poet("bad");
+        registry.poet("poems");
+        assertEquals(new HashSet<String>(Arrays.asList("poems")), registry.residentTenants());
+        assertEquals(poems, registry.residentBytes());
+        
+        PoetRegistry tiny = registry(4, 1);
+        assertEquals("One bad line", tiny.poet("bad").poem("One line"));
+        assertEquals(new HashSet<String>(Arrays.asList("bad")), tiny.residentTenants());
+        assertTrue(tiny.evict("bad"));
+        assertEquals(0, tiny.residentBytes());
+    }
+    
+}
@@ -0,0 +1,123 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import graph.ConcreteEdgesGraph;
+
+/**
+ * Tests for PoetWarmup.
+ */
+public class PoetWarmupTest {
+    
+    // Testing strategy:
+    //   before start, after start and finish; start called twice
+    //   passes: 1, several; inputs: none, several
+    //   poems after warm-up are unchanged
+    //   poet throws during the replay
+    //   poet recording to a QueryLog: sample unchanged by the replay
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    @Test
+    public void testWarmup() throws IOException, InterruptedException, ExecutionException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/indirects.txt"));
+        String expected = poet.poem("First second or first");
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            inputs.add("First second or first " + i);
+        }
+        PoetWarmup warmup = new PoetWarmup(poet, inputs, 3);
+        assertFalse(warmup.isReady());
+        assertEquals(-1, warmup.durationNanos());
+        warmup.start();
+        warmup.start();
+        assertTrue(warmup.awaitReady(30, TimeUnit.SECONDS));
+        assertTrue(warmup.durationNanos() >= 0);
+        assertTrue(warmup.coldP99Nanos() >= 0);
+        assertTrue(warmup.warmP99Nanos() >= 0);
+        assertTrue(warmup.toString().contains("50 inputs x 3 passes"));
+        assertEquals(expected, poet.poem("First second or first"));
+    }
+    
+    @Test
+    public void testNoInputs() throws IOException, InterruptedException, ExecutionException {
+        PoetWarmup warmup = new PoetWarmup(new GraphPoet(new File("test/poet/empty.txt")),
+                Collections.<String>emptyList(), 1);
+        warmup.start();
+        assertTrue(warmup.awaitReady(30, TimeUnit.SECONDS));
+        assertEquals(0, warmup.coldP99Nanos());
+        assertEquals(0, warmup.warmP99Nanos());
+    }
+    
+    @Test
+    public void testPoetThrows() throws InterruptedException {
+        final IllegalStateException broken = new IllegalStateException("broken graph");
+        ConcreteEdgesGraph<String> graph = new ConcreteEdgesGraph<String>() {
+            @Override public Map<String, Integer> targets(String source) {
+                throw broken;
+            }
+        };
+        PoetWarmup warmup = new PoetWarmup(new GraphPoet(graph, null), Collections.singletonList("a b"), 2);
+        warmup.start();
+        try {
+            warmup.awaitReady(30, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(broken, e.getCause());
+        }
+        assertTrue(warmup.isReady());
+        assertTrue(warmup.durationNanos() >= 0);
+        try {
+            warmup.coldP99Nanos();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertSame(broken, e.getCause());
+        }
+        try {
+            warmup.warmP99Nanos();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertSame(broken, e.getCause());
+        }
+        assertTrue(warmup.toString().contains("failed"));
+    }
+    
+    @Test
+    public void testReplayNotRecorded() throws IOException, InterruptedException, ExecutionException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/indirects.txt"));
+        QueryLog log = new QueryLog(4, 1);
+        poet.recordTo(log);
+        for (int i = 0; i < 10; i++) {
+            poet.poem("First second or first " + i);
+        }
+        List<String> sample = log.sample();
+        
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            inputs.add("replayed " + i);
+        }
+        PoetWarmup warmup = new PoetWarmup(poet, inputs, 3);
+        warmup.start();
+        assertTrue(warmup.awaitReady(30, TimeUnit.SECONDS));
+        assertEquals(10, log.offered());
+        assertEquals(sample, log.sample());
+    }
+    
+}
@@ -0,0 +1,89 @@
+/* Copyright (c) 2015-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests for QueryLog.
+ */
+public class QueryLogTest {
+    
+    // Testing strategy:
+    //   offer(): fewer inputs than capacity, many more than capacity
+    //   save()/load(): empty log, non-ASCII and empty inputs, file that is not
+    //     a log
+    //   GraphPoet.recordTo(): poem(String) inputs recorded until detached
+    
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+    
+    @Test
+    public void testSample() {
+        QueryLog log = new QueryLog(10, 1);
+        log.offer("a");
+        log.offer("b");
+        assertEquals(Arrays.asList("a", "b"), log.sample());
+        for (int i = 0; i < 10000; i++) {
+            log.offer("q" + i);
+        }
+        assertEquals(10002, log.offered());
+        List<String> sample = log.sample();
+        assertEquals(10, sample.size());
+        assertEquals(10, new HashSet<String>(sample).size());
+        for (String q : sample) {
+            assertTrue(q.equals("a") || q.equals("b") || q.startsWith("q"));
+        }
+    }
+    
+    @Test
+    public void testSaveLoad() throws IOException {
+        File file = File.createTempFile("queries", ".log");
+        file.deleteOnExit();
+        QueryLog log = new QueryLog(10, 1);
+        log.save(file);
+        assertEquals(Arrays.asList(), QueryLog.load(file));
+        
+        log.offer("Test the system.");
+        log.offer("");
+        log.offer("caf\u00e9 \u4e2d\u6587");
+        log.save(file);
+        assertEquals(log.sample(), QueryLog.load(file));
+    }
+    
+    @Test(expected=IOException.class)
+    public void testNotALog() throws IOException {
+        File file = File.createTempFile("queries", ".log");
+        file.deleteOnExit();
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        }
+        QueryLog.load(file);
+    }
+    
+    @Test
+    public void testRecordTo() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/test.txt"));
+        QueryLog log = new QueryLog(10, 1);
+        poet.recordTo(log);
+        poet.poem("one");
+        poet.poem("two words");
+        poet.recordTo(null);
+        poet.poem("three");
+        assertEquals(Arrays.asList("one", "two words"), log.sample());
+    }
+    
+}